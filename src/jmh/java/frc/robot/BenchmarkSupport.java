@@ -0,0 +1,30 @@
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import org.littletonrobotics.junction.Logger;
+
+/** Shared setup for benchmarks that exercise robot code outside of a running robot program. */
+public final class BenchmarkSupport {
+  private static boolean initialized = false;
+
+  private BenchmarkSupport() {}
+
+  /**
+   * Initializes the HAL, enables the simulated driver station and starts the logger without any
+   * data receivers, so logging calls are encoded exactly as they are on the robot.
+   */
+  public static synchronized void initialize() {
+    if (initialized) {
+      return;
+    }
+    HAL.initialize(500, 0);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.notifyNewData();
+    DriverStation.refreshData();
+    Logger.start();
+    initialized = true;
+  }
+}
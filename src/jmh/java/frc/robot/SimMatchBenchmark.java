@@ -0,0 +1,202 @@
+package frc.robot;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import edu.wpi.first.wpilibj2.command.Command;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Runs full simulated matches of the whole robot program as fast as the CPU allows and reports
+ * end-to-end loop performance.
+ *
+ * <p>The robot runs in SIM mode without a GUI, NetworkTables server or NT publishing. Simulated
+ * time is stepped by one loop period per cycle, so every Choreo auto and the scripted teleop stick
+ * inputs play out exactly as they would in a real match.
+ *
+ * <p>Usage: {@code SimMatchBenchmark [auto names...]} (defaults to every auto)
+ */
+public final class SimMatchBenchmark {
+  private static final List<String> DEFAULT_AUTOS =
+      List.of("figureEightTest", "longFigureEightTest", "loopTest", "longLoopTest");
+
+  private static final double LOOP_PERIOD = Constants.SimConstants.loopTime;
+  private static final int DISABLED_LOOPS = (int) Math.round(1.0 / LOOP_PERIOD);
+  private static final int AUTO_LOOPS = (int) Math.round(15.0 / LOOP_PERIOD);
+  private static final int TELEOP_LOOPS = (int) Math.round(135.0 / LOOP_PERIOD);
+  private static final int MATCH_LOOPS = DISABLED_LOOPS + AUTO_LOOPS + TELEOP_LOOPS;
+
+  private SimMatchBenchmark() {}
+
+  public static void main(String... args) {
+    List<String> autos = args.length > 0 ? List.of(args) : DEFAULT_AUTOS;
+
+    HAL.initialize(500, 0);
+    SimHooks.pauseTiming();
+    BenchmarkRobot robot = new BenchmarkRobot(autos);
+    NetworkTableInstance.getDefault().stopServer();
+    robot.startCompetition(); // Exits once every match has been played
+  }
+
+  /** Robot program that scripts the driver station and records the duration of every loop. */
+  private static class BenchmarkRobot extends Robot {
+    private final List<String> autos;
+    private final XboxControllerSim controller = new XboxControllerSim(0);
+    private final long[] loopNanos;
+    private final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final AtomicLong gcPauseCount = new AtomicLong();
+    private final AtomicLong gcPauseTotalMillis = new AtomicLong();
+    private final AtomicLong gcPauseMaxMillis = new AtomicLong();
+
+    private Command auto = null;
+    private int loop = -1;
+    private long lastLoopNanos = 0;
+    private volatile long startNanos = 0;
+    private long startAllocatedBytes = 0;
+
+    BenchmarkRobot(List<String> autos) {
+      super(true);
+      this.autos = autos;
+      loopNanos = new long[MATCH_LOOPS * autos.size()];
+      setUseTiming(false);
+      registerGCListener();
+    }
+
+    private void registerGCListener() {
+      for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+        if (!(gcBean instanceof NotificationEmitter)) {
+          continue;
+        }
+        ((NotificationEmitter) gcBean)
+            .addNotificationListener(
+                (notification, handback) -> {
+                  if (!notification
+                      .getType()
+                      .equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                  }
+                  var info =
+                      GarbageCollectionNotificationInfo.from(
+                          (CompositeData) notification.getUserData());
+                  if (startNanos == 0) {
+                    return; // Ignore collections during startup
+                  }
+                  long duration = info.getGcInfo().getDuration();
+                  gcPauseCount.incrementAndGet();
+                  gcPauseTotalMillis.addAndGet(duration);
+                  gcPauseMaxMillis.accumulateAndGet(duration, Math::max);
+                },
+                null,
+                null);
+      }
+    }
+
+    @Override
+    public void autonomousInit() {
+      auto = robotContainer.getAutonomousCommand(autos.get(Math.max(loop, 0) / MATCH_LOOPS));
+      auto.schedule();
+    }
+
+    @Override
+    public void teleopInit() {
+      if (auto != null) {
+        auto.cancel();
+      }
+      super.teleopInit();
+    }
+
+    @Override
+    public void simulationPeriodic() {
+      long now = System.nanoTime();
+      if (loop < 0) {
+        startNanos = now;
+        startAllocatedBytes = threadBean.getCurrentThreadAllocatedBytes();
+      } else {
+        loopNanos[loop] = now - lastLoopNanos;
+      }
+      lastLoopNanos = now;
+      loop++;
+
+      if (loop >= loopNanos.length) {
+        report(now);
+        System.exit(0);
+      }
+
+      // Script the driver station for the next loop
+      int matchLoop = loop % MATCH_LOOPS;
+      boolean enabled = matchLoop >= DISABLED_LOOPS;
+      boolean autonomous = matchLoop < DISABLED_LOOPS + AUTO_LOOPS;
+      DriverStationSim.setEnabled(enabled);
+      DriverStationSim.setAutonomous(autonomous);
+      if (enabled && !autonomous) {
+        double t = matchLoop * LOOP_PERIOD;
+        controller.setLeftY(0.8 * Math.sin(t * 0.9));
+        controller.setLeftX(0.6 * Math.cos(t * 0.7));
+        controller.setRightX(0.5 * Math.sin(t * 1.3));
+      } else {
+        controller.setLeftY(0.0);
+        controller.setLeftX(0.0);
+        controller.setRightX(0.0);
+      }
+      controller.notifyNewData();
+      DriverStationSim.notifyNewData();
+
+      SimHooks.stepTiming(LOOP_PERIOD);
+    }
+
+    private void report(long now) {
+      double wallSeconds = (now - startNanos) / 1e9;
+      long allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - startAllocatedBytes;
+      long[] sorted = loopNanos.clone();
+      Arrays.sort(sorted);
+
+      System.out.println();
+      System.out.println("********** Simulated match benchmark **********");
+      System.out.println("Autos: " + String.join(", ", autos));
+      System.out.println(
+          String.format(
+              Locale.ROOT,
+              "Loops: %d in %.2f s (%.1f simulated s) -> %.0f loops/s, %.1fx real time",
+              sorted.length,
+              wallSeconds,
+              sorted.length * LOOP_PERIOD,
+              sorted.length / wallSeconds,
+              sorted.length * LOOP_PERIOD / wallSeconds));
+      System.out.println(
+          String.format(
+              Locale.ROOT,
+              "Loop time: p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+              percentile(sorted, 0.5) / 1e6,
+              percentile(sorted, 0.99) / 1e6,
+              sorted[sorted.length - 1] / 1e6));
+      System.out.println(
+          String.format(
+              Locale.ROOT,
+              "Allocation (main thread): %.1f MB/s, %.1f kB/loop",
+              allocatedBytes / wallSeconds / 1e6,
+              allocatedBytes / (double) sorted.length / 1e3));
+      System.out.println(
+          String.format(
+              Locale.ROOT,
+              "GC: %d pauses, %d ms total, %d ms max",
+              gcPauseCount.get(),
+              gcPauseTotalMillis.get(),
+              gcPauseMaxMillis.get()));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+      return sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))];
+    }
+  }
+}
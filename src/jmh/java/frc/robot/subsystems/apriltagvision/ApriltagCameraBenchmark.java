@@ -0,0 +1,87 @@
+package frc.robot.subsystems.apriltagvision;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.BenchmarkSupport;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.Constants.VisionConstants.CameraInfo;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.photonvision.PhotonCamera;
+import org.photonvision.simulation.PhotonCameraSim;
+import org.photonvision.simulation.SimCameraProperties;
+import org.photonvision.simulation.VisionSystemSim;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+/**
+ * Benchmarks processing a camera frame. The frames are recorded once from the PhotonVision
+ * simulator while the robot drives an arc facing the speaker, then replayed in order.
+ */
+@State(Scope.Thread)
+public class ApriltagCameraBenchmark {
+  private static final int RECORDED_FRAMES = 100;
+
+  private ApriltagCamera camera;
+
+  /** Camera IO that plays back recorded results with fresh timestamps. */
+  private static class RecordedCameraIO implements ApriltagCameraIO {
+    private final List<PhotonPipelineResult> results;
+    private int index = 0;
+    private double timestamp = 0.0;
+
+    RecordedCameraIO(List<PhotonPipelineResult> results) {
+      this.results = results;
+    }
+
+    @Override
+    public void updateInputs(AprilTagCameraIOInputs inputs) {
+      PhotonPipelineResult result = results.get(index);
+      index = (index + 1) % results.size();
+      timestamp += 0.02;
+      result.setTimestampSeconds(timestamp);
+      inputs.result = result;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.initialize();
+    CameraInfo cameraInfo = VisionConstants.leftCamera;
+    camera = new ApriltagCamera(new RecordedCameraIO(record(cameraInfo)), cameraInfo);
+  }
+
+  private static List<PhotonPipelineResult> record(CameraInfo cameraInfo) {
+    VisionSystemSim visionSim = new VisionSystemSim("benchmark");
+    visionSim.addAprilTags(VisionConstants.aprilTagFieldLayout);
+    SimCameraProperties properties = new SimCameraProperties();
+    properties.setCalibration(
+        cameraInfo.cameraRes[0], cameraInfo.cameraRes[1], cameraInfo.diagFOV);
+    PhotonCameraSim cameraSim =
+        new PhotonCameraSim(new PhotonCamera("benchmark-" + cameraInfo.cameraName), properties);
+
+    List<PhotonPipelineResult> results = new ArrayList<>();
+    for (int i = 0; i < RECORDED_FRAMES; i++) {
+      double angle = Math.PI * i / RECORDED_FRAMES - Math.PI / 2.0;
+      Pose2d robotPose =
+          new Pose2d(
+              2.5 + 1.5 * Math.cos(angle),
+              5.5 + 1.5 * Math.sin(angle),
+              Rotation2d.fromRadians(Math.PI + angle * 0.3));
+      Pose3d cameraPose = new Pose3d(robotPose).transformBy(cameraInfo.robotToCamera);
+      results.add(
+          cameraSim.process(
+              20.0, cameraPose, new ArrayList<>(visionSim.getVisionTargets("apriltag"))));
+    }
+    return results;
+  }
+
+  @Benchmark
+  public void updateInputs() {
+    camera.updateInputs();
+  }
+}
@@ -0,0 +1,96 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares one loop of setpoint optimization and closed loop control for all four modules, through
+ * the per module objects and through {@link BatchedModuleControl}. Both use the same gains and see
+ * the same module angles, velocities and setpoints, which change every invocation.
+ */
+@State(Scope.Thread)
+public class BatchedModuleControlBenchmark {
+  private static final int moduleCount = BatchedModuleControl.moduleCount;
+  private static final double wheelRadius = 0.0508;
+
+  private final SimpleMotorFeedforward[] driveFeedforwards =
+      new SimpleMotorFeedforward[moduleCount];
+  private final PIDController[] driveFeedbacks = new PIDController[moduleCount];
+  private final PIDController[] turnFeedbacks = new PIDController[moduleCount];
+  private final BatchedModuleControl batchedControl = new BatchedModuleControl(0.02);
+  private final double[] speeds = new double[moduleCount];
+  private final double[] angles = new double[moduleCount];
+  private double time = 0.0;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < moduleCount; i++) {
+      driveFeedforwards[i] = new SimpleMotorFeedforward(0.1, 0.13);
+      driveFeedbacks[i] = new PIDController(0.05, 0.0, 0.0);
+      turnFeedbacks[i] = new PIDController(7.0, 0.0, 0.0);
+      turnFeedbacks[i].enableContinuousInput(-Math.PI, Math.PI);
+      batchedControl.driveKS[i] = 0.1;
+      batchedControl.driveKV[i] = 0.13;
+      batchedControl.driveKP[i] = 0.05;
+      batchedControl.turnKP[i] = 7.0;
+    }
+    time = 0.0;
+  }
+
+  private double angle(int module) {
+    return Math.sin(time + module) * 3.0;
+  }
+
+  private double setpointAngle(int module) {
+    return Math.cos(time * 0.7 + module) * 3.0;
+  }
+
+  private double velocity(int module) {
+    return 20.0 * Math.sin(time * 0.3 + module);
+  }
+
+  @Benchmark
+  public void perModule(Blackhole blackhole) {
+    time += 0.02;
+    for (int i = 0; i < moduleCount; i++) {
+      Rotation2d angle = new Rotation2d(angle(i));
+      var state = new SwerveModuleState(2.0, new Rotation2d(setpointAngle(i)));
+      var optimized = SwerveModuleState.optimize(state, angle);
+      blackhole.consume(
+          turnFeedbacks[i].calculate(angle.getRadians(), optimized.angle.getRadians()));
+      double velocitySetpoint =
+          optimized.speedMetersPerSecond
+              * Math.cos(turnFeedbacks[i].getPositionError())
+              / wheelRadius;
+      blackhole.consume(
+          driveFeedforwards[i].calculate(velocitySetpoint)
+              + driveFeedbacks[i].calculate(velocity(i), velocitySetpoint));
+    }
+  }
+
+  @Benchmark
+  public void batched(Blackhole blackhole) {
+    time += 0.02;
+    for (int i = 0; i < moduleCount; i++) {
+      batchedControl.angleRad[i] = angle(i);
+      batchedControl.velocityRadPerSec[i] = velocity(i);
+      speeds[i] = 2.0;
+      angles[i] = setpointAngle(i);
+    }
+    batchedControl.optimize(speeds, angles);
+    for (int i = 0; i < moduleCount; i++) {
+      batchedControl.angleSetpointRad[i] = angles[i];
+      batchedControl.velocitySetpointRadPerSec[i] = speeds[i] / wheelRadius;
+    }
+    batchedControl.calculate();
+    blackhole.consume(batchedControl.turnVolts);
+    blackhole.consume(batchedControl.driveVolts);
+  }
+}
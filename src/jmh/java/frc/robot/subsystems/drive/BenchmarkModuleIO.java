@@ -0,0 +1,37 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Module IO that reports a slowly moving module with a fixed number of odometry samples per cycle.
+ */
+class BenchmarkModuleIO implements ModuleIO {
+  private final int samplesPerCycle;
+  private double timestamp = 0.0;
+  private double drivePositionRad = 0.0;
+  private double turnPositionRad = 0.0;
+
+  BenchmarkModuleIO(int samplesPerCycle) {
+    this.samplesPerCycle = samplesPerCycle;
+  }
+
+  @Override
+  public void updateInputs(ModuleIOInputs inputs) {
+    inputs.odometryTimestamps = new double[samplesPerCycle];
+    inputs.odometryDrivePositionsRad = new double[samplesPerCycle];
+    inputs.odometryTurnPositions = new Rotation2d[samplesPerCycle];
+    for (int i = 0; i < samplesPerCycle; i++) {
+      timestamp += 0.02 / samplesPerCycle;
+      drivePositionRad += 0.01;
+      turnPositionRad += 0.001;
+      inputs.odometryTimestamps[i] = timestamp;
+      inputs.odometryDrivePositionsRad[i] = drivePositionRad;
+      inputs.odometryTurnPositions[i] = new Rotation2d(turnPositionRad);
+    }
+
+    inputs.drivePositionRad = drivePositionRad;
+    inputs.driveVelocityRadPerSec = 0.01 * samplesPerCycle / 0.02;
+    inputs.turnAbsolutePosition = new Rotation2d(turnPositionRad + 1.0);
+    inputs.turnPosition = new Rotation2d(turnPositionRad);
+  }
+}
@@ -0,0 +1,60 @@
+package frc.robot.subsystems.drive;
+
+import choreo.trajectory.SwerveSample;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.BenchmarkSupport;
+import frc.robot.util.LatencyTracer;
+import frc.robot.util.LoopProfiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks the drive subsystem's periodic update and setpoint paths. */
+@State(Scope.Thread)
+public class DriveBenchmark {
+  @Param({"1", "5", "12"})
+  public int samplesPerLoop;
+
+  private Drive drive;
+  private final ChassisSpeeds speeds = new ChassisSpeeds(2.0, 1.0, 0.5);
+  private final Pose2d currentPose = new Pose2d(2.0, 3.0, new Rotation2d(0.4));
+  private final SwerveSample sample =
+      new SwerveSample(
+          1.0, 2.1, 3.1, 0.45, 2.0, 1.0, 0.5, 0.0, 0.0, 0.0, new double[4], new double[4]);
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.initialize();
+    drive =
+        new Drive(
+            new OdometryThreads(() -> 0.0),
+            new LoopProfiler(false, 0, 1),
+            new LatencyTracer(false, 1),
+            new PosePersistenceIO() {},
+            new GyroIO() {},
+            new BenchmarkModuleIO(samplesPerLoop),
+            new BenchmarkModuleIO(samplesPerLoop),
+            new BenchmarkModuleIO(samplesPerLoop),
+            new BenchmarkModuleIO(samplesPerLoop));
+    drive.periodic();
+  }
+
+  @Benchmark
+  public void periodic() {
+    drive.periodic();
+  }
+
+  @Benchmark
+  public void runVelocity() {
+    drive.runVelocity(speeds);
+  }
+
+  @Benchmark
+  public void choreoController() {
+    drive.choreoController(currentPose, sample);
+  }
+}
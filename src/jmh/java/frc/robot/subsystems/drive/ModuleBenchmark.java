@@ -0,0 +1,34 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.BenchmarkSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks a single module's input processing, closed loop control and odometry update. */
+@State(Scope.Thread)
+public class ModuleBenchmark {
+  @Param({"1", "5", "12"})
+  public int samplesPerLoop;
+
+  private Module module;
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.initialize();
+    module = new Module(new BenchmarkModuleIO(samplesPerLoop), 0);
+    module.updateInputs();
+    module.periodic();
+    module.runSetpoint(new SwerveModuleState(2.0, new Rotation2d(0.3)));
+  }
+
+  @Benchmark
+  public void periodic() {
+    module.updateInputs();
+    module.periodic();
+  }
+}
@@ -0,0 +1,44 @@
+package frc.robot.subsystems.drive;
+
+import frc.robot.subsystems.drive.ModuleIO.ModuleIOInputs;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks draining the SparkMax odometry queues into module inputs, including refilling the
+ * queues the way the odometry thread does between main loop cycles.
+ */
+@State(Scope.Thread)
+public class OdometryDrainBenchmark {
+  @Param({"1", "5", "12"})
+  public int samplesPerLoop;
+
+  private final ModuleIOInputs inputs = new ModuleIOInputs();
+  private final Queue<Double> timestampQueue = new ArrayBlockingQueue<>(20);
+  private final Queue<Double> drivePositionQueue = new ArrayBlockingQueue<>(20);
+  private final Queue<Double> turnPositionQueue = new ArrayBlockingQueue<>(20);
+  private double timestamp = 0.0;
+
+  @Setup
+  public void setup() {
+    timestamp = 0.0;
+  }
+
+  @Benchmark
+  public ModuleIOInputs drain() {
+    for (int i = 0; i < samplesPerLoop; i++) {
+      timestamp += 0.004;
+      timestampQueue.offer(timestamp);
+      drivePositionQueue.offer(timestamp * 10.0);
+      turnPositionQueue.offer(timestamp);
+    }
+    ModuleIOSparkMax.drainOdometryQueues(
+        inputs, timestampQueue, drivePositionQueue, turnPositionQueue);
+    return inputs;
+  }
+}
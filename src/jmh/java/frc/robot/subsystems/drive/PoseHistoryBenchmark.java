@@ -0,0 +1,50 @@
+package frc.robot.subsystems.drive;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks adding a pose to a full two second history at the odometry rate, and querying the
+ * pose and velocity at a timestamp inside it.
+ */
+@State(Scope.Thread)
+public class PoseHistoryBenchmark {
+  private static final int capacity = (int) (2.0 * Module.ODOMETRY_FREQUENCY);
+
+  private final PoseHistory history = new PoseHistory(capacity);
+  private final double[] out = new double[3];
+  private double timestamp = 0.0;
+
+  @Setup
+  public void setup() {
+    history.clear();
+    timestamp = 0.0;
+    for (int i = 0; i < capacity; i++) {
+      add();
+    }
+  }
+
+  private void add() {
+    timestamp += 1.0 / Module.ODOMETRY_FREQUENCY;
+    history.add(timestamp, 2.0 * timestamp, Math.sin(timestamp), Math.cos(timestamp));
+  }
+
+  @Benchmark
+  public void addPose() {
+    add();
+  }
+
+  @Benchmark
+  public double getPoseAt() {
+    history.getPoseAt(timestamp - 0.0813, out);
+    return out[0];
+  }
+
+  @Benchmark
+  public double getVelocityAt() {
+    history.getVelocityAt(timestamp - 0.0813, 0.02, out);
+    return out[0];
+  }
+}
@@ -0,0 +1,36 @@
+package frc.robot.subsystems.drive;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the cost of one odometry sample through the velocity estimator. Its lag is measured
+ * on real logs by {@code ./gradlew velocityLagStudy} instead.
+ */
+@State(Scope.Thread)
+public class VelocityEstimatorBenchmark {
+  @Param({"5", "8", "16"})
+  public int window;
+
+  @Param({"1", "2"})
+  public int order;
+
+  private VelocityEstimator estimator;
+  private double timestamp = 0.0;
+
+  @Setup
+  public void setup() {
+    estimator = new VelocityEstimator(window, order);
+    timestamp = 0.0;
+  }
+
+  @Benchmark
+  public double addSample() {
+    timestamp += 0.004;
+    estimator.addSample(timestamp, 10.0 * timestamp + Math.sin(timestamp));
+    return estimator.getVelocity();
+  }
+}
@@ -25,6 +25,7 @@ import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.RobotBase;
+import frc.robot.util.log.RateLimitedNT4Publisher.Rule;
 
 /**
  * The Constants class provides a convenient place for teams to hold robot-wide numerical or boolean
@@ -35,8 +36,13 @@ import edu.wpi.first.wpilibj.RobotBase;
  * constants are needed, to reduce verbosity.
  */
 public final class Constants {
+  /** Setting this environment variable on a desktop run replays the named log. */
+  public static final String replayLogEnvironmentVariable = "AKIT_LOG_PATH";
+
   public static final Mode currentMode =
-      RobotBase.isSimulation() ? Mode.SIM : (RobotBase.isReal() ? Mode.REAL : Mode.REPLAY);
+      RobotBase.isReal()
+          ? Mode.REAL
+          : (System.getenv(replayLogEnvironmentVariable) != null ? Mode.REPLAY : Mode.SIM);
 
   public static enum Mode {
     /** Running on a real robot. */
@@ -173,6 +179,77 @@ public final class Constants {
     public static final double angularMOI = mass * trackWidthY / 2 * kAAngular / kALinear; // 20.8
   }
 
+  public static class FeedforwardEstimationConstants {
+    public static final boolean enableEstimation = true;
+    // Replace the drive feedforward gains with the estimate once it is confident
+    public static final boolean enableHotSwap = false;
+    public static final int hotSwapPeriodLoops = 50;
+    public static final double forgettingFactor = 0.9995; // About 8 seconds of samples at 250 Hz
+    public static final double initialCovariance = 1.0;
+    public static final int differenceSpan = 5; // 20 ms at 250 Hz
+    public static final double minVelocityRadPerSec = 1.0;
+    public static final double minVolts = 0.25;
+    public static final long minUpdates = 500;
+    public static final double maxKSBoundVolts = 0.05;
+    public static final double maxKVBoundFraction = 0.05;
+  }
+
+  public static class FirmwareControlConstants {
+    // Close the module velocity and position loops on the motor controllers instead of the RIO.
+    // High-rate control takes priority when both are enabled.
+    public static final boolean useFirmwareControl = false;
+  }
+
+  public static class HighRateControlConstants {
+    // Run module control on the odometry thread at the odometry frequency (not in simulation)
+    public static final boolean enableHighRateControl = false;
+  }
+
+  public static class BatchedControlConstants {
+    // Run setpoint optimization and closed loop control for all modules in one pass over primitive
+    // arrays. Ignored when high-rate or firmware control is enabled.
+    public static final boolean useBatchedControl = false;
+  }
+
+  public static class VelocityEstimationConstants {
+    // Use the drive velocity fit to the odometry samples instead of the motor controller's for
+    // feedback and module states
+    public static final boolean useEstimatedVelocity = false;
+    public static final int window = 8; // 28 ms at 250 Hz
+    public static final int order = 1; // 2 lags less under acceleration but is noisier
+  }
+
+  public static class DeviceConfigConstants {
+    // Hashes of the settings saved to each device's flash, to skip rewriting unchanged settings
+    public static final String hashFile = "/home/lvuser/deviceconfig.properties";
+    public static final int maxAttempts = 3;
+    public static final double timeoutSecs = 10.0;
+  }
+
+  public static class CANBusConstants {
+    // Warn at boot when the planned status frames would use more of the bus than this
+    public static final double maxUtilization = 0.6;
+  }
+
+  public static class HealthMonitorConstants {
+    // Faults, temperatures and firmware of every device are polled this often, off the main loop
+    public static final double pollPeriodSecs = 0.5;
+    public static final double motorTemperatureLimitCelsius = 80.0;
+  }
+
+  public static class PoseHistoryConstants {
+    // Odometry poses kept for queries by timestamp, and the span velocities are taken over
+    public static final double durationSecs = 2.0;
+    public static final double velocitySpanSecs = 0.02;
+  }
+
+  public static class PosePersistenceConstants {
+    // The pose is saved every few loops, and restored after a reboot if it is recent enough
+    public static final String file = "/home/lvuser/pose.bin";
+    public static final int savePeriodLoops = 10; // 5 times per second
+    public static final double maxAgeSecs = 60.0; // Long enough for the RIO to reboot
+  }
+
   public static class ControlConstants {
     public static final double deadband = 0.09375;
   }
@@ -181,6 +258,69 @@ public final class Constants {
     public static final double loopTime = 0.02;
   }
 
+  public static class ProfilingConstants {
+    public static final boolean enableLoopProfiler = true;
+    public static final boolean enableAllocationMonitor = true;
+    public static final boolean enableLatencyTracer = true; // Real robot only
+    public static final int loopProfilerWindow = 250; // 5 seconds of loops
+    public static final int loopProfilerPublishPeriod = 50; // Once per second
+  }
+
+  public static class LoggingConstants {
+    public static final boolean useAsyncLogWriter = true;
+    public static final String logFolder = "/U/logs";
+    public static final String fallbackLogFolder = "/home/lvuser/logs"; // If there is no USB stick
+    public static final int asyncRingBytes = 4 * 1024 * 1024;
+    public static final int asyncBatchBytes = 256 * 1024;
+    // Record every odometry sample to a separate binary log next to the main log
+    public static final boolean logOdometrySamples = true;
+    // Unchanged values are still logged this often
+    public static final int keyframeLoops = 50;
+    // Dropped first when the log writer falls behind
+    public static final String[] debugPrefixes = {
+      "/RealOutputs/LoopProfiler/",
+      "/RealOutputs/Allocation/",
+      "/RealOutputs/GC/",
+      "/RealOutputs/LeftCameraPos",
+      "/RealOutputs/RightCameraPos"
+    };
+  }
+
+  public static class NetworkTablesConstants {
+    public static final boolean rateLimitPublishing = true;
+    public static final double defaultRateHz = 10.0;
+    public static final int maxBytesPerCycle = 16 * 1024;
+    public static final Rule[] publishRules = {
+      new Rule("/RealOutputs/Odometry/Robot", 50.0, 0),
+      new Rule("/DriverStation/", 50.0, 0),
+      new Rule("/RealMetadata/", 50.0, 1),
+      new Rule("/RealOutputs/SwerveStates/", 25.0, 2),
+      new Rule("/RealOutputs/Drive/", 25.0, 2),
+      new Rule("/Drive/", 10.0, 3),
+      new Rule("/Vision/", 5.0, 4),
+      new Rule("/RealOutputs/Vision/", 5.0, 4),
+      new Rule("/RealOutputs/LeftCameraPos", 5.0, 5),
+      new Rule("/RealOutputs/RightCameraPos", 5.0, 5),
+      new Rule("/RealOutputs/LoopProfiler/", 2.0, 6),
+      new Rule("/RealOutputs/Allocation/", 2.0, 6),
+      new Rule("/RealOutputs/GC/", 2.0, 6),
+      new Rule("/RealOutputs/AsyncLogWriter/", 2.0, 6),
+      new Rule("/SystemStats/", 2.0, 6),
+      new Rule("/PowerDistribution/", 2.0, 6)
+    };
+  }
+
+  public static class GovernorConstants {
+    public static final boolean enableLoadShedding = true;
+    public static final double loopBudgetMS = 20.0;
+    // Average loop time to enter DECIMATE_DEBUG, SKIP_STALE_VISION and DEFER_DASHBOARD
+    public static final double[] levelThresholdsMS = {14.0, 17.0, 19.0};
+    public static final double hysteresisMS = 2.0;
+    public static final int windowLoops = 25; // 0.5 seconds of loops
+    public static final int recoveryLoops = 100; // 2 seconds below threshold to step down
+    public static final int decimation = 5; // Shed work runs every 5th loop
+  }
+
   public static class VisionConstants {
     public static final boolean useVision = true;
 
@@ -234,6 +374,8 @@ public final class Constants {
             Rotation2d.fromDegrees(75),
             new int[] {1600, 1200});
 
+    public static final double staleFrameAgeSecs = 0.1;
+
     public static final Matrix<N3, N1> singleTagStdDev =
         VecBuilder.fill(0.8, 0.8, Double.MAX_VALUE);
     public static final Matrix<N3, N1> multiTagStdDev = VecBuilder.fill(0.5, 0.5, Double.MAX_VALUE);
@@ -17,7 +17,17 @@ import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants.LoggingConstants;
+import frc.robot.Constants.NetworkTablesConstants;
 import frc.robot.Constants.VisionConstants;
+import frc.robot.util.ChangeSuppressedLogger;
+import frc.robot.util.LoopGovernor;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.jfr.LoopCycleEvent;
+import frc.robot.util.log.AsyncWPILOGWriter;
+import frc.robot.util.log.RateLimitedNT4Publisher;
+import java.nio.file.Path;
+import org.littletonrobotics.junction.LogDataReceiver;
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LogTable;
 import org.littletonrobotics.junction.LoggedRobot;
@@ -34,8 +44,37 @@ import org.littletonrobotics.urcl.URCL;
  * project.
  */
 public class Robot extends LoggedRobot {
+  private final boolean headless;
   private Command autonomousCommand;
-  private RobotContainer robotContainer;
+  private AsyncWPILOGWriter asyncLogWriter = null;
+  RobotContainer robotContainer;
+
+  private LoopGovernor governor;
+  private LoopProfiler profiler;
+  private LoopProfiler.Phase robotPeriodicPhase;
+  private LoopProfiler.Phase visionPhase;
+  private LoopProfiler.Phase cameraPosesPhase;
+  private LoopProfiler.Phase schedulerPhase;
+  private LoopProfiler.Phase autoChooserPhase;
+  private long cycle = 0;
+  private final ChangeSuppressedLogger.Output leftCameraPoseOutput =
+      new ChangeSuppressedLogger.Output("LeftCameraPos", LoggingConstants.keyframeLoops);
+  private final ChangeSuppressedLogger.Output rightCameraPoseOutput =
+      new ChangeSuppressedLogger.Output("RightCameraPos", LoggingConstants.keyframeLoops);
+
+  public Robot() {
+    this(false);
+  }
+
+  /**
+   * Creates the robot program.
+   *
+   * @param headless Whether to skip publishing to NetworkTables in simulation, used when running
+   *     benchmarks with no dashboard attached.
+   */
+  protected Robot(boolean headless) {
+    this.headless = headless;
+  }
 
   /**
    * This function is run when the robot is first started up and should be used for any
@@ -65,13 +104,26 @@ public class Robot extends LoggedRobot {
     switch (Constants.currentMode) {
       case REAL:
         // Running on a real robot, log to a USB stick ("/U/logs")
-        Logger.addDataReceiver(new WPILOGWriter());
-        Logger.addDataReceiver(new NT4Publisher());
+        if (LoggingConstants.useAsyncLogWriter) {
+          asyncLogWriter =
+              new AsyncWPILOGWriter(
+                  Path.of(LoggingConstants.logFolder),
+                  Path.of(LoggingConstants.fallbackLogFolder),
+                  LoggingConstants.asyncRingBytes,
+                  LoggingConstants.asyncBatchBytes,
+                  LoggingConstants.debugPrefixes);
+          Logger.addDataReceiver(asyncLogWriter);
+        } else {
+          Logger.addDataReceiver(new WPILOGWriter());
+        }
+        Logger.addDataReceiver(createNTPublisher());
         break;
 
       case SIM:
         // Running a physics simulator, log to NT
-        Logger.addDataReceiver(new NT4Publisher());
+        if (!headless) {
+          Logger.addDataReceiver(createNTPublisher());
+        }
         break;
 
       case REPLAY:
@@ -94,6 +146,25 @@ public class Robot extends LoggedRobot {
     // Instantiate our RobotContainer. This will perform all our button bindings,
     // and put our autonomous chooser on the dashboard.
     robotContainer = new RobotContainer();
+
+    governor = robotContainer.governor;
+    profiler = robotContainer.profiler;
+    robotPeriodicPhase = profiler.phase("RobotPeriodic");
+    visionPhase = profiler.phase("Vision");
+    cameraPosesPhase = profiler.phase("CameraPoses");
+    schedulerPhase = profiler.phase("Scheduler");
+    autoChooserPhase = profiler.phase("AutoChooser");
+  }
+
+  /** Creates the NetworkTables receiver, rate limited unless disabled in the constants. */
+  private static LogDataReceiver createNTPublisher() {
+    if (!NetworkTablesConstants.rateLimitPublishing) {
+      return new NT4Publisher();
+    }
+    return new RateLimitedNT4Publisher(
+        NetworkTablesConstants.defaultRateHz,
+        NetworkTablesConstants.maxBytesPerCycle,
+        NetworkTablesConstants.publishRules);
   }
 
   /** This function is called periodically during all modes. */
@@ -104,29 +175,56 @@ public class Robot extends LoggedRobot {
     // finished or interrupted commands, and running subsystem periodic() methods.
     // This must be called from the robot's periodic block in order for anything in
     // the Command-based framework to work.
+    var cycleEvent = LoopCycleEvent.start(cycle++);
+    governor.beginLoop();
+    robotContainer.latencyTracer.beginLoop();
+    boolean logDebug = governor.shouldLogDebug();
+    robotPeriodicPhase.start();
+    visionPhase.start();
     if (VisionConstants.useVision) {
 
       for (var camera : robotContainer.apriltagVision) {
         if (RobotBase.isSimulation()) {
           camera.updateSimPose(robotContainer.drive.getPose());
         }
-        camera.updateInputs();
-        robotContainer.drive.addVisionMeasurement(
-            camera.getEstimatedPose(), camera.getLatestTimestamp(), camera.getLatestStdDevs());
+        if (camera.updateInputs(governor.shouldSkipStaleVision(), logDebug)) {
+          robotContainer.drive.addVisionMeasurement(
+              camera.getEstimatedPose(), camera.getLatestTimestamp(), camera.getLatestStdDevs());
+        }
       }
     }
+    visionPhase.stop();
 
-    Logger.recordOutput(
-        "LeftCameraPos",
-        new Pose3d(robotContainer.drive.getPose())
-            .transformBy(VisionConstants.leftCamera.robotToCamera));
-    Logger.recordOutput(
-        "RightCameraPos",
-        new Pose3d(robotContainer.drive.getPose())
-            .transformBy(VisionConstants.rightCamera.robotToCamera));
+    cameraPosesPhase.start();
+    if (logDebug) {
+      Pose3d robotPose = new Pose3d(robotContainer.drive.getPose());
+      leftCameraPoseOutput.record(robotPose.transformBy(VisionConstants.leftCamera.robotToCamera));
+      rightCameraPoseOutput.record(
+          robotPose.transformBy(VisionConstants.rightCamera.robotToCamera));
+    }
+    cameraPosesPhase.stop();
 
+    schedulerPhase.start();
     CommandScheduler.getInstance().run();
-    robotContainer.autoChooser.update();
+    schedulerPhase.stop();
+
+    autoChooserPhase.start();
+    if (governor.shouldUpdateDashboard()) {
+      robotContainer.autoChooser.update();
+    }
+    autoChooserPhase.stop();
+
+    robotPeriodicPhase.stop();
+    profiler.endLoop();
+    robotContainer.latencyTracer.endLoop();
+    robotContainer.allocationMonitor.periodic();
+    robotContainer.canBusPlanner.periodic();
+    robotContainer.healthMonitor.periodic();
+    if (asyncLogWriter != null) {
+      asyncLogWriter.recordMetrics();
+    }
+    governor.endLoop();
+    LoopCycleEvent.finish(cycleEvent, governor.getLevel().name());
   }
 
   /** This function is called once when the robot is disabled. */
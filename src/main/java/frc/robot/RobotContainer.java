@@ -27,6 +27,14 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
+import frc.robot.Constants.CANBusConstants;
+import frc.robot.Constants.DeviceConfigConstants;
+import frc.robot.Constants.GovernorConstants;
+import frc.robot.Constants.HealthMonitorConstants;
+import frc.robot.Constants.LoggingConstants;
+import frc.robot.Constants.Mode;
+import frc.robot.Constants.PosePersistenceConstants;
+import frc.robot.Constants.ProfilingConstants;
 import frc.robot.Constants.VisionConstants;
 import frc.robot.subsystems.apriltagvision.ApriltagCamera;
 import frc.robot.subsystems.apriltagvision.ApriltagCameraIO;
@@ -37,6 +45,17 @@ import frc.robot.subsystems.drive.GyroIOPigeon2;
 import frc.robot.subsystems.drive.ModuleIO;
 import frc.robot.subsystems.drive.ModuleIOSim;
 import frc.robot.subsystems.drive.ModuleIOSparkMax;
+import frc.robot.subsystems.drive.OdometryThreads;
+import frc.robot.subsystems.drive.PosePersistenceIO;
+import frc.robot.subsystems.drive.PosePersistenceIOFile;
+import frc.robot.util.AllocationMonitor;
+import frc.robot.util.CANBusPlanner;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceHealthMonitor;
+import frc.robot.util.LatencyTracer;
+import frc.robot.util.LoopGovernor;
+import frc.robot.util.LoopProfiler;
+import java.nio.file.Path;
 
 /**
  * This class is where the bulk of the robot should be declared. Since Command-based is a
@@ -45,12 +64,41 @@ import frc.robot.subsystems.drive.ModuleIOSparkMax;
  * subsystems, commands, and button mappings) should be declared here.
  */
 public class RobotContainer {
+  public final LoopProfiler profiler =
+      new LoopProfiler(
+          ProfilingConstants.enableLoopProfiler,
+          ProfilingConstants.enableAllocationMonitor,
+          ProfilingConstants.loopProfilerWindow,
+          ProfilingConstants.loopProfilerPublishPeriod);
+  // Only a real driver station sends the packets the tracer times
+  public final LatencyTracer latencyTracer =
+      new LatencyTracer(
+          ProfilingConstants.enableLatencyTracer && Constants.currentMode == Mode.REAL,
+          ProfilingConstants.loopProfilerPublishPeriod);
+  public final LoopGovernor governor =
+      new LoopGovernor(
+          GovernorConstants.enableLoadShedding,
+          GovernorConstants.loopBudgetMS,
+          GovernorConstants.levelThresholdsMS,
+          GovernorConstants.hysteresisMS,
+          GovernorConstants.windowLoops,
+          GovernorConstants.recoveryLoops,
+          GovernorConstants.decimation);
+
   // Subsystems
+  public final OdometryThreads odometryThreads = new OdometryThreads();
+  public final AllocationMonitor allocationMonitor =
+      new AllocationMonitor(ProfilingConstants.enableAllocationMonitor, odometryThreads);
+  public final CANBusPlanner canBusPlanner =
+      new CANBusPlanner(CANBusConstants.maxUtilization, odometryThreads);
+  public final DeviceHealthMonitor healthMonitor =
+      new DeviceHealthMonitor(HealthMonitorConstants.pollPeriodSecs, odometryThreads.getLock());
   public final Drive drive;
   public final ApriltagCamera[] apriltagVision;
 
   public AutoChooser autoChooser;
   private AutoFactory autoFactory;
+  private AutoRoutines autoRoutines;
 
   // Controller
   private final CommandXboxController controller = new CommandXboxController(0);
@@ -63,13 +111,39 @@ public class RobotContainer {
     switch (Constants.currentMode) {
       case REAL:
         // Real robot, instantiate hardware IO implementations
+        if (LoggingConstants.logOdometrySamples) {
+          odometryThreads.enableSampleLogs(Path.of(LoggingConstants.logFolder));
+        }
+        // Configure every device in parallel before anything starts using them
+        var configurator =
+            new DeviceConfigurator(
+                Path.of(DeviceConfigConstants.hashFile),
+                DeviceConfigConstants.maxAttempts,
+                DeviceConfigConstants.timeoutSecs);
+        var gyroIO =
+            new GyroIOPigeon2(false, odometryThreads, configurator, canBusPlanner, healthMonitor);
+        var flModuleIO =
+            new ModuleIOSparkMax(0, odometryThreads, configurator, canBusPlanner, healthMonitor);
+        var frModuleIO =
+            new ModuleIOSparkMax(1, odometryThreads, configurator, canBusPlanner, healthMonitor);
+        var blModuleIO =
+            new ModuleIOSparkMax(2, odometryThreads, configurator, canBusPlanner, healthMonitor);
+        var brModuleIO =
+            new ModuleIOSparkMax(3, odometryThreads, configurator, canBusPlanner, healthMonitor);
+        canBusPlanner.plan();
+        configurator.configureAll();
+        healthMonitor.start();
         drive =
             new Drive(
-                new GyroIOPigeon2(false),
-                new ModuleIOSparkMax(0),
-                new ModuleIOSparkMax(1),
-                new ModuleIOSparkMax(2),
-                new ModuleIOSparkMax(3));
+                odometryThreads,
+                profiler,
+                latencyTracer,
+                new PosePersistenceIOFile(Path.of(PosePersistenceConstants.file)),
+                gyroIO,
+                flModuleIO,
+                frModuleIO,
+                blModuleIO,
+                brModuleIO);
         // apriltagVision =
         //     new ApriltagCamera[] {
         //       new ApriltagCamera(
@@ -91,6 +165,10 @@ public class RobotContainer {
         // Sim robot, instantiate physics sim IO implementations
         drive =
             new Drive(
+                odometryThreads,
+                profiler,
+                latencyTracer,
+                new PosePersistenceIO() {},
                 new GyroIO() {},
                 new ModuleIOSim(),
                 new ModuleIOSim(),
@@ -109,6 +187,10 @@ public class RobotContainer {
         // Replayed robot, disable IO implementations
         drive =
             new Drive(
+                odometryThreads,
+                profiler,
+                latencyTracer,
+                new PosePersistenceIO() {},
                 new GyroIO() {},
                 new ModuleIO() {},
                 new ModuleIO() {},
@@ -135,7 +217,7 @@ public class RobotContainer {
             this::isRedAlliance,
             new AutoBindings());
 
-    AutoRoutines autoRoutines = new AutoRoutines(drive, autoFactory);
+    autoRoutines = new AutoRoutines(drive, autoFactory);
     autoChooser = new AutoChooser(autoFactory, "");
 
     autoChooser.addAutoRoutine("figureEightTest", autoRoutines::figureEightTest);
@@ -182,6 +264,15 @@ public class RobotContainer {
     return autoChooser.getSelectedAutoRoutine();
   }
 
+  /**
+   * Returns the named Choreo auto routine without going through the dashboard chooser.
+   *
+   * @param name the trajectory name, e.g. "figureEightTest"
+   */
+  public Command getAutonomousCommand(String name) {
+    return autoRoutines.autoPathCommandFactory(name);
+  }
+
   private boolean isRedAlliance() {
     return DriverStation.getAlliance().orElseGet(() -> Alliance.Blue).equals(Alliance.Red);
   }
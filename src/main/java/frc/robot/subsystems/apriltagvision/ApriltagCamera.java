@@ -15,8 +15,11 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
+import frc.robot.Constants.LoggingConstants;
 import frc.robot.Constants.VisionConstants;
 import frc.robot.Constants.VisionConstants.CameraInfo;
+import frc.robot.util.ChangeSuppressedLogger;
+import frc.robot.util.jfr.VisionFrameEvent;
 import org.littletonrobotics.junction.Logger;
 import org.photonvision.PhotonPoseEstimator;
 import org.photonvision.PhotonPoseEstimator.PoseStrategy;
@@ -26,6 +29,8 @@ public class ApriltagCamera {
 
   private final ApriltagCameraIO io;
   private final AprilTagCameraIOInputsAutoLogged inputs = new AprilTagCameraIOInputsAutoLogged();
+  private final ChangeSuppressedLogger.Inputs loggedInputs;
+  private final ChangeSuppressedLogger.Output poseOutput;
 
   private final PhotonPoseEstimator poseEstimator;
   private final CameraInfo cameraInfo;
@@ -34,10 +39,20 @@ public class ApriltagCamera {
   private Matrix<N3, N1> stdDevs =
       VecBuilder.fill(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
   private double latestTimestamp = -1;
+  private double lastFrameTimestamp = -1;
 
   public ApriltagCamera(ApriltagCameraIO io, CameraInfo cameraInfo) {
     this.io = io;
     this.cameraInfo = cameraInfo;
+    loggedInputs =
+        new ChangeSuppressedLogger.Inputs(
+            "Vision/ApriltagCameras/" + cameraInfo.cameraName + "/Inputs",
+            inputs,
+            LoggingConstants.keyframeLoops);
+    poseOutput =
+        new ChangeSuppressedLogger.Output(
+            "Vision/ApriltagCameras/" + cameraInfo.cameraName + "/Pose",
+            LoggingConstants.keyframeLoops);
 
     poseEstimator =
         new PhotonPoseEstimator(
@@ -47,8 +62,31 @@ public class ApriltagCamera {
   }
 
   public void updateInputs() {
+    updateInputs(false, true);
+  }
+
+  /**
+   * Reads the latest camera result and updates the pose estimate.
+   *
+   * @param skipStaleFrames Whether to skip frames that were already processed or are older than
+   *     {@link VisionConstants#staleFrameAgeSecs}, keeping the previous estimate.
+   * @param logDebug Whether to log the detected corners and tag poses.
+   * @return Whether the frame was processed, so the estimate should be passed to the drive.
+   */
+  public boolean updateInputs(boolean skipStaleFrames, boolean logDebug) {
     io.updateInputs(inputs);
+    // Only changes when a new frame arrives
+    loggedInputs.process(Double.doubleToRawLongBits(inputs.result.getTimestampSeconds()));
+
+    double frameTimestamp = inputs.result.getTimestampSeconds();
+    if (skipStaleFrames
+        && (frameTimestamp == lastFrameTimestamp
+            || Logger.getTimestamp() / 1e6 - frameTimestamp > VisionConstants.staleFrameAgeSecs)) {
+      return false;
+    }
+    lastFrameTimestamp = frameTimestamp;
 
+    var frameEvent = VisionFrameEvent.start(cameraInfo.cameraName);
     var result = poseEstimator.update(inputs.result);
 
     if (result.isPresent()) {
@@ -75,20 +113,26 @@ public class ApriltagCamera {
         }
       }
 
-      Logger.recordOutput(
-          "Vision/ApriltagCameras/" + cameraInfo.cameraName + "/Corners", tagCorners);
-      Logger.recordOutput(
-          "Vision/ApriltagCameras/" + cameraInfo.cameraName + "/TagPoses", tagPoses);
+      if (logDebug) {
+        Logger.recordOutput(
+            "Vision/ApriltagCameras/" + cameraInfo.cameraName + "/Corners", tagCorners);
+        Logger.recordOutput(
+            "Vision/ApriltagCameras/" + cameraInfo.cameraName + "/TagPoses", tagPoses);
+      }
 
     } else {
       latestPose = new Pose3d(new Translation3d(100, 100, 100), new Rotation3d());
       stdDevs = VecBuilder.fill(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
-      Logger.recordOutput(
-          "Vision/ApriltagCameras/" + cameraInfo.cameraName + "/Corners", new Translation2d[] {});
+      if (logDebug) {
+        Logger.recordOutput(
+            "Vision/ApriltagCameras/" + cameraInfo.cameraName + "/Corners",
+            new Translation2d[] {});
+      }
     }
+    VisionFrameEvent.finish(frameEvent, inputs.result.targets.size(), result.isPresent());
 
-    Logger.processInputs("Vision/ApriltagCameras/" + cameraInfo.cameraName + "/Inputs", inputs);
-    Logger.recordOutput("Vision/ApriltagCameras/" + cameraInfo.cameraName + "/Pose", latestPose);
+    poseOutput.record(latestPose);
+    return true;
   }
 
   public Pose3d getEstimatedPose() {
@@ -0,0 +1,112 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+import java.util.Arrays;
+
+/**
+ * Runs the setpoint optimization and closed loop control of every module in one pass over
+ * primitive arrays, instead of through each module's {@code SwerveModuleState}, {@code Rotation2d},
+ * {@code PIDController} and {@code SimpleMotorFeedforward}.
+ *
+ * <p>The state of all modules is held as a struct of arrays, indexed by module, so each step is a
+ * tight loop that touches a few contiguous arrays and allocates nothing. The math matches the per
+ * module path: feedback is proportional plus derivative on the error, the turn error wraps, and the
+ * drive setpoint is scaled by the cosine of the turn error.
+ */
+public class BatchedModuleControl {
+  static final int moduleCount = 4;
+  private static final double halfPi = Math.PI / 2.0;
+
+  private final double period;
+
+  // Inputs, written by each module before a step. NaN setpoints mean no control.
+  final double[] angleRad = new double[moduleCount];
+  final double[] velocityRadPerSec = new double[moduleCount];
+  final double[] angleSetpointRad = new double[moduleCount];
+  final double[] velocitySetpointRadPerSec = new double[moduleCount];
+
+  // Gains, per radian (per second) of the wheel or module
+  final double[] driveKS = new double[moduleCount];
+  final double[] driveKV = new double[moduleCount];
+  final double[] driveKP = new double[moduleCount];
+  final double[] driveKD = new double[moduleCount];
+  final double[] turnKP = new double[moduleCount];
+  final double[] turnKD = new double[moduleCount];
+
+  // Outputs. NaN means no voltage should be sent.
+  final double[] turnVolts = new double[moduleCount];
+  final double[] driveVolts = new double[moduleCount];
+
+  // Previous errors for the derivative terms, NaN until the loop has run once
+  private final double[] previousTurnError = new double[moduleCount];
+  private final double[] previousDriveError = new double[moduleCount];
+
+  /**
+   * Creates a controller.
+   *
+   * @param period Time between calls to {@link #calculate()} in seconds.
+   */
+  public BatchedModuleControl(double period) {
+    this.period = period;
+    Arrays.fill(angleSetpointRad, Double.NaN);
+    Arrays.fill(velocitySetpointRadPerSec, Double.NaN);
+    Arrays.fill(previousTurnError, Double.NaN);
+    Arrays.fill(previousDriveError, Double.NaN);
+  }
+
+  /**
+   * Optimizes setpoints in place, like {@code SwerveModuleState.optimize}: when a setpoint is more
+   * than 90 degrees from the module angle, it is turned around and its speed reversed. The speeds
+   * may be in any unit.
+   *
+   * @param speeds Setpoint speed of each module.
+   * @param anglesRad Setpoint angle of each module, wrapped to [-pi, pi] afterwards.
+   */
+  public void optimize(double[] speeds, double[] anglesRad) {
+    for (int i = 0; i < moduleCount; i++) {
+      double delta = MathUtil.angleModulus(anglesRad[i] - angleRad[i]);
+      boolean reverse = Math.abs(delta) > halfPi;
+      speeds[i] = reverse ? -speeds[i] : speeds[i];
+      anglesRad[i] = MathUtil.angleModulus(reverse ? anglesRad[i] + Math.PI : anglesRad[i]);
+    }
+  }
+
+  /** Computes the turn and drive voltages of every module from the inputs. */
+  public void calculate() {
+    for (int i = 0; i < moduleCount; i++) {
+      double angleSetpoint = angleSetpointRad[i];
+      if (Double.isNaN(angleSetpoint)) {
+        // Drive control only runs with turn control
+        turnVolts[i] = Double.NaN;
+        driveVolts[i] = Double.NaN;
+        previousTurnError[i] = Double.NaN;
+        previousDriveError[i] = Double.NaN;
+        continue;
+      }
+      double turnError = MathUtil.angleModulus(angleSetpoint - angleRad[i]);
+      turnVolts[i] =
+          turnKP[i] * turnError + turnKD[i] * derivative(turnError, previousTurnError[i]);
+      previousTurnError[i] = turnError;
+
+      double velocitySetpoint = velocitySetpointRadPerSec[i];
+      if (Double.isNaN(velocitySetpoint)) {
+        driveVolts[i] = Double.NaN;
+        previousDriveError[i] = Double.NaN;
+        continue;
+      }
+      velocitySetpoint *= Math.cos(turnError);
+      double driveError = velocitySetpoint - velocityRadPerSec[i];
+      driveVolts[i] =
+          driveKS[i] * Math.signum(velocitySetpoint)
+              + driveKV[i] * velocitySetpoint
+              + driveKP[i] * driveError
+              + driveKD[i] * derivative(driveError, previousDriveError[i]);
+      previousDriveError[i] = driveError;
+    }
+  }
+
+  private double derivative(double error, double previousError) {
+    // PIDController starts from a previous error of zero
+    return (error - (Double.isNaN(previousError) ? 0.0 : previousError)) / period;
+  }
+}
@@ -28,6 +28,7 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.numbers.N1;
@@ -37,21 +38,53 @@ import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
+import frc.robot.Constants;
 import frc.robot.Constants.AutoConstants;
+import frc.robot.Constants.BatchedControlConstants;
 import frc.robot.Constants.ControlConstants;
 import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.FirmwareControlConstants;
+import frc.robot.Constants.HighRateControlConstants;
+import frc.robot.Constants.LoggingConstants;
+import frc.robot.Constants.Mode;
+import frc.robot.Constants.PoseHistoryConstants;
+import frc.robot.Constants.PosePersistenceConstants;
+import frc.robot.util.ChangeSuppressedLogger;
+import frc.robot.util.LatencyTracer;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.jfr.DrivePhaseEvent;
+import frc.robot.util.jfr.OdometryLockWaitEvent;
+import java.util.Optional;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 public class Drive extends SubsystemBase {
-  static final Lock odometryLock = new ReentrantLock();
+  private final Lock odometryLock;
+  private final LoopProfiler.Phase periodicPhase;
+  private final LatencyTracer latencyTracer;
   private final GyroIO gyroIO;
   private final GyroIOInputsAutoLogged gyroInputs = new GyroIOInputsAutoLogged();
+  private final PosePersistenceIO posePersistenceIO;
+  private final PosePersistenceIOInputsAutoLogged posePersistenceInputs =
+      new PosePersistenceIOInputsAutoLogged();
+  private boolean savedPoseDecided = false;
+  private boolean savedPoseRestored = false;
+  private int loopsSinceSave = 0;
   private final Module[] modules = new Module[4]; // FL, FR, BL, BR
   private final SysIdRoutine sysId;
+  private final HighRateModuleControl highRateControl; // Null if control runs in the main loop
+  private final BatchedModuleControl batchedControl; // Null if each module runs its own control
+  private final double[] batchedSpeeds = new double[4];
+  private final double[] batchedAngles = new double[4];
+  private final HighRateControlInputsAutoLogged highRateInputs =
+      new HighRateControlInputsAutoLogged();
+  private final ChangeSuppressedLogger.Output setpointsOutput =
+      new ChangeSuppressedLogger.Output("SwerveStates/Setpoints", LoggingConstants.keyframeLoops);
+  private final ChangeSuppressedLogger.Output optimizedSetpointsOutput =
+      new ChangeSuppressedLogger.Output(
+          "SwerveStates/SetpointsOptimized", LoggingConstants.keyframeLoops);
 
   private SwerveDriveKinematics kinematics = new SwerveDriveKinematics(getModuleTranslations());
   private Rotation2d rawGyroRotation = new Rotation2d();
@@ -64,6 +97,12 @@ public class Drive extends SubsystemBase {
       };
   private SwerveDrivePoseEstimator poseEstimator =
       new SwerveDrivePoseEstimator(kinematics, rawGyroRotation, lastModulePositions, new Pose2d());
+  // Wheel and gyro odometry alone, so its history is never shifted by vision measurements
+  private SwerveDriveOdometry odometry =
+      new SwerveDriveOdometry(kinematics, rawGyroRotation, lastModulePositions, new Pose2d());
+  private final PoseHistory odometryHistory =
+      new PoseHistory((int) (PoseHistoryConstants.durationSecs * Module.ODOMETRY_FREQUENCY));
+  private final double[] poseHistoryScratch = new double[3];
 
   PIDController autoXController =
       new PIDController(AutoConstants.kPTranslation, 0.0, AutoConstants.kDTranslation);
@@ -73,20 +112,51 @@ public class Drive extends SubsystemBase {
       new PIDController(AutoConstants.kPRotation, 0.0, AutoConstants.kDRotation);
 
   public Drive(
+      OdometryThreads odometryThreads,
+      LoopProfiler profiler,
+      LatencyTracer latencyTracer,
+      PosePersistenceIO posePersistenceIO,
       GyroIO gyroIO,
       ModuleIO flModuleIO,
       ModuleIO frModuleIO,
       ModuleIO blModuleIO,
       ModuleIO brModuleIO) {
+    this.odometryLock = odometryThreads.getLock();
+    this.periodicPhase = profiler.phase("Subsystems/Drive");
+    this.latencyTracer = latencyTracer;
+    this.posePersistenceIO = posePersistenceIO;
     this.gyroIO = gyroIO;
     modules[0] = new Module(flModuleIO, 0);
     modules[1] = new Module(frModuleIO, 1);
     modules[2] = new Module(blModuleIO, 2);
     modules[3] = new Module(brModuleIO, 3);
 
+    // Run module control at the odometry rate if enabled. The simulator has no odometry thread, so
+    // it keeps running control in the main loop.
+    if (HighRateControlConstants.enableHighRateControl && Constants.currentMode != Mode.SIM) {
+      highRateControl = new HighRateModuleControl(flModuleIO, frModuleIO, blModuleIO, brModuleIO);
+      odometryThreads.setSampleListeners(highRateControl::createListener);
+      for (var module : modules) {
+        module.setHighRateControl(true);
+      }
+    } else {
+      highRateControl = null;
+    }
+
+    // Otherwise, run control for all modules in one batched pass if enabled
+    if (highRateControl == null
+        && BatchedControlConstants.useBatchedControl
+        && !FirmwareControlConstants.useFirmwareControl) {
+      batchedControl = new BatchedModuleControl(0.02);
+      for (var module : modules) {
+        module.setBatchedControl(true);
+      }
+    } else {
+      batchedControl = null;
+    }
+
     // Start threads (no-op for each if no signals have been created)
-    PhoenixOdometryThread.getInstance().start();
-    SparkMaxOdometryThread.getInstance().start();
+    odometryThreads.start();
 
     // Configure SysId
     sysId =
@@ -107,16 +177,41 @@ public class Drive extends SubsystemBase {
   }
 
   public void periodic() {
+    periodicPhase.start();
+    var phaseEvent = DrivePhaseEvent.start("UpdateInputs");
+    var lockEvent = OdometryLockWaitEvent.start("Drive");
     odometryLock.lock(); // Prevents odometry updates while reading data
+    OdometryLockWaitEvent.finish(lockEvent);
     gyroIO.updateInputs(gyroInputs);
     for (var module : modules) {
       module.updateInputs();
     }
+    if (highRateControl != null) {
+      highRateControl.updateInputs(highRateInputs);
+    }
     odometryLock.unlock();
+    DrivePhaseEvent.finish(phaseEvent);
+
+    phaseEvent = DrivePhaseEvent.start("Modules");
     Logger.processInputs("Drive/Gyro", gyroInputs);
+    if (highRateControl != null) {
+      Logger.processInputs("Drive/HighRateControl", highRateInputs);
+    }
     for (var module : modules) {
       module.periodic();
     }
+    if (batchedControl != null) {
+      for (var module : modules) {
+        module.writeControlState(batchedControl);
+      }
+      batchedControl.calculate();
+      for (var module : modules) {
+        module.applyControlOutput(batchedControl);
+      }
+    }
+    if (highRateControl == null) {
+      latencyTracer.markCommandSent();
+    }
 
     // Stop moving when disabled
     if (DriverStation.isDisabled()) {
@@ -126,11 +221,15 @@ public class Drive extends SubsystemBase {
     }
     // Log empty setpoint states when disabled
     if (DriverStation.isDisabled()) {
-      Logger.recordOutput("SwerveStates/Setpoints", new SwerveModuleState[] {});
-      Logger.recordOutput("SwerveStates/SetpointsOptimized", new SwerveModuleState[] {});
+      setpointsOutput.record();
+      optimizedSetpointsOutput.record();
     }
+    publishHighRateSetpoints();
+
+    DrivePhaseEvent.finish(phaseEvent);
 
     // Update odometry
+    phaseEvent = DrivePhaseEvent.start("Odometry");
     double[] sampleTimestamps =
         modules[0].getOdometryTimestamps(); // All signals are sampled together
     int sampleCount = sampleTimestamps.length;
@@ -160,7 +259,65 @@ public class Drive extends SubsystemBase {
 
       // Apply update
       poseEstimator.updateWithTime(sampleTimestamps[i], rawGyroRotation, modulePositions);
+      Pose2d odometryPose = odometry.update(rawGyroRotation, modulePositions);
+      odometryHistory.add(
+          sampleTimestamps[i],
+          odometryPose.getX(),
+          odometryPose.getY(),
+          odometryPose.getRotation().getRadians());
+      latencyTracer.addOdometrySample(sampleTimestamps[i], modulePositions);
+    }
+    DrivePhaseEvent.finish(phaseEvent);
+
+    // Start from the pose saved before a reboot, then keep saving it. Nothing is saved until the
+    // restore is decided, so another reboot while waiting does not lose the saved pose.
+    if (!savedPoseDecided) {
+      checkSavedPose();
+    } else if (++loopsSinceSave >= PosePersistenceConstants.savePeriodLoops) {
+      posePersistenceIO.save(getPose(), rawGyroRotation);
+      loopsSinceSave = 0;
+    }
+    periodicPhase.stop();
+  }
+
+  /**
+   * Decides whether to restore the pose saved before a reboot, called each loop until decided.
+   *
+   * <p>The wall clock is only set once the driver station connects, which after a brownout is
+   * usually after the first loop. A state saved while enabled means the robot rebooted while in
+   * use, so it is restored right away and its age is checked once the clock is set. Otherwise the
+   * restore waits for the clock. A state saved in a different match than the current one, or too
+   * long ago, is never used, and enabling the robot or setting the pose ends the wait.
+   */
+  private void checkSavedPose() {
+    posePersistenceIO.updateInputs(posePersistenceInputs);
+    Logger.processInputs("Drive/PosePersistence", posePersistenceInputs);
+    var saved = posePersistenceInputs;
+    boolean otherMatch =
+        saved.savedMatchNumber != 0
+            && DriverStation.isFMSAttached()
+            && DriverStation.getMatchNumber() != saved.savedMatchNumber;
+    if (!saved.hasSavedState) {
+      savedPoseDecided = true;
+    } else if (otherMatch || saved.ageKnown) {
+      boolean fresh =
+          !otherMatch
+              && saved.ageSecs >= 0.0
+              && saved.ageSecs <= PosePersistenceConstants.maxAgeSecs;
+      if (fresh != savedPoseRestored) {
+        // Restore, or undo an early restore that turned out to be stale
+        resetPose(fresh ? saved.pose : new Pose2d());
+        savedPoseRestored = fresh;
+      }
+      savedPoseDecided = true;
+    } else if (DriverStation.isEnabled()) {
+      savedPoseDecided = true; // Already moving, so keep the pose it started with
+    } else if (saved.savedWhileEnabled && !savedPoseRestored) {
+      resetPose(saved.pose);
+      savedPoseRestored = true;
     }
+    Logger.recordOutput("Drive/PosePersistence/Restored", savedPoseRestored);
+    Logger.recordOutput("Drive/PosePersistence/Decided", savedPoseDecided);
   }
 
   /**
@@ -176,14 +333,44 @@ public class Drive extends SubsystemBase {
 
     // Send setpoints to modules
     SwerveModuleState[] optimizedSetpointStates = new SwerveModuleState[4];
-    for (int i = 0; i < 4; i++) {
-      // The module returns the optimized state, useful for logging
-      optimizedSetpointStates[i] = modules[i].runSetpoint(setpointStates[i]);
+    if (batchedControl != null) {
+      // Optimize every setpoint in one pass
+      for (int i = 0; i < 4; i++) {
+        modules[i].writeControlState(batchedControl);
+        batchedSpeeds[i] = setpointStates[i].speedMetersPerSecond;
+        batchedAngles[i] = setpointStates[i].angle.getRadians();
+      }
+      batchedControl.optimize(batchedSpeeds, batchedAngles);
+      for (int i = 0; i < 4; i++) {
+        optimizedSetpointStates[i] =
+            new SwerveModuleState(batchedSpeeds[i], new Rotation2d(batchedAngles[i]));
+        modules[i].setOptimizedSetpoint(optimizedSetpointStates[i]);
+      }
+    } else {
+      for (int i = 0; i < 4; i++) {
+        // The module returns the optimized state, useful for logging
+        optimizedSetpointStates[i] = modules[i].runSetpoint(setpointStates[i]);
+      }
     }
+    latencyTracer.markSetpoint();
+    publishHighRateSetpoints();
 
     // Log setpoint states
-    Logger.recordOutput("SwerveStates/Setpoints", setpointStates);
-    Logger.recordOutput("SwerveStates/SetpointsOptimized", optimizedSetpointStates);
+    setpointsOutput.record(setpointStates);
+    optimizedSetpointsOutput.record(optimizedSetpointStates);
+  }
+
+  /** Publishes the module setpoints to the high-rate controller, if it is running. */
+  private void publishHighRateSetpoints() {
+    if (highRateControl == null) {
+      return;
+    }
+    HighRateModuleControl.Setpoints setpoints = highRateControl.getWriteBuffer();
+    for (var module : modules) {
+      module.writeSetpoint(setpoints);
+    }
+    highRateControl.publish();
+    latencyTracer.markCommandSent(); // The odometry thread sends them with its next sample
   }
 
   /** Stops the drive. */
@@ -204,6 +391,7 @@ public class Drive extends SubsystemBase {
               new Rotation2d(xSupplier.getAsDouble(), ySupplier.getAsDouble());
           double omega =
               MathUtil.applyDeadband(omegaSupplier.getAsDouble(), ControlConstants.deadband);
+          latencyTracer.markInputRead(linearMagnitude != 0.0 || omega != 0.0);
 
           // Square values
           linearMagnitude = linearMagnitude * linearMagnitude;
@@ -283,7 +471,106 @@ public class Drive extends SubsystemBase {
 
   /** Resets the current odometry pose. */
   public void setPose(Pose2d pose) {
-    poseEstimator.resetPosition(rawGyroRotation, getModulePositions(), pose);
+    resetPose(pose);
+    savedPoseDecided = true; // An explicit pose replaces any saved one
+  }
+
+  private void resetPose(Pose2d pose) {
+    // The gyro and wheel positions restart at zero after a reboot, so anchor the pose to them
+    SwerveModulePosition[] modulePositions = getModulePositions();
+    poseEstimator.resetPosition(rawGyroRotation, modulePositions, pose);
+    odometry.resetPosition(rawGyroRotation, modulePositions, pose);
+    odometryHistory.clear(); // Older poses no longer connect to the new one
+  }
+
+  /**
+   * Returns the estimated pose at a timestamp, interpolated between odometry samples. Timestamps
+   * outside the history, which covers the last few seconds, are clamped to its ends.
+   *
+   * <p>Like the pose estimator, the history holds odometry alone and the estimator's current
+   * correction is applied when it is queried. Vision measurements therefore move the whole history
+   * at once rather than only the samples after them.
+   *
+   * @param timestamp The time in seconds, on the same clock as the odometry samples.
+   * @return The pose, or empty if there have been no samples since the pose was last reset.
+   */
+  public Optional<Pose2d> getPoseAt(double timestamp) {
+    if (!getPoseAt(timestamp, poseHistoryScratch)) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new Pose2d(
+            poseHistoryScratch[0],
+            poseHistoryScratch[1],
+            new Rotation2d(poseHistoryScratch[2])));
+  }
+
+  /**
+   * Gets the estimated pose at a timestamp like {@link #getPoseAt(double)}, without allocating.
+   *
+   * @param timestamp The time in seconds, on the same clock as the odometry samples.
+   * @param out Receives the x and y in meters and the rotation in radians.
+   * @return Whether there was a pose. If not, the output is left unchanged.
+   */
+  public boolean getPoseAt(double timestamp, double[] out) {
+    if (!odometryHistory.getPoseAt(timestamp, out)) {
+      return false;
+    }
+
+    // The correction maps the latest odometry pose onto the latest estimate, in field coordinates
+    Pose2d estimatedPose = poseEstimator.getEstimatedPosition();
+    Pose2d odometryPose = odometry.getPoseMeters();
+    double rotation =
+        estimatedPose.getRotation().getRadians() - odometryPose.getRotation().getRadians();
+    double cos = Math.cos(rotation);
+    double sin = Math.sin(rotation);
+    double dx = out[0] - odometryPose.getX();
+    double dy = out[1] - odometryPose.getY();
+    out[0] = estimatedPose.getX() + dx * cos - dy * sin;
+    out[1] = estimatedPose.getY() + dx * sin + dy * cos;
+    out[2] = MathUtil.angleModulus(out[2] + rotation);
+    return true;
+  }
+
+  /**
+   * Returns the field relative velocity at a timestamp, from the change in the odometry pose around
+   * it. Vision corrections never show up as motion; they only rotate the velocity into the
+   * corrected field frame.
+   *
+   * @param timestamp The time in seconds, on the same clock as the odometry samples.
+   * @return The velocity, or empty if there have been fewer than two samples since the pose was
+   *     last reset.
+   */
+  public Optional<ChassisSpeeds> getVelocityAt(double timestamp) {
+    if (!getVelocityAt(timestamp, poseHistoryScratch)) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new ChassisSpeeds(poseHistoryScratch[0], poseHistoryScratch[1], poseHistoryScratch[2]));
+  }
+
+  /**
+   * Gets the field relative velocity at a timestamp like {@link #getVelocityAt(double)}, without
+   * allocating.
+   *
+   * @param timestamp The time in seconds, on the same clock as the odometry samples.
+   * @param out Receives the x and y velocities in meters per second and the angular velocity in
+   *     radians per second.
+   * @return Whether there was a velocity. If not, the output is left unchanged.
+   */
+  public boolean getVelocityAt(double timestamp, double[] out) {
+    if (!odometryHistory.getVelocityAt(timestamp, PoseHistoryConstants.velocitySpanSecs, out)) {
+      return false;
+    }
+    double rotation =
+        poseEstimator.getEstimatedPosition().getRotation().getRadians()
+            - odometry.getPoseMeters().getRotation().getRadians();
+    double cos = Math.cos(rotation);
+    double sin = Math.sin(rotation);
+    double vx = out[0];
+    out[0] = vx * cos - out[1] * sin;
+    out[1] = vx * sin + out[1] * cos;
+    return true;
   }
 
   /**
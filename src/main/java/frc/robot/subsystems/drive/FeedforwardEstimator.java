@@ -0,0 +1,217 @@
+package frc.robot.subsystems.drive;
+
+import frc.robot.Constants.FeedforwardEstimationConstants;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Estimates a module's drive feedforward gains online by recursive least squares.
+ *
+ * <p>Each high-rate odometry sample is turned into a velocity and acceleration by differencing the
+ * drive position over a short span, then fit to {@code V = kS * sgn(v) + kV * v + kA * a} with the
+ * voltage applied during that cycle. Older samples are forgotten exponentially, so the estimate
+ * follows changes in carpet, battery and wear. The 95% confidence bound of each gain comes from the
+ * residual variance and the parameter covariance.
+ *
+ * <p>Only logged inputs are used, so replay produces the same estimates. Nothing here allocates
+ * after construction.
+ */
+public class FeedforwardEstimator {
+  private static final int parameterCount = 3;
+  private static final double confidenceScale = 1.96; // 95% two-sided
+  private static final double maxSampleGapSecs = 0.1;
+
+  private final double forgettingFactor = FeedforwardEstimationConstants.forgettingFactor;
+  private final int span = FeedforwardEstimationConstants.differenceSpan;
+  private final double maxCovarianceTrace;
+
+  // Estimate and its unscaled covariance, row-major
+  private final double[] theta = new double[parameterCount];
+  private final double[] covariance = new double[parameterCount * parameterCount];
+  private double noiseVariance = 0.0;
+  private long updates = 0;
+
+  // Scratch, so updates do not allocate
+  private final double[] phi = new double[parameterCount];
+  private final double[] covariancePhi = new double[parameterCount];
+
+  // Recent samples for differencing, indexed by sample count modulo the length
+  private final double[] timestamps;
+  private final double[] positions;
+  private final double[] velocities;
+  private final double[] velocityTimestamps;
+  private long sampleCount = 0;
+
+  private final String kSKey;
+  private final String kVKey;
+  private final String kAKey;
+  private final String kSBoundKey;
+  private final String kVBoundKey;
+  private final String kABoundKey;
+  private final String updatesKey;
+
+  /**
+   * Creates an estimator.
+   *
+   * @param index The module index, used for the output keys.
+   * @param kS Initial static gain in volts.
+   * @param kV Initial velocity gain in volts per radian per second.
+   * @param kA Initial acceleration gain in volts per radian per second squared.
+   */
+  public FeedforwardEstimator(int index, double kS, double kV, double kA) {
+    theta[0] = kS;
+    theta[1] = kV;
+    theta[2] = kA;
+    for (int i = 0; i < parameterCount; i++) {
+      covariance[i * parameterCount + i] = FeedforwardEstimationConstants.initialCovariance;
+    }
+    maxCovarianceTrace = parameterCount * FeedforwardEstimationConstants.initialCovariance;
+
+    timestamps = new double[span + 1];
+    positions = new double[span + 1];
+    velocities = new double[span + 1];
+    velocityTimestamps = new double[span + 1];
+
+    String prefix = "Drive/Module" + index + "/FeedforwardEstimate/";
+    kSKey = prefix + "KS";
+    kVKey = prefix + "KV";
+    kAKey = prefix + "KA";
+    kSBoundKey = prefix + "KSBound";
+    kVBoundKey = prefix + "KVBound";
+    kABoundKey = prefix + "KABound";
+    updatesKey = prefix + "Updates";
+  }
+
+  /**
+   * Adds the odometry samples received this cycle.
+   *
+   * @param sampleTimestamps Timestamps of the samples in seconds.
+   * @param drivePositionsRad Drive position of each sample.
+   * @param appliedVolts Drive voltage applied over the cycle.
+   */
+  public void addSamples(
+      double[] sampleTimestamps, double[] drivePositionsRad, double appliedVolts) {
+    for (int i = 0; i < sampleTimestamps.length; i++) {
+      addSample(sampleTimestamps[i], drivePositionsRad[i], appliedVolts);
+    }
+  }
+
+  private void addSample(double timestamp, double positionRad, double volts) {
+    int length = span + 1;
+    if (sampleCount > 0) {
+      double gap = timestamp - timestamps[(int) ((sampleCount - 1) % length)];
+      if (gap <= 0.0 || gap > maxSampleGapSecs) {
+        sampleCount = 0; // Restart differencing
+      }
+    }
+    int slot = (int) (sampleCount % length);
+    timestamps[slot] = timestamp;
+    positions[slot] = positionRad;
+    sampleCount++;
+    if (sampleCount <= span) {
+      return;
+    }
+
+    // Velocity over the last span samples, centered between its ends
+    int oldest = (int) (sampleCount % length);
+    double dt = timestamp - timestamps[oldest];
+    velocities[slot] = (positionRad - positions[oldest]) / dt;
+    velocityTimestamps[slot] = (timestamp + timestamps[oldest]) / 2.0;
+    if (sampleCount <= 2 * span) {
+      return;
+    }
+
+    // Acceleration from the velocity one span earlier, both computed above
+    double velocity = velocities[slot];
+    double velocityDt = velocityTimestamps[slot] - velocityTimestamps[oldest];
+    if (Math.abs(velocity) < FeedforwardEstimationConstants.minVelocityRadPerSec
+        || Math.abs(volts) < FeedforwardEstimationConstants.minVolts) {
+      return;
+    }
+    phi[0] = Math.signum(velocity);
+    phi[1] = velocity;
+    phi[2] = (velocity - velocities[oldest]) / velocityDt;
+    update(volts);
+  }
+
+  /** Runs one recursive least squares step with the regressor in {@link #phi}. */
+  private void update(double volts) {
+    double denominator = forgettingFactor;
+    for (int row = 0; row < parameterCount; row++) {
+      double sum = 0.0;
+      for (int column = 0; column < parameterCount; column++) {
+        sum += covariance[row * parameterCount + column] * phi[column];
+      }
+      covariancePhi[row] = sum;
+      denominator += phi[row] * sum;
+    }
+
+    double error = volts;
+    for (int i = 0; i < parameterCount; i++) {
+      error -= theta[i] * phi[i];
+    }
+    for (int i = 0; i < parameterCount; i++) {
+      theta[i] += covariancePhi[i] / denominator * error;
+    }
+    noiseVariance = forgettingFactor * noiseVariance + (1.0 - forgettingFactor) * error * error;
+
+    // Only forget while the covariance is bounded, so it cannot wind up without excitation
+    double trace = 0.0;
+    for (int row = 0; row < parameterCount; row++) {
+      for (int column = row; column < parameterCount; column++) {
+        double value =
+            covariance[row * parameterCount + column]
+                - covariancePhi[row] * covariancePhi[column] / denominator;
+        covariance[row * parameterCount + column] = value;
+        covariance[column * parameterCount + row] = value;
+      }
+      trace += covariance[row * parameterCount + row];
+    }
+    if (trace < maxCovarianceTrace) {
+      for (int i = 0; i < covariance.length; i++) {
+        covariance[i] /= forgettingFactor;
+      }
+    }
+    updates++;
+  }
+
+  /** Returns the estimated static gain in volts. */
+  public double getKS() {
+    return theta[0];
+  }
+
+  /** Returns the estimated velocity gain in volts per radian per second. */
+  public double getKV() {
+    return theta[1];
+  }
+
+  /** Returns the estimated acceleration gain in volts per radian per second squared. */
+  public double getKA() {
+    return theta[2];
+  }
+
+  /** Returns the half-width of the 95% confidence interval of a gain (0 = kS, 1 = kV, 2 = kA). */
+  public double getBound(int parameter) {
+    return confidenceScale
+        * Math.sqrt(noiseVariance * covariance[parameter * parameterCount + parameter]);
+  }
+
+  /** Returns whether the estimate is tight enough to replace the feedforward gains. */
+  public boolean isConfident() {
+    return updates >= FeedforwardEstimationConstants.minUpdates
+        && theta[0] >= 0.0
+        && theta[1] > 0.0
+        && getBound(0) <= FeedforwardEstimationConstants.maxKSBoundVolts
+        && getBound(1) <= FeedforwardEstimationConstants.maxKVBoundFraction * theta[1];
+  }
+
+  /** Logs the estimate and its bounds. */
+  public void recordOutputs() {
+    Logger.recordOutput(kSKey, theta[0]);
+    Logger.recordOutput(kVKey, theta[1]);
+    Logger.recordOutput(kAKey, theta[2]);
+    Logger.recordOutput(kSBoundKey, getBound(0));
+    Logger.recordOutput(kVBoundKey, getBound(1));
+    Logger.recordOutput(kABoundKey, getBound(2));
+    Logger.recordOutput(updatesKey, updates);
+  }
+}
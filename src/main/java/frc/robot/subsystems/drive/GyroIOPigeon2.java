@@ -21,6 +21,9 @@ import com.ctre.phoenix6.hardware.Pigeon2;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
 import frc.robot.Constants.RobotMap;
+import frc.robot.util.CANBusPlanner;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceHealthMonitor;
 import java.util.OptionalDouble;
 import java.util.Queue;
 
@@ -31,22 +34,40 @@ public class GyroIOPigeon2 implements GyroIO {
   private final Queue<Double> yawPositionQueue;
   private final Queue<Double> yawTimestampQueue;
   private final StatusSignal<Double> yawVelocity = pigeon.getAngularVelocityZWorld();
+  private final CANBusPlanner.PhoenixSignals signals;
 
-  public GyroIOPigeon2(boolean phoenixDrive) {
-    pigeon.getConfigurator().apply(new Pigeon2Configuration());
-    pigeon.getConfigurator().setYaw(0.0);
-    yaw.setUpdateFrequency(Module.ODOMETRY_FREQUENCY);
-    yawVelocity.setUpdateFrequency(100.0);
-    pigeon.optimizeBusUtilization();
+  public GyroIOPigeon2(
+      boolean phoenixDrive,
+      OdometryThreads odometryThreads,
+      DeviceConfigurator configurator,
+      CANBusPlanner planner,
+      DeviceHealthMonitor healthMonitor) {
+    var health =
+        new DeviceHealthMonitor.PhoenixDevice(
+            "Gyro",
+            pigeon.getFaultField(),
+            pigeon.getStickyFaultField(),
+            pigeon.getVersion(),
+            pigeon.getTemperature(),
+            Double.POSITIVE_INFINITY);
+    signals =
+        planner
+            .phoenix("Gyro")
+            .require(yaw, Module.ODOMETRY_FREQUENCY)
+            .require(yawVelocity, 50.0)
+            .require(healthMonitor.getRateHz(), health.getSignals());
+    healthMonitor.add(health, configurator.add(new PigeonDevice()));
     if (phoenixDrive) {
-      yawTimestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
+      yawTimestampQueue = odometryThreads.getPhoenix().makeTimestampQueue();
       yawPositionQueue =
-          PhoenixOdometryThread.getInstance().registerSignal(pigeon, pigeon.getYaw());
+          odometryThreads.getPhoenix().registerSignal("Gyro/Yaw", pigeon, pigeon.getYaw());
     } else {
-      yawTimestampQueue = SparkMaxOdometryThread.getInstance().makeTimestampQueue();
+      yawTimestampQueue = odometryThreads.getSparkMax().makeTimestampQueue();
       yawPositionQueue =
-          SparkMaxOdometryThread.getInstance()
+          odometryThreads
+              .getSparkMax()
               .registerSignal(
+                  "Gyro/Yaw",
                   () -> {
                     boolean valid = yaw.refresh().getStatus().isOK();
                     if (valid) {
@@ -73,4 +94,36 @@ public class GyroIOPigeon2 implements GyroIO {
     yawTimestampQueue.clear();
     yawPositionQueue.clear();
   }
+
+  /** Configuration of the Pigeon, which saves applied configs to flash on its own. */
+  private final class PigeonDevice implements DeviceConfigurator.Device {
+    private final Pigeon2Configuration config = new Pigeon2Configuration();
+
+    @Override
+    public String getName() {
+      return "Pigeon2" + pigeon.getDeviceID();
+    }
+
+    @Override
+    public String describeConfig() {
+      return config.toString();
+    }
+
+    @Override
+    public boolean apply() {
+      return pigeon.getConfigurator().apply(config).isOK();
+    }
+
+    @Override
+    public boolean verify() {
+      var current = new Pigeon2Configuration();
+      return pigeon.getConfigurator().refresh(current).isOK()
+          && current.toString().equals(config.toString());
+    }
+
+    @Override
+    public boolean applyVolatile() {
+      return pigeon.getConfigurator().setYaw(0.0).isOK() && signals.apply(pigeon);
+    }
+  }
 }
@@ -0,0 +1,182 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+import frc.robot.Constants.VelocityEstimationConstants;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.littletonrobotics.junction.AutoLog;
+
+/**
+ * Runs the module turn and drive controllers on the odometry thread, once per sample, instead of
+ * once per main loop.
+ *
+ * <p>The main loop publishes setpoints and gains through a lock-free triple buffer, so neither side
+ * ever waits for the other and the controller always uses the newest complete set. Each sample, the
+ * controller reads the turn angle and drive position of every module, estimates the drive velocity
+ * with a {@link VelocityEstimator}, and sends the turn and drive voltages straight to the IO.
+ *
+ * <p>The voltages sent are recorded and drained into {@link HighRateControlInputs} by the main
+ * loop, which logs them as inputs. The controller itself never runs in replay, since there are no
+ * samples, so the log is the only record of what it did.
+ */
+public class HighRateModuleControl {
+  private static final int moduleCount = 4;
+  private static final int maxBufferedSamples = 20; // Matches the odometry queue capacity
+  private static final int freshBit = 4;
+
+  @AutoLog
+  public static class HighRateControlInputs {
+    public double[] timestamps = new double[] {};
+    public double[] driveVolts = new double[] {}; // One per module per sample
+    public double[] turnVolts = new double[] {}; // One per module per sample
+    public long droppedSamples = 0;
+  }
+
+  /** Setpoints and gains for every module, published by the main loop. */
+  static final class Setpoints {
+    /** Turn angle setpoint in radians, or NaN for no turn control. */
+    final double[] angleRad = new double[moduleCount];
+
+    /** Drive velocity setpoint in radians per second, or NaN for no drive control. */
+    final double[] velocityRadPerSec = new double[moduleCount];
+
+    /** Offset added to the relative turn position to get the module angle, in radians. */
+    final double[] turnOffsetRad = new double[moduleCount];
+
+    final double[] driveKS = new double[moduleCount];
+    final double[] driveKV = new double[moduleCount];
+    final double[] driveKP = new double[moduleCount];
+    final double[] turnKP = new double[moduleCount];
+
+    Setpoints() {
+      Arrays.fill(angleRad, Double.NaN);
+      Arrays.fill(velocityRadPerSec, Double.NaN);
+    }
+  }
+
+  private final ModuleIO[] ios;
+
+  // Triple buffer: the writer owns one, the reader owns one, and the middle one is swapped
+  private final Setpoints[] buffers = {new Setpoints(), new Setpoints(), new Setpoints()};
+  private final AtomicInteger middle = new AtomicInteger(2); // Index, plus freshBit if unread
+  private int writeIndex = 0; // Main loop only
+  private int readIndex = 1; // Odometry thread only
+
+  // Odometry thread only
+  private final VelocityEstimator[] velocityEstimators = new VelocityEstimator[moduleCount];
+
+  // Guarded by the odometry lock
+  private final double[] bufferedTimestamps = new double[maxBufferedSamples];
+  private final double[] bufferedDriveVolts = new double[maxBufferedSamples * moduleCount];
+  private final double[] bufferedTurnVolts = new double[maxBufferedSamples * moduleCount];
+  private int bufferedCount = 0;
+  private long droppedSamples = 0;
+
+  /**
+   * Creates a controller.
+   *
+   * @param ios The IO of each module, FL, FR, BL, BR.
+   */
+  public HighRateModuleControl(ModuleIO... ios) {
+    this.ios = ios;
+    for (int i = 0; i < moduleCount; i++) {
+      velocityEstimators[i] =
+          new VelocityEstimator(
+              VelocityEstimationConstants.window, VelocityEstimationConstants.order);
+    }
+  }
+
+  /** Returns the setpoints to fill before calling {@link #publish()}. Main loop only. */
+  Setpoints getWriteBuffer() {
+    return buffers[writeIndex];
+  }
+
+  /** Makes the write buffer visible to the controller. Main loop only. */
+  void publish() {
+    int previous = middle.getAndSet(writeIndex | freshBit);
+    writeIndex = previous & ~freshBit;
+  }
+
+  /**
+   * Creates the listener for an odometry thread, or returns null if the thread does not sample
+   * every module's drive and turn position.
+   */
+  OdometryThreads.SampleListener createListener(List<String> signalNames) {
+    int[] driveSignals = new int[moduleCount];
+    int[] turnSignals = new int[moduleCount];
+    for (int i = 0; i < moduleCount; i++) {
+      driveSignals[i] = signalNames.indexOf("Module" + i + "/DrivePosition");
+      turnSignals[i] = signalNames.indexOf("Module" + i + "/TurnPosition");
+      if (driveSignals[i] < 0 || turnSignals[i] < 0) {
+        return null;
+      }
+    }
+    return (timestamp, values) -> runSample(timestamp, values, driveSignals, turnSignals);
+  }
+
+  /** Runs every module's controllers on one sample. Odometry thread only. */
+  private void runSample(double timestamp, double[] values, int[] driveSignals, int[] turnSignals) {
+    if ((middle.get() & freshBit) != 0) {
+      readIndex = middle.getAndSet(readIndex) & ~freshBit;
+    }
+    Setpoints setpoints = buffers[readIndex];
+
+    boolean buffer = bufferedCount < maxBufferedSamples;
+    if (buffer) {
+      bufferedTimestamps[bufferedCount] = timestamp;
+    } else {
+      droppedSamples++;
+    }
+    for (int module = 0; module < moduleCount; module++) {
+      ModuleIO io = ios[module];
+      VelocityEstimator velocityEstimator = velocityEstimators[module];
+      velocityEstimator.addSample(
+          timestamp, io.odometryDrivePositionRad(values[driveSignals[module]]));
+
+      double turnVolts = Double.NaN;
+      double driveVolts = Double.NaN;
+      double angleSetpoint = setpoints.angleRad[module];
+      if (!Double.isNaN(angleSetpoint)) {
+        double angle =
+            io.odometryTurnPositionRad(values[turnSignals[module]])
+                + setpoints.turnOffsetRad[module];
+        double angleError = MathUtil.angleModulus(angleSetpoint - angle);
+        turnVolts = setpoints.turnKP[module] * angleError;
+        io.setTurnVoltage(turnVolts);
+
+        // Scale velocity by the cosine of the turn error, as Module.periodic does
+        double velocitySetpoint = setpoints.velocityRadPerSec[module];
+        if (!Double.isNaN(velocitySetpoint) && velocityEstimator.hasEstimate()) {
+          velocitySetpoint *= Math.cos(angleError);
+          double velocity = velocityEstimator.getVelocity();
+          driveVolts =
+              setpoints.driveKS[module] * Math.signum(velocitySetpoint)
+                  + setpoints.driveKV[module] * velocitySetpoint
+                  + setpoints.driveKP[module] * (velocitySetpoint - velocity);
+          io.setDriveVoltage(driveVolts);
+        }
+      }
+
+      if (buffer) {
+        bufferedDriveVolts[bufferedCount * moduleCount + module] = driveVolts;
+        bufferedTurnVolts[bufferedCount * moduleCount + module] = turnVolts;
+      }
+    }
+    if (buffer) {
+      bufferedCount++;
+    }
+  }
+
+  /**
+   * Moves the voltages sent since the last call into the inputs. NaN means the controller did not
+   * send that voltage. Call while holding the odometry lock.
+   */
+  public void updateInputs(HighRateControlInputs inputs) {
+    inputs.timestamps = Arrays.copyOf(bufferedTimestamps, bufferedCount);
+    inputs.driveVolts = Arrays.copyOf(bufferedDriveVolts, bufferedCount * moduleCount);
+    inputs.turnVolts = Arrays.copyOf(bufferedTurnVolts, bufferedCount * moduleCount);
+    inputs.droppedSamples = droppedSamples;
+    bufferedCount = 0;
+  }
+}
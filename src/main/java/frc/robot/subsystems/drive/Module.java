@@ -13,6 +13,7 @@
 
 package frc.robot.subsystems.drive;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -20,6 +21,11 @@ import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.util.Units;
 import frc.robot.Constants;
+import frc.robot.Constants.FeedforwardEstimationConstants;
+import frc.robot.Constants.FirmwareControlConstants;
+import frc.robot.Constants.LoggingConstants;
+import frc.robot.Constants.VelocityEstimationConstants;
+import frc.robot.util.ChangeSuppressedLogger;
 import org.littletonrobotics.junction.Logger;
 
 public class Module {
@@ -29,8 +35,19 @@ public class Module {
   private final ModuleIO io;
   private final ModuleIOInputsAutoLogged inputs = new ModuleIOInputsAutoLogged();
   private final int index;
-
-  private final SimpleMotorFeedforward driveFeedforward;
+  private final String inputsKey;
+  private final ChangeSuppressedLogger.Output turnOffsetOutput;
+
+  private final FeedforwardEstimator feedforwardEstimator;
+  private final VelocityEstimator velocityEstimator =
+      new VelocityEstimator(VelocityEstimationConstants.window, VelocityEstimationConstants.order);
+  private final String estimatedVelocityKey;
+  private final String estimatedAccelerationKey;
+  private int loopsSinceHotSwap = 0;
+  private boolean highRateControl = false; // Closed loop control runs on the odometry thread
+  private boolean batchedControl = false; // Closed loop control runs in a batched pass
+
+  private SimpleMotorFeedforward driveFeedforward;
   private final PIDController driveFeedback;
   private final PIDController turnFeedback;
   private Rotation2d angleSetpoint = null; // Setpoint for closed loop control, null for open loop
@@ -41,6 +58,12 @@ public class Module {
   public Module(ModuleIO io, int index) {
     this.io = io;
     this.index = index;
+    inputsKey = "Drive/Module" + Integer.toString(index);
+    turnOffsetOutput =
+        new ChangeSuppressedLogger.Output(
+            "Module" + Integer.toString(index), LoggingConstants.keyframeLoops);
+    estimatedVelocityKey = inputsKey + "/EstimatedVelocityRadPerSec";
+    estimatedAccelerationKey = inputsKey + "/EstimatedAccelerationRadPerSecSq";
 
     // Switch constants based on mode (the physics simulator is treated as a
     // separate robot with different tuning)
@@ -65,6 +88,16 @@ public class Module {
 
     turnFeedback.enableContinuousInput(-Math.PI, Math.PI);
     setBrakeMode(true);
+    if (FirmwareControlConstants.useFirmwareControl) {
+      io.configureDriveFeedback(driveFeedback.getP(), driveFeedback.getD());
+      io.configureTurnFeedback(turnFeedback.getP(), turnFeedback.getD());
+    }
+
+    feedforwardEstimator =
+        FeedforwardEstimationConstants.enableEstimation
+            ? new FeedforwardEstimator(
+                index, driveFeedforward.ks, driveFeedforward.kv, driveFeedforward.ka)
+            : null;
   }
 
   /**
@@ -76,18 +109,49 @@ public class Module {
   }
 
   public void periodic() {
-    Logger.processInputs("Drive/Module" + Integer.toString(index), inputs);
-    Logger.recordOutput("Module" + Integer.toString(index), turnRelativeOffset);
+    Logger.processInputs(inputsKey, inputs);
+    turnOffsetOutput.record(turnRelativeOffset);
     // On first cycle, reset relative turn encoder
     // Wait until absolute angle is nonzero in case it wasn't initialized yet
     if (turnRelativeOffset == null && inputs.turnAbsolutePosition.getRadians() != 0.0) {
       turnRelativeOffset = inputs.turnAbsolutePosition.minus(inputs.turnPosition);
     }
 
+    // Fit the drive velocity to the odometry samples, which lags less than the motor controller's
+    velocityEstimator.addSamples(inputs.odometryTimestamps, inputs.odometryDrivePositionsRad);
+    Logger.recordOutput(estimatedVelocityKey, velocityEstimator.getVelocity());
+    Logger.recordOutput(estimatedAccelerationKey, velocityEstimator.getAcceleration());
+
+    // Refine the drive feedforward gains, and use them once the estimate is confident
+    if (feedforwardEstimator != null) {
+      feedforwardEstimator.addSamples(
+          inputs.odometryTimestamps, inputs.odometryDrivePositionsRad, inputs.driveAppliedVolts);
+      feedforwardEstimator.recordOutputs();
+      loopsSinceHotSwap++;
+      if (FeedforwardEstimationConstants.enableHotSwap
+          && loopsSinceHotSwap >= FeedforwardEstimationConstants.hotSwapPeriodLoops
+          && feedforwardEstimator.isConfident()) {
+        driveFeedforward =
+            new SimpleMotorFeedforward(
+                feedforwardEstimator.getKS(),
+                feedforwardEstimator.getKV(),
+                feedforwardEstimator.getKA());
+        loopsSinceHotSwap = 0;
+      }
+    }
+
     // Run closed loop turn control
-    if (angleSetpoint != null) {
-      io.setTurnVoltage(
-          turnFeedback.calculate(getAngle().getRadians(), angleSetpoint.getRadians()));
+    if (angleSetpoint != null && !highRateControl && !batchedControl) {
+      double turnErrorRad;
+      if (FirmwareControlConstants.useFirmwareControl) {
+        // The motor controller works in the relative encoder frame
+        io.setTurnPosition(angleSetpoint.getRadians() - getTurnOffsetRad());
+        turnErrorRad = MathUtil.angleModulus(angleSetpoint.getRadians() - getAngle().getRadians());
+      } else {
+        io.setTurnVoltage(
+            turnFeedback.calculate(getAngle().getRadians(), angleSetpoint.getRadians()));
+        turnErrorRad = turnFeedback.getPositionError();
+      }
 
       // Run closed loop drive control
       // Only allowed if closed loop turn control is running
@@ -97,13 +161,17 @@ public class Module {
         // When the error is 90°, the velocity setpoint should be 0. As the wheel turns
         // towards the setpoint, its velocity should increase. This is achieved by
         // taking the component of the velocity in the direction of the setpoint.
-        double adjustSpeedSetpoint = speedSetpoint * Math.cos(turnFeedback.getPositionError());
+        double adjustSpeedSetpoint = speedSetpoint * Math.cos(turnErrorRad);
 
         // Run drive controller
         double velocityRadPerSec = adjustSpeedSetpoint / WHEEL_RADIUS;
-        io.setDriveVoltage(
-            driveFeedforward.calculate(velocityRadPerSec)
-                + driveFeedback.calculate(inputs.driveVelocityRadPerSec, velocityRadPerSec));
+        if (FirmwareControlConstants.useFirmwareControl) {
+          io.setDriveVelocity(velocityRadPerSec, driveFeedforward.calculate(velocityRadPerSec));
+        } else {
+          io.setDriveVoltage(
+              driveFeedforward.calculate(velocityRadPerSec)
+                  + driveFeedback.calculate(getDriveVelocityRadPerSec(), velocityRadPerSec));
+        }
       }
     }
 
@@ -124,12 +192,74 @@ public class Module {
     // Optimize state based on current angle
     // Controllers run in "periodic" when the setpoint is not null
     var optimizedState = SwerveModuleState.optimize(state, getAngle());
+    setOptimizedSetpoint(optimizedState);
+    return optimizedState;
+  }
 
+  /** Runs the module with a setpoint state that has already been optimized. */
+  void setOptimizedSetpoint(SwerveModuleState optimizedState) {
     // Update setpoints, controllers run in "periodic"
     angleSetpoint = optimizedState.angle;
     speedSetpoint = optimizedState.speedMetersPerSecond;
+  }
 
-    return optimizedState;
+  /**
+   * Sets whether closed loop control is left to a {@link HighRateModuleControl}, which gets the
+   * setpoints from {@link #writeSetpoint}.
+   */
+  void setHighRateControl(boolean enabled) {
+    highRateControl = enabled;
+  }
+
+  /** Writes this module's setpoints and gains for the high-rate controller. */
+  void writeSetpoint(HighRateModuleControl.Setpoints setpoints) {
+    setpoints.angleRad[index] = angleSetpoint != null ? angleSetpoint.getRadians() : Double.NaN;
+    setpoints.velocityRadPerSec[index] =
+        speedSetpoint != null ? speedSetpoint / WHEEL_RADIUS : Double.NaN;
+    setpoints.turnOffsetRad[index] = getTurnOffsetRad();
+    setpoints.driveKS[index] = driveFeedforward.ks;
+    setpoints.driveKV[index] = driveFeedforward.kv;
+    setpoints.driveKP[index] = driveFeedback.getP();
+    setpoints.turnKP[index] = turnFeedback.getP();
+  }
+
+  /**
+   * Sets whether closed loop control is left to a {@link BatchedModuleControl}, which gets the
+   * state from {@link #writeControlState} and returns the voltages to {@link #applyControlOutput}.
+   */
+  void setBatchedControl(boolean enabled) {
+    batchedControl = enabled;
+  }
+
+  /** Writes this module's angle, velocity, setpoints and gains for a batched control pass. */
+  void writeControlState(BatchedModuleControl control) {
+    control.angleRad[index] =
+        turnRelativeOffset != null
+            ? inputs.turnPosition.getRadians() + turnRelativeOffset.getRadians()
+            : 0.0;
+    control.velocityRadPerSec[index] = getDriveVelocityRadPerSec();
+    control.angleSetpointRad[index] =
+        angleSetpoint != null ? angleSetpoint.getRadians() : Double.NaN;
+    control.velocitySetpointRadPerSec[index] =
+        speedSetpoint != null ? speedSetpoint / WHEEL_RADIUS : Double.NaN;
+    control.driveKS[index] = driveFeedforward.ks;
+    control.driveKV[index] = driveFeedforward.kv;
+    control.driveKP[index] = driveFeedback.getP();
+    control.driveKD[index] = driveFeedback.getD();
+    control.turnKP[index] = turnFeedback.getP();
+    control.turnKD[index] = turnFeedback.getD();
+  }
+
+  /** Sends the voltages computed by a batched control pass. */
+  void applyControlOutput(BatchedModuleControl control) {
+    double turnVolts = control.turnVolts[index];
+    if (!Double.isNaN(turnVolts)) {
+      io.setTurnVoltage(turnVolts);
+    }
+    double driveVolts = control.driveVolts[index];
+    if (!Double.isNaN(driveVolts)) {
+      io.setDriveVoltage(driveVolts);
+    }
   }
 
   /** Runs the module with the specified voltage while controlling to zero degrees. */
@@ -186,6 +316,11 @@ public class Module {
     }
   }
 
+  /** Returns the offset from the relative turn position to the module angle in radians. */
+  private double getTurnOffsetRad() {
+    return turnRelativeOffset != null ? turnRelativeOffset.getRadians() : 0.0;
+  }
+
   /** Returns the current drive position of the module in meters. */
   public double getPositionMeters() {
     return inputs.drivePositionRad * WHEEL_RADIUS;
@@ -193,7 +328,15 @@ public class Module {
 
   /** Returns the current drive velocity of the module in meters per second. */
   public double getVelocityMetersPerSec() {
-    return inputs.driveVelocityRadPerSec * WHEEL_RADIUS;
+    return getDriveVelocityRadPerSec() * WHEEL_RADIUS;
+  }
+
+  /** Returns the estimated drive velocity if enabled and ready, otherwise the measured one. */
+  private double getDriveVelocityRadPerSec() {
+    if (VelocityEstimationConstants.useEstimatedVelocity && velocityEstimator.hasEstimate()) {
+      return velocityEstimator.getVelocity();
+    }
+    return inputs.driveVelocityRadPerSec;
   }
 
   /** Returns the module position (turn angle and drive position). */
@@ -38,6 +38,48 @@ public interface ModuleIO {
   /** Updates the set of loggable inputs. */
   public default void updateInputs(ModuleIOInputs inputs) {}
 
+  /** Converts a raw drive position sample from the odometry thread to radians. */
+  public default double odometryDrivePositionRad(double sample) {
+    return sample;
+  }
+
+  /** Converts a raw turn position sample from the odometry thread to radians. */
+  public default double odometryTurnPositionRad(double sample) {
+    return sample;
+  }
+
+  /**
+   * Sets the gains of the motor controller's drive velocity loop.
+   *
+   * @param kP Volts per radian per second of error.
+   * @param kD Volts per radian per second squared of error rate.
+   */
+  public default void configureDriveFeedback(double kP, double kD) {}
+
+  /**
+   * Sets the gains of the motor controller's turn position loop.
+   *
+   * @param kP Volts per radian of error.
+   * @param kD Volts per radian per second of error rate.
+   */
+  public default void configureTurnFeedback(double kP, double kD) {}
+
+  /**
+   * Run the drive motor at the specified velocity using the motor controller's velocity loop.
+   *
+   * @param velocityRadPerSec Wheel velocity setpoint.
+   * @param feedforwardVolts Voltage added to the loop output.
+   */
+  public default void setDriveVelocity(double velocityRadPerSec, double feedforwardVolts) {}
+
+  /**
+   * Run the turn motor to the specified position using the motor controller's position loop. The
+   * error wraps, so the module takes the shortest way around.
+   *
+   * @param positionRad Setpoint in the same frame as the relative turn position input.
+   */
+  public default void setTurnPosition(double positionRad) {}
+
   /** Run the drive motor at the specified voltage. */
   public default void setDriveVoltage(double volts) {}
 
@@ -14,6 +14,7 @@
 package frc.robot.subsystems.drive;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.wpilibj.Timer;
@@ -27,8 +28,13 @@ import frc.robot.Constants.SimConstants;
  * <p>Uses two flywheel sims for the drive and turn motors, with the absolute position initialized
  * to a random value. The flywheel sims are not physically accurate, but provide a decent
  * approximation for the behavior of the module.
+ *
+ * <p>The motor controller velocity and position loops are emulated by running the simulation in 1
+ * ms steps, like the onboard controllers, whenever one of them is active.
  */
 public class ModuleIOSim implements ModuleIO {
+  private static final double controllerPeriodSecs = 0.001;
+
   private DCMotorSim driveSim =
       new DCMotorSim(DCMotor.getNEO(1), DriveConstants.driveRatio, DriveConstants.driveMOI);
   private DCMotorSim turnSim =
@@ -38,10 +44,44 @@ public class ModuleIOSim implements ModuleIO {
   private double driveAppliedVolts = 0.0;
   private double turnAppliedVolts = 0.0;
 
+  private final PIDController driveFeedback =
+      new PIDController(0.0, 0.0, 0.0, controllerPeriodSecs);
+  private final PIDController turnFeedback =
+      new PIDController(0.0, 0.0, 0.0, controllerPeriodSecs);
+  private boolean driveClosedLoop = false;
+  private boolean turnClosedLoop = false;
+  private double driveFeedforwardVolts = 0.0;
+
+  public ModuleIOSim() {
+    turnFeedback.enableContinuousInput(-Math.PI, Math.PI);
+  }
+
   @Override
   public void updateInputs(ModuleIOInputs inputs) {
-    driveSim.update(SimConstants.loopTime);
-    turnSim.update(SimConstants.loopTime);
+    if (driveClosedLoop || turnClosedLoop) {
+      int steps = (int) Math.round(SimConstants.loopTime / controllerPeriodSecs);
+      for (int i = 0; i < steps; i++) {
+        if (driveClosedLoop) {
+          driveAppliedVolts =
+              MathUtil.clamp(
+                  driveFeedforwardVolts
+                      + driveFeedback.calculate(driveSim.getAngularVelocityRadPerSec()),
+                  -12.0,
+                  12.0);
+          driveSim.setInputVoltage(driveAppliedVolts);
+        }
+        if (turnClosedLoop) {
+          turnAppliedVolts =
+              MathUtil.clamp(turnFeedback.calculate(turnSim.getAngularPositionRad()), -12.0, 12.0);
+          turnSim.setInputVoltage(turnAppliedVolts);
+        }
+        driveSim.update(controllerPeriodSecs);
+        turnSim.update(controllerPeriodSecs);
+      }
+    } else {
+      driveSim.update(SimConstants.loopTime);
+      turnSim.update(SimConstants.loopTime);
+    }
 
     inputs.drivePositionRad = driveSim.getAngularPositionRad();
     inputs.driveVelocityRadPerSec = driveSim.getAngularVelocityRadPerSec();
@@ -60,14 +100,39 @@ public class ModuleIOSim implements ModuleIO {
     inputs.odometryTurnPositions = new Rotation2d[] {inputs.turnPosition};
   }
 
+  @Override
+  public void configureDriveFeedback(double kP, double kD) {
+    driveFeedback.setPID(kP, 0.0, kD);
+  }
+
+  @Override
+  public void configureTurnFeedback(double kP, double kD) {
+    turnFeedback.setPID(kP, 0.0, kD);
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityRadPerSec, double feedforwardVolts) {
+    driveClosedLoop = true;
+    driveFeedback.setSetpoint(velocityRadPerSec);
+    driveFeedforwardVolts = feedforwardVolts;
+  }
+
+  @Override
+  public void setTurnPosition(double positionRad) {
+    turnClosedLoop = true;
+    turnFeedback.setSetpoint(positionRad);
+  }
+
   @Override
   public void setDriveVoltage(double volts) {
+    driveClosedLoop = false;
     driveAppliedVolts = MathUtil.clamp(volts, -12.0, 12.0);
     driveSim.setInputVoltage(driveAppliedVolts);
   }
 
   @Override
   public void setTurnVoltage(double volts) {
+    turnClosedLoop = false;
     turnAppliedVolts = MathUtil.clamp(volts, -12.0, 12.0);
     turnSim.setInputVoltage(turnAppliedVolts);
   }
@@ -13,20 +13,31 @@
 
 package frc.robot.subsystems.drive;
 
+import com.revrobotics.CANSparkBase.ControlType;
 import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkLowLevel.MotorType;
-import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.REVLibError;
 import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkPIDController;
+import com.revrobotics.SparkPIDController.ArbFFUnits;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.AnalogInput;
 import edu.wpi.first.wpilibj.RobotController;
 import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.HealthMonitorConstants;
+import frc.robot.Constants.HighRateControlConstants;
 import frc.robot.Constants.RobotMap;
+import frc.robot.util.CANBusPlanner;
+import frc.robot.util.CANBusPlanner.SparkMaxSignal;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceHealthMonitor;
+import java.util.Locale;
 import java.util.OptionalDouble;
 import java.util.Queue;
+import java.util.function.BooleanSupplier;
 
 /**
  * Module IO implementation for SparkMax drive motor controller, SparkMax turn motor controller (NEO
@@ -41,12 +52,20 @@ import java.util.Queue;
  * "/Drive/ModuleX/TurnAbsolutePositionRad"
  */
 public class ModuleIOSparkMax implements ModuleIO {
+  private static final int canTimeoutMS = 250;
+  private static final double nominalVoltage = 12.0;
+  private static final int measurementPeriodMS = 10;
+  private static final int averageDepth = 2;
+
   private final CANSparkMax driveSparkMax;
   private final CANSparkMax turnSparkMax;
 
   private final RelativeEncoder driveEncoder;
   private final RelativeEncoder turnRelativeEncoder;
   private final AnalogInput turnAbsoluteEncoder;
+  private final SparkPIDController drivePID;
+  private final SparkPIDController turnPID;
+
   private final Queue<Double> timestampQueue;
   private final Queue<Double> drivePositionQueue;
   private final Queue<Double> turnPositionQueue;
@@ -54,7 +73,12 @@ public class ModuleIOSparkMax implements ModuleIO {
   private final boolean isTurnMotorInverted;
   private final Rotation2d absoluteEncoderOffset;
 
-  public ModuleIOSparkMax(int index) {
+  public ModuleIOSparkMax(
+      int index,
+      OdometryThreads odometryThreads,
+      DeviceConfigurator configurator,
+      CANBusPlanner planner,
+      DeviceHealthMonitor healthMonitor) {
     switch (index) {
       case 0:
         driveSparkMax = new CANSparkMax(RobotMap.Drive.frontLeftDrive, MotorType.kBrushless);
@@ -91,40 +115,42 @@ public class ModuleIOSparkMax implements ModuleIO {
         throw new RuntimeException("Invalid module index");
     }
 
-    driveSparkMax.restoreFactoryDefaults();
-    turnSparkMax.restoreFactoryDefaults();
-
-    driveSparkMax.setCANTimeout(250);
-    turnSparkMax.setCANTimeout(250);
-
     driveEncoder = driveSparkMax.getEncoder();
     turnRelativeEncoder = turnSparkMax.getEncoder();
+    drivePID = driveSparkMax.getPIDController();
+    turnPID = turnSparkMax.getPIDController();
 
-    turnSparkMax.setInverted(isTurnMotorInverted);
-    driveSparkMax.setSmartCurrentLimit(DriveConstants.driveCurrent);
-    turnSparkMax.setSmartCurrentLimit(DriveConstants.turnCurrent);
-    driveSparkMax.enableVoltageCompensation(12.0);
-    turnSparkMax.enableVoltageCompensation(12.0);
-
-    driveEncoder.setPosition(0.0);
-    driveEncoder.setMeasurementPeriod(10);
-    driveEncoder.setAverageDepth(2);
-
-    turnRelativeEncoder.setPosition(0.0);
-    turnRelativeEncoder.setMeasurementPeriod(10);
-    turnRelativeEncoder.setAverageDepth(2);
-
-    driveSparkMax.setCANTimeout(0);
-    turnSparkMax.setCANTimeout(0);
+    // Both controllers are configured alongside every other device by the configurator
+    BooleanSupplier driveConfigured =
+        configurator.add(
+            new SparkMaxDevice(
+                driveSparkMax,
+                driveEncoder,
+                drivePID,
+                false,
+                DriveConstants.driveCurrent,
+                false,
+                planFrames(planner, "Module" + index + "/Drive", healthMonitor.getRateHz())));
+    BooleanSupplier turnConfigured =
+        configurator.add(
+            new SparkMaxDevice(
+                turnSparkMax,
+                turnRelativeEncoder,
+                turnPID,
+                isTurnMotorInverted,
+                DriveConstants.turnCurrent,
+                true,
+                planFrames(planner, "Module" + index + "/Turn", healthMonitor.getRateHz())));
+    healthMonitor.add(
+        new SparkMaxHealth("Module" + index + "/Drive", driveSparkMax), driveConfigured);
+    healthMonitor.add(new SparkMaxHealth("Module" + index + "/Turn", turnSparkMax), turnConfigured);
 
-    driveSparkMax.setPeriodicFramePeriod(
-        PeriodicFrame.kStatus2, (int) (1000.0 / Module.ODOMETRY_FREQUENCY));
-    turnSparkMax.setPeriodicFramePeriod(
-        PeriodicFrame.kStatus2, (int) (1000.0 / Module.ODOMETRY_FREQUENCY));
-    timestampQueue = SparkMaxOdometryThread.getInstance().makeTimestampQueue();
+    timestampQueue = odometryThreads.getSparkMax().makeTimestampQueue();
     drivePositionQueue =
-        SparkMaxOdometryThread.getInstance()
+        odometryThreads
+            .getSparkMax()
             .registerSignal(
+                "Module" + index + "/DrivePosition",
                 () -> {
                   double value = driveEncoder.getPosition();
                   if (driveSparkMax.getLastError() == REVLibError.kOk) {
@@ -134,8 +160,10 @@ public class ModuleIOSparkMax implements ModuleIO {
                   }
                 });
     turnPositionQueue =
-        SparkMaxOdometryThread.getInstance()
+        odometryThreads
+            .getSparkMax()
             .registerSignal(
+                "Module" + index + "/TurnPosition",
                 () -> {
                   double value = turnRelativeEncoder.getPosition();
                   if (turnSparkMax.getLastError() == REVLibError.kOk) {
@@ -144,9 +172,25 @@ public class ModuleIOSparkMax implements ModuleIO {
                     return OptionalDouble.empty();
                   }
                 });
+  }
 
-    driveSparkMax.burnFlash();
-    turnSparkMax.burnFlash();
+  /**
+   * Declares the frames read from either controller: position for odometry, the rest per loop,
+   * and faults and temperature for the health monitor.
+   */
+  private static CANBusPlanner.SparkMaxFrames planFrames(
+      CANBusPlanner planner, String name, double healthRate) {
+    return planner
+        .sparkMax(name)
+        .require(SparkMaxSignal.POSITION, Module.ODOMETRY_FREQUENCY)
+        .require(SparkMaxSignal.VELOCITY, 50.0)
+        .require(SparkMaxSignal.CURRENT, 50.0)
+        .require(SparkMaxSignal.BUS_VOLTAGE, 50.0)
+        .require(SparkMaxSignal.APPLIED_OUTPUT, 50.0)
+        .require(SparkMaxSignal.FAULTS, healthRate)
+        .require(SparkMaxSignal.TEMPERATURE, healthRate)
+        .requireControl(
+            HighRateControlConstants.enableHighRateControl ? Module.ODOMETRY_FREQUENCY : 50.0);
   }
 
   @Override
@@ -171,6 +215,15 @@ public class ModuleIOSparkMax implements ModuleIO {
     inputs.turnAppliedVolts = turnSparkMax.getAppliedOutput() * turnSparkMax.getBusVoltage();
     inputs.turnCurrentAmps = new double[] {turnSparkMax.getOutputCurrent()};
 
+    drainOdometryQueues(inputs, timestampQueue, drivePositionQueue, turnPositionQueue);
+  }
+
+  /** Moves the samples collected by the odometry thread into the inputs. */
+  static void drainOdometryQueues(
+      ModuleIOInputs inputs,
+      Queue<Double> timestampQueue,
+      Queue<Double> drivePositionQueue,
+      Queue<Double> turnPositionQueue) {
     inputs.odometryTimestamps =
         timestampQueue.stream().mapToDouble((Double value) -> value).toArray();
     inputs.odometryDrivePositionsRad =
@@ -187,6 +240,52 @@ public class ModuleIOSparkMax implements ModuleIO {
     turnPositionQueue.clear();
   }
 
+  @Override
+  public double odometryDrivePositionRad(double sample) {
+    return Units.rotationsToRadians(sample) / DriveConstants.driveRatio;
+  }
+
+  @Override
+  public double odometryTurnPositionRad(double sample) {
+    return Units.rotationsToRadians(sample / DriveConstants.turnRatio);
+  }
+
+  @Override
+  public void configureDriveFeedback(double kP, double kD) {
+    // Error is in motor RPM and output is a fraction of the 12 V compensation voltage. The
+    // derivative is taken per 1 ms loop period.
+    double voltsPerRPM =
+        Units.rotationsPerMinuteToRadiansPerSecond(1.0) / DriveConstants.driveRatio / 12.0;
+    drivePID.setP(kP * voltsPerRPM);
+    drivePID.setD(kD * voltsPerRPM / 0.001);
+  }
+
+  @Override
+  public void configureTurnFeedback(double kP, double kD) {
+    // Error is in motor rotations and output is a fraction of the 12 V compensation voltage
+    double voltsPerRotation = Units.rotationsToRadians(1.0) / DriveConstants.turnRatio / 12.0;
+    turnPID.setP(kP * voltsPerRotation);
+    turnPID.setD(kD * voltsPerRotation / 0.001);
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityRadPerSec, double feedforwardVolts) {
+    drivePID.setReference(
+        Units.radiansPerSecondToRotationsPerMinute(velocityRadPerSec) * DriveConstants.driveRatio,
+        ControlType.kVelocity,
+        0,
+        feedforwardVolts,
+        ArbFFUnits.kVoltage);
+  }
+
+  @Override
+  public void setTurnPosition(double positionRad) {
+    double motorRotations = Units.radiansToRotations(positionRad) * DriveConstants.turnRatio;
+    turnPID.setReference(
+        MathUtil.inputModulus(motorRotations, 0.0, DriveConstants.turnRatio),
+        ControlType.kPosition);
+  }
+
   @Override
   public void setDriveVoltage(double volts) {
     driveSparkMax.setVoltage(volts);
@@ -206,4 +305,139 @@ public class ModuleIOSparkMax implements ModuleIO {
   public void setTurnBrakeMode(boolean enable) {
     turnSparkMax.setIdleMode(enable ? IdleMode.kBrake : IdleMode.kCoast);
   }
+
+  /**
+   * Configuration of one SparkMax. The onboard loop gains and idle mode are left out, since they
+   * are set at runtime through {@link ModuleIO}.
+   */
+  private static final class SparkMaxDevice implements DeviceConfigurator.Device {
+    private final CANSparkMax sparkMax;
+    private final RelativeEncoder encoder;
+    private final SparkPIDController pid;
+    private final boolean inverted;
+    private final int currentLimit;
+    private final boolean wrapPosition; // Wrap the position loop over one module rotation
+    private final CANBusPlanner.SparkMaxFrames frames;
+
+    SparkMaxDevice(
+        CANSparkMax sparkMax,
+        RelativeEncoder encoder,
+        SparkPIDController pid,
+        boolean inverted,
+        int currentLimit,
+        boolean wrapPosition,
+        CANBusPlanner.SparkMaxFrames frames) {
+      this.sparkMax = sparkMax;
+      this.encoder = encoder;
+      this.pid = pid;
+      this.inverted = inverted;
+      this.currentLimit = currentLimit;
+      this.wrapPosition = wrapPosition;
+      this.frames = frames;
+    }
+
+    @Override
+    public String getName() {
+      return "SparkMax" + sparkMax.getDeviceId();
+    }
+
+    @Override
+    public String describeConfig() {
+      return String.format(
+          Locale.ROOT,
+          "inverted=%b currentLimit=%d nominalVoltage=%.3f measurementPeriod=%d averageDepth=%d"
+              + " wrapPosition=%b wrapMax=%.6f",
+          inverted,
+          currentLimit,
+          nominalVoltage,
+          measurementPeriodMS,
+          averageDepth,
+          wrapPosition,
+          DriveConstants.turnRatio);
+    }
+
+    @Override
+    public boolean apply() {
+      sparkMax.setCANTimeout(canTimeoutMS);
+      boolean ok = sparkMax.restoreFactoryDefaults() == REVLibError.kOk;
+      sparkMax.setInverted(inverted);
+      ok &= sparkMax.getLastError() == REVLibError.kOk;
+      ok &= sparkMax.setSmartCurrentLimit(currentLimit) == REVLibError.kOk;
+      ok &= sparkMax.enableVoltageCompensation(nominalVoltage) == REVLibError.kOk;
+      ok &= encoder.setMeasurementPeriod(measurementPeriodMS) == REVLibError.kOk;
+      ok &= encoder.setAverageDepth(averageDepth) == REVLibError.kOk;
+      if (wrapPosition) {
+        // Onboard loops work in motor rotations, so one module rotation is the turn ratio
+        ok &= pid.setPositionPIDWrappingEnabled(true) == REVLibError.kOk;
+        ok &= pid.setPositionPIDWrappingMinInput(0.0) == REVLibError.kOk;
+        ok &= pid.setPositionPIDWrappingMaxInput(DriveConstants.turnRatio) == REVLibError.kOk;
+      }
+      return ok;
+    }
+
+    @Override
+    public boolean verify() {
+      // The current limit cannot be read back, so it is only covered by the stored hash
+      sparkMax.setCANTimeout(canTimeoutMS);
+      boolean matches =
+          sparkMax.getInverted() == inverted
+              && sparkMax.getVoltageCompensationNominalVoltage() == nominalVoltage
+              && encoder.getMeasurementPeriod() == measurementPeriodMS
+              && encoder.getAverageDepth() == averageDepth;
+      if (wrapPosition) {
+        matches &=
+            pid.getPositionPIDWrappingEnabled()
+                && Math.abs(pid.getPositionPIDWrappingMaxInput() - DriveConstants.turnRatio) < 1e-4;
+      }
+      return matches && sparkMax.getLastError() == REVLibError.kOk;
+    }
+
+    @Override
+    public boolean persist() {
+      return sparkMax.burnFlash() == REVLibError.kOk;
+    }
+
+    @Override
+    public boolean applyVolatile() {
+      sparkMax.setCANTimeout(canTimeoutMS);
+      boolean ok = encoder.setPosition(0.0) == REVLibError.kOk;
+      ok &= frames.apply(sparkMax);
+      sparkMax.setCANTimeout(0);
+      return ok;
+    }
+  }
+
+  /** Health of one SparkMax, read from the status frames it already sends. */
+  private static final class SparkMaxHealth implements DeviceHealthMonitor.Device {
+    private final String name;
+    private final CANSparkMax sparkMax;
+
+    SparkMaxHealth(String name, CANSparkMax sparkMax) {
+      this.name = name;
+      this.sparkMax = sparkMax;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public double getTemperatureLimitCelsius() {
+      return HealthMonitorConstants.motorTemperatureLimitCelsius;
+    }
+
+    @Override
+    public void poll(DeviceHealthMonitor.Status status) {
+      // Fault fields are bit fields, so they are read without sign extension
+      status.faults = sparkMax.getFaults() & 0xFFFF;
+      boolean ok = sparkMax.getLastError() == REVLibError.kOk;
+      status.stickyFaults = sparkMax.getStickyFaults() & 0xFFFF;
+      ok &= sparkMax.getLastError() == REVLibError.kOk;
+      status.temperatureCelsius = sparkMax.getMotorTemperature();
+      ok &= sparkMax.getLastError() == REVLibError.kOk;
+      status.firmware = sparkMax.getFirmwareString();
+      status.connected = ok;
+    }
+  }
 }
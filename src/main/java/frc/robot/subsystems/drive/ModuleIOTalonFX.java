@@ -17,7 +17,10 @@ import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.configs.MotorOutputConfigs;
+import com.ctre.phoenix6.configs.Slot0Configs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.controls.PositionVoltage;
+import com.ctre.phoenix6.controls.VelocityVoltage;
 import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.CANcoder;
 import com.ctre.phoenix6.hardware.TalonFX;
@@ -25,6 +28,10 @@ import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
+import frc.robot.Constants.HealthMonitorConstants;
+import frc.robot.Constants.HighRateControlConstants;
+import frc.robot.util.CANBusPlanner;
+import frc.robot.util.DeviceHealthMonitor;
 import java.util.Queue;
 
 /**
@@ -63,10 +70,17 @@ public class ModuleIOTalonFX implements ModuleIO {
   private final double DRIVE_GEAR_RATIO = (50.0 / 14.0) * (17.0 / 27.0) * (45.0 / 15.0);
   private final double TURN_GEAR_RATIO = 150.0 / 7.0;
 
+  private final VelocityVoltage driveVelocityRequest = new VelocityVoltage(0.0);
+  private final PositionVoltage turnPositionRequest = new PositionVoltage(0.0);
+
   private final boolean isTurnMotorInverted = true;
   private final Rotation2d absoluteEncoderOffset;
 
-  public ModuleIOTalonFX(int index) {
+  public ModuleIOTalonFX(
+      int index,
+      OdometryThreads odometryThreads,
+      CANBusPlanner planner,
+      DeviceHealthMonitor healthMonitor) {
     switch (index) {
       case 0:
         driveTalon = new TalonFX(0);
@@ -105,16 +119,22 @@ public class ModuleIOTalonFX implements ModuleIO {
     var turnConfig = new TalonFXConfiguration();
     turnConfig.CurrentLimits.SupplyCurrentLimit = 30.0;
     turnConfig.CurrentLimits.SupplyCurrentLimitEnable = true;
+    // Report the turn position in module rotations, so the position loop can wrap once per turn
+    turnConfig.Feedback.SensorToMechanismRatio = TURN_GEAR_RATIO;
+    turnConfig.ClosedLoopGeneral.ContinuousWrap = true;
     turnTalon.getConfigurator().apply(turnConfig);
     setTurnBrakeMode(true);
 
     cancoder.getConfigurator().apply(new CANcoderConfiguration());
 
-    timestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
+    timestampQueue = odometryThreads.getPhoenix().makeTimestampQueue();
 
     drivePosition = driveTalon.getPosition();
     drivePositionQueue =
-        PhoenixOdometryThread.getInstance().registerSignal(driveTalon, driveTalon.getPosition());
+        odometryThreads
+            .getPhoenix()
+            .registerSignal(
+                "Module" + index + "/DrivePosition", driveTalon, driveTalon.getPosition());
     driveVelocity = driveTalon.getVelocity();
     driveAppliedVolts = driveTalon.getMotorVoltage();
     driveCurrent = driveTalon.getSupplyCurrent();
@@ -122,24 +142,67 @@ public class ModuleIOTalonFX implements ModuleIO {
     turnAbsolutePosition = cancoder.getAbsolutePosition();
     turnPosition = turnTalon.getPosition();
     turnPositionQueue =
-        PhoenixOdometryThread.getInstance().registerSignal(turnTalon, turnTalon.getPosition());
+        odometryThreads
+            .getPhoenix()
+            .registerSignal("Module" + index + "/TurnPosition", turnTalon, turnTalon.getPosition());
     turnVelocity = turnTalon.getVelocity();
     turnAppliedVolts = turnTalon.getMotorVoltage();
     turnCurrent = turnTalon.getSupplyCurrent();
 
-    BaseStatusSignal.setUpdateFrequencyForAll(
-        Module.ODOMETRY_FREQUENCY, drivePosition, turnPosition);
-    BaseStatusSignal.setUpdateFrequencyForAll(
-        50.0,
-        driveVelocity,
-        driveAppliedVolts,
-        driveCurrent,
-        turnAbsolutePosition,
-        turnVelocity,
-        turnAppliedVolts,
-        turnCurrent);
-    driveTalon.optimizeBusUtilization();
-    turnTalon.optimizeBusUtilization();
+    var driveHealth =
+        new DeviceHealthMonitor.PhoenixDevice(
+            "Module" + index + "/Drive",
+            driveTalon.getFaultField(),
+            driveTalon.getStickyFaultField(),
+            driveTalon.getVersion(),
+            driveTalon.getDeviceTemp(),
+            HealthMonitorConstants.motorTemperatureLimitCelsius);
+    var turnHealth =
+        new DeviceHealthMonitor.PhoenixDevice(
+            "Module" + index + "/Turn",
+            turnTalon.getFaultField(),
+            turnTalon.getStickyFaultField(),
+            turnTalon.getVersion(),
+            turnTalon.getDeviceTemp(),
+            HealthMonitorConstants.motorTemperatureLimitCelsius);
+    var cancoderHealth =
+        new DeviceHealthMonitor.PhoenixDevice(
+            "Module" + index + "/CANcoder",
+            cancoder.getFaultField(),
+            cancoder.getStickyFaultField(),
+            cancoder.getVersion(),
+            null,
+            Double.POSITIVE_INFINITY);
+    healthMonitor.add(driveHealth);
+    healthMonitor.add(turnHealth);
+    healthMonitor.add(cancoderHealth);
+
+    // Control requests are resent at 100 Hz on their own, and on every call with high-rate control
+    double controlRate =
+        HighRateControlConstants.enableHighRateControl ? Module.ODOMETRY_FREQUENCY : 100.0;
+    planner
+        .phoenix("Module" + index + "/Drive")
+        .require(drivePosition, Module.ODOMETRY_FREQUENCY)
+        .require(driveVelocity, 50.0)
+        .require(driveAppliedVolts, 50.0)
+        .require(driveCurrent, 50.0)
+        .require(healthMonitor.getRateHz(), driveHealth.getSignals())
+        .requireControl(controlRate)
+        .apply(driveTalon);
+    planner
+        .phoenix("Module" + index + "/Turn")
+        .require(turnPosition, Module.ODOMETRY_FREQUENCY)
+        .require(turnVelocity, 50.0)
+        .require(turnAppliedVolts, 50.0)
+        .require(turnCurrent, 50.0)
+        .require(healthMonitor.getRateHz(), turnHealth.getSignals())
+        .requireControl(controlRate)
+        .apply(turnTalon);
+    planner
+        .phoenix("Module" + index + "/CANcoder")
+        .require(turnAbsolutePosition, 50.0)
+        .require(healthMonitor.getRateHz(), cancoderHealth.getSignals())
+        .apply(cancoder);
   }
 
   @Override
@@ -165,10 +228,8 @@ public class ModuleIOTalonFX implements ModuleIO {
     inputs.turnAbsolutePosition =
         Rotation2d.fromRotations(turnAbsolutePosition.getValueAsDouble())
             .minus(absoluteEncoderOffset);
-    inputs.turnPosition =
-        Rotation2d.fromRotations(turnPosition.getValueAsDouble() / TURN_GEAR_RATIO);
-    inputs.turnVelocityRadPerSec =
-        Units.rotationsToRadians(turnVelocity.getValueAsDouble()) / TURN_GEAR_RATIO;
+    inputs.turnPosition = Rotation2d.fromRotations(turnPosition.getValueAsDouble());
+    inputs.turnVelocityRadPerSec = Units.rotationsToRadians(turnVelocity.getValueAsDouble());
     inputs.turnAppliedVolts = turnAppliedVolts.getValueAsDouble();
     inputs.turnCurrentAmps = new double[] {turnCurrent.getValueAsDouble()};
 
@@ -180,13 +241,55 @@ public class ModuleIOTalonFX implements ModuleIO {
             .toArray();
     inputs.odometryTurnPositions =
         turnPositionQueue.stream()
-            .map((Double value) -> Rotation2d.fromRotations(value / TURN_GEAR_RATIO))
+            .map((Double value) -> Rotation2d.fromRotations(value))
             .toArray(Rotation2d[]::new);
     timestampQueue.clear();
     drivePositionQueue.clear();
     turnPositionQueue.clear();
   }
 
+  @Override
+  public double odometryDrivePositionRad(double sample) {
+    return Units.rotationsToRadians(sample) / DRIVE_GEAR_RATIO;
+  }
+
+  @Override
+  public double odometryTurnPositionRad(double sample) {
+    return Units.rotationsToRadians(sample);
+  }
+
+  @Override
+  public void configureDriveFeedback(double kP, double kD) {
+    // Error is in motor rotations per second and output is in volts
+    double radPerSecPerRotorRps = Units.rotationsToRadians(1.0) / DRIVE_GEAR_RATIO;
+    var config = new Slot0Configs();
+    config.kP = kP * radPerSecPerRotorRps;
+    config.kD = kD * radPerSecPerRotorRps;
+    driveTalon.getConfigurator().apply(config);
+  }
+
+  @Override
+  public void configureTurnFeedback(double kP, double kD) {
+    // Error is in module rotations and output is in volts
+    var config = new Slot0Configs();
+    config.kP = kP * Units.rotationsToRadians(1.0);
+    config.kD = kD * Units.rotationsToRadians(1.0);
+    turnTalon.getConfigurator().apply(config);
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityRadPerSec, double feedforwardVolts) {
+    driveTalon.setControl(
+        driveVelocityRequest
+            .withVelocity(Units.radiansToRotations(velocityRadPerSec) * DRIVE_GEAR_RATIO)
+            .withFeedForward(feedforwardVolts));
+  }
+
+  @Override
+  public void setTurnPosition(double positionRad) {
+    turnTalon.setControl(turnPositionRequest.withPosition(Units.radiansToRotations(positionRad)));
+  }
+
   @Override
   public void setDriveVoltage(double volts) {
     driveTalon.setControl(new VoltageOut(volts));
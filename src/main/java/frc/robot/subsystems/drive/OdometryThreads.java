@@ -0,0 +1,102 @@
+package frc.robot.subsystems.drive;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Owns the odometry lock and the high-frequency sampling threads for a single drive.
+ *
+ * <p>IO implementations register their signals with the thread matching their hardware while they
+ * are constructed, then the drive starts both threads. Each drive gets its own instance, so several
+ * simulated robots can run side by side in one JVM.
+ */
+public class OdometryThreads {
+  /** Receives every sample on the sampling thread, while the odometry lock is held. */
+  public interface SampleListener {
+    /**
+     * Called after a sample has been queued.
+     *
+     * @param timestamp The sample timestamp in seconds.
+     * @param values The raw value of each signal, in registration order. Only valid during the
+     *     call.
+     */
+    void onSample(double timestamp, double[] values);
+  }
+
+  /** Room for 30 minutes of samples at the odometry frequency. */
+  static final long sampleLogMaxRecords = (long) (30 * 60 * Module.ODOMETRY_FREQUENCY);
+
+  private final Lock lock = new ReentrantLock(); // Prevents odometry updates while reading data
+  private final PhoenixOdometryThread phoenix;
+  private final SparkMaxOdometryThread sparkMax;
+
+  /** Creates odometry threads that timestamp samples using the real robot time. */
+  public OdometryThreads() {
+    this(() -> Logger.getRealTimestamp() / 1e6);
+  }
+
+  /**
+   * Creates odometry threads that timestamp samples using the given clock.
+   *
+   * @param clock Supplies the current time in seconds.
+   */
+  public OdometryThreads(DoubleSupplier clock) {
+    phoenix = new PhoenixOdometryThread(lock, clock);
+    sparkMax = new SparkMaxOdometryThread(lock, clock);
+  }
+
+  /** Returns the lock held while odometry samples are written or read. */
+  public Lock getLock() {
+    return lock;
+  }
+
+  /** Returns the sampling thread for Phoenix 6 devices. */
+  public PhoenixOdometryThread getPhoenix() {
+    return phoenix;
+  }
+
+  /** Returns the sampling thread for polled devices such as the SparkMax. */
+  public SparkMaxOdometryThread getSparkMax() {
+    return sparkMax;
+  }
+
+  /**
+   * Records every odometry sample to a compact binary log in the folder, one file per thread. Must
+   * be called before the threads are started. The logs are closed when the JVM shuts down.
+   */
+  public void enableSampleLogs(Path folder) {
+    phoenix.enableSampleLog(folder);
+    sparkMax.enableSampleLog(folder);
+    Runtime.getRuntime()
+        .addShutdownHook(new Thread(this::closeSampleLogs, "OdometrySampleLogClose"));
+  }
+
+  /** Closes the sample logs, truncating each file to the samples written. */
+  public void closeSampleLogs() {
+    phoenix.closeSampleLog();
+    sparkMax.closeSampleLog();
+  }
+
+  /**
+   * Adds a listener to each thread that has signals. Must be called before the threads are
+   * started.
+   *
+   * @param factory Creates the listener for a thread from its signal names, or returns null if the
+   *     thread has none of the signals it needs.
+   */
+  public void setSampleListeners(Function<List<String>, SampleListener> factory) {
+    phoenix.setSampleListener(factory.apply(phoenix.getSignalNames()));
+    sparkMax.setSampleListener(factory.apply(sparkMax.getSignalNames()));
+  }
+
+  /** Starts both threads (no-op for each if no signals have been registered). */
+  public void start() {
+    phoenix.start();
+    sparkMax.start();
+  }
+}
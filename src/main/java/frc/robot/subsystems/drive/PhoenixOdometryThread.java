@@ -15,15 +15,21 @@ package frc.robot.subsystems.drive;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.CANBus;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.hardware.ParentDevice;
+import frc.robot.util.jfr.OdometryBatchEvent;
+import frc.robot.util.jfr.OdometryLockWaitEvent;
+import frc.robot.util.log.OdometrySampleLog;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import org.littletonrobotics.junction.Logger;
+import java.util.function.DoubleSupplier;
 
 /**
  * Provides an interface for asynchronously reading high-frequency measurements to a set of queues.
@@ -37,35 +43,101 @@ public class PhoenixOdometryThread extends Thread {
   private final Lock signalsLock =
       new ReentrantLock(); // Prevents conflicts when registering signals
   private BaseStatusSignal[] signals = new BaseStatusSignal[0];
+  private final List<String> signalNames = new ArrayList<>();
   private final List<Queue<Double>> queues = new ArrayList<>();
   private final List<Queue<Double>> timestampQueues = new ArrayList<>();
   private boolean isCANFD = false;
+  private volatile long missedSamples = 0; // Only written by this thread
 
-  private static PhoenixOdometryThread instance = null;
+  private final Lock odometryLock;
+  private final DoubleSupplier clock;
+  private Path sampleLogFolder = null;
+  private volatile OdometrySampleLog sampleLog = null; // Also read by the main thread
+  private double[] sampleValues = new double[0];
+  private OdometryThreads.SampleListener sampleListener = null;
 
-  public static PhoenixOdometryThread getInstance() {
-    if (instance == null) {
-      instance = new PhoenixOdometryThread();
-    }
-    return instance;
-  }
-
-  private PhoenixOdometryThread() {
+  PhoenixOdometryThread(Lock odometryLock, DoubleSupplier clock) {
+    this.odometryLock = odometryLock;
+    this.clock = clock;
     setName("PhoenixOdometryThread");
     setDaemon(true);
   }
 
+  /** Records every sample to a binary log in the folder once started. */
+  void enableSampleLog(Path folder) {
+    sampleLogFolder = folder;
+  }
+
+  /** Calls the listener with every sample once started. */
+  void setSampleListener(OdometryThreads.SampleListener listener) {
+    sampleListener = listener;
+  }
+
+  /** Returns the name of each registered signal. */
+  List<String> getSignalNames() {
+    return signalNames;
+  }
+
   @Override
   public void start() {
-    if (timestampQueues.size() > 0) {
+    if (timestampQueues.size() > 0 && !isAlive()) {
+      if (sampleLogFolder != null) {
+        try {
+          sampleLog =
+              new OdometrySampleLog(
+                  OdometrySampleLog.newFilePath(sampleLogFolder, "Phoenix"),
+                  signalNames,
+                  OdometryThreads.sampleLogMaxRecords);
+        } catch (IOException e) {
+          System.err.println("Failed to create odometry sample log: " + e.getMessage());
+        }
+      }
+      sampleValues = new double[signalNames.size()];
       super.start();
     }
   }
 
-  public Queue<Double> registerSignal(ParentDevice device, StatusSignal<Double> signal) {
+  /** Returns the id of the sampling thread, or -1 if it has not been started. */
+  public long getThreadId() {
+    return isAlive() ? getId() : -1;
+  }
+
+  /** Flushes the sample log and truncates it to the samples written, if there is one. */
+  void closeSampleLog() {
+    odometryLock.lock();
+    try {
+      if (sampleLog != null) {
+        sampleLog.close();
+        sampleLog = null;
+      }
+    } finally {
+      odometryLock.unlock();
+    }
+  }
+
+  /** Returns how many samples the sample log dropped, e.g. once it reached its maximum size. */
+  public long getDroppedLogSamples() {
+    OdometrySampleLog log = sampleLog;
+    return log != null ? log.getDroppedRecords() : 0;
+  }
+
+  /** Returns how many samples timed out or failed to refresh, and so repeat stale values. */
+  public long getMissedSamples() {
+    return missedSamples;
+  }
+
+  /**
+   * Registers a signal to sample.
+   *
+   * @param name Name of the signal in the sample log, e.g. "Module0/DrivePosition".
+   * @param device The device the signal belongs to.
+   * @param signal The signal to sample.
+   */
+  public Queue<Double> registerSignal(
+      String name, ParentDevice device, StatusSignal<Double> signal) {
     Queue<Double> queue = new ArrayBlockingQueue<>(20);
     signalsLock.lock();
-    Drive.odometryLock.lock();
+    odometryLock.lock();
     try {
       isCANFD = CANBus.isNetworkFD(device.getNetwork());
       BaseStatusSignal[] newSignals = new BaseStatusSignal[signals.length + 1];
@@ -73,20 +145,21 @@ public class PhoenixOdometryThread extends Thread {
       newSignals[signals.length] = signal;
       signals = newSignals;
       queues.add(queue);
+      signalNames.add(name);
     } finally {
       signalsLock.unlock();
-      Drive.odometryLock.unlock();
+      odometryLock.unlock();
     }
     return queue;
   }
 
   public Queue<Double> makeTimestampQueue() {
     Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    Drive.odometryLock.lock();
+    odometryLock.lock();
     try {
       timestampQueues.add(queue);
     } finally {
-      Drive.odometryLock.unlock();
+      odometryLock.unlock();
     }
     return queue;
   }
@@ -97,15 +170,19 @@ public class PhoenixOdometryThread extends Thread {
       // Wait for updates from all signals
       signalsLock.lock();
       try {
+        StatusCode status = StatusCode.OK;
         if (isCANFD) {
-          BaseStatusSignal.waitForAll(2.0 / Module.ODOMETRY_FREQUENCY, signals);
+          status = BaseStatusSignal.waitForAll(2.0 / Module.ODOMETRY_FREQUENCY, signals);
         } else {
           // "waitForAll" does not support blocking on multiple
           // signals with a bus that is not CAN FD, regardless
           // of Pro licensing. No reasoning for this behavior
           // is provided by the documentation.
           Thread.sleep((long) (1000.0 / Module.ODOMETRY_FREQUENCY));
-          if (signals.length > 0) BaseStatusSignal.refreshAll(signals);
+          if (signals.length > 0) status = BaseStatusSignal.refreshAll(signals);
+        }
+        if (!status.isOK()) {
+          missedSamples++;
         }
       } catch (InterruptedException e) {
         e.printStackTrace();
@@ -114,24 +191,38 @@ public class PhoenixOdometryThread extends Thread {
       }
 
       // Save new data to queues
-      Drive.odometryLock.lock();
+      var lockEvent = OdometryLockWaitEvent.start("PhoenixOdometryThread");
+      odometryLock.lock();
+      OdometryLockWaitEvent.finish(lockEvent);
+      var batchEvent = OdometryBatchEvent.start();
       try {
-        double timestamp = Logger.getRealTimestamp() / 1e6;
+        double timestamp = clock.getAsDouble();
         double totalLatency = 0.0;
         for (BaseStatusSignal signal : signals) {
           totalLatency += signal.getTimestamp().getLatency();
         }
-        if (signals.length > 0) {
-          timestamp -= totalLatency / signals.length;
-        }
+        double averageLatency = signals.length > 0 ? totalLatency / signals.length : 0.0;
+        timestamp -= averageLatency;
         for (int i = 0; i < signals.length; i++) {
-          queues.get(i).offer(signals[i].getValueAsDouble());
+          double value = signals[i].getValueAsDouble();
+          queues.get(i).offer(value);
+          sampleValues[i] = value;
         }
         for (int i = 0; i < timestampQueues.size(); i++) {
           timestampQueues.get(i).offer(timestamp);
         }
+        if (sampleLog != null) {
+          sampleLog.append(timestamp, sampleValues);
+        }
+        if (sampleListener != null) {
+          sampleListener.onSample(timestamp, sampleValues);
+        }
+        if (batchEvent != null) { // Only read the queue size when the event is recorded
+          OdometryBatchEvent.finish(
+              batchEvent, signals.length, timestampQueues.get(0).size(), averageLatency, true);
+        }
       } finally {
-        Drive.odometryLock.unlock();
+        odometryLock.unlock();
       }
     }
   }
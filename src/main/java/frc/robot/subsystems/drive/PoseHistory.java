@@ -0,0 +1,164 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * A fixed-size history of timestamped poses, queried by time.
+ *
+ * <p>Poses are stored in a ring buffer of primitive arrays, one per field, so adding a pose or
+ * querying one allocates nothing. Queries find the two poses around the timestamp with a binary
+ * search and interpolate between them, wrapping the rotation the short way around. Like {@code
+ * TimeInterpolatableBuffer}, timestamps outside the history are clamped to its oldest or newest
+ * pose. Only for use from one thread.
+ */
+public class PoseHistory {
+  private final double[] timestamps;
+  private final double[] xs;
+  private final double[] ys;
+  private final double[] rotationsRad;
+  private final double[] scratch = new double[3];
+  private int oldest = 0;
+  private int size = 0;
+
+  /**
+   * Creates an empty history.
+   *
+   * @param capacity Number of poses kept. Once full, each new pose replaces the oldest.
+   */
+  public PoseHistory(int capacity) {
+    timestamps = new double[capacity];
+    xs = new double[capacity];
+    ys = new double[capacity];
+    rotationsRad = new double[capacity];
+  }
+
+  /**
+   * Adds the newest pose. Poses that are not newer than the previous one are ignored.
+   *
+   * @param timestamp The time of the pose in seconds.
+   * @param x The x coordinate in meters.
+   * @param y The y coordinate in meters.
+   * @param rotationRad The rotation in radians.
+   */
+  public void add(double timestamp, double x, double y, double rotationRad) {
+    if (size > 0 && timestamp <= timestamps[physical(size - 1)]) {
+      return;
+    }
+    int index;
+    if (size < timestamps.length) {
+      index = physical(size);
+      size++;
+    } else {
+      index = oldest;
+      oldest = physical(1);
+    }
+    timestamps[index] = timestamp;
+    xs[index] = x;
+    ys[index] = y;
+    rotationsRad[index] = rotationRad;
+  }
+
+  /** Removes every pose, e.g. after the pose is reset and older poses no longer connect to it. */
+  public void clear() {
+    oldest = 0;
+    size = 0;
+  }
+
+  /** Returns whether the history holds no poses. */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Gets the pose at a timestamp.
+   *
+   * @param timestamp The time in seconds.
+   * @param out Receives the x and y in meters and the rotation in radians.
+   * @return Whether there was a pose. If not, the output is left unchanged.
+   */
+  public boolean getPoseAt(double timestamp, double[] out) {
+    if (size == 0) {
+      return false;
+    }
+    if (timestamp <= timestamps[oldest]) {
+      copy(0, out);
+      return true;
+    }
+    if (timestamp >= timestamps[physical(size - 1)]) {
+      copy(size - 1, out);
+      return true;
+    }
+
+    // Find the first pose after the timestamp
+    int low = 1;
+    int high = size - 1;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (timestamps[physical(middle)] > timestamp) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    int after = physical(low);
+    int before = physical(low - 1);
+    double t = (timestamp - timestamps[before]) / (timestamps[after] - timestamps[before]);
+    out[0] = xs[before] + (xs[after] - xs[before]) * t;
+    out[1] = ys[before] + (ys[after] - ys[before]) * t;
+    out[2] =
+        MathUtil.angleModulus(
+            rotationsRad[before]
+                + MathUtil.angleModulus(rotationsRad[after] - rotationsRad[before]) * t);
+    return true;
+  }
+
+  /**
+   * Gets the field relative velocity at a timestamp, from the poses half a span before and after
+   * it. The span is shortened where it runs past either end of the history.
+   *
+   * @param timestamp The time in seconds.
+   * @param spanSecs The time between the two poses the velocity is taken from.
+   * @param out Receives the x and y velocities in meters per second and the angular velocity in
+   *     radians per second.
+   * @return Whether there were two poses to take the velocity from. If not, the output is left
+   *     unchanged.
+   */
+  public boolean getVelocityAt(double timestamp, double spanSecs, double[] out) {
+    if (size < 2) {
+      return false;
+    }
+    double start = Math.max(timestamp - spanSecs / 2.0, timestamps[oldest]);
+    double end = Math.min(timestamp + spanSecs / 2.0, timestamps[physical(size - 1)]);
+    if (end <= start) {
+      // Entirely outside the history, so use the span at its nearest end
+      if (timestamp < timestamps[oldest]) {
+        end = Math.min(start + spanSecs, timestamps[physical(size - 1)]);
+      } else {
+        start = Math.max(end - spanSecs, timestamps[oldest]);
+      }
+    }
+    getPoseAt(start, scratch);
+    double startX = scratch[0];
+    double startY = scratch[1];
+    double startRotation = scratch[2];
+    getPoseAt(end, scratch);
+    double duration = end - start;
+    out[0] = (scratch[0] - startX) / duration;
+    out[1] = (scratch[1] - startY) / duration;
+    out[2] = MathUtil.angleModulus(scratch[2] - startRotation) / duration;
+    return true;
+  }
+
+  private void copy(int logical, double[] out) {
+    int index = physical(logical);
+    out[0] = xs[index];
+    out[1] = ys[index];
+    out[2] = rotationsRad[index];
+  }
+
+  /** Returns the array index of the pose at a position counted from the oldest. */
+  private int physical(int logical) {
+    int index = oldest + logical;
+    return index < timestamps.length ? index : index - timestamps.length;
+  }
+}
@@ -0,0 +1,34 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import org.littletonrobotics.junction.AutoLog;
+
+/** Saves the estimated pose across reboots, so a rebooted robot starts where it left off. */
+public interface PosePersistenceIO {
+  @AutoLog
+  public static class PosePersistenceIOInputs {
+    // The last state saved before this boot, which later saves do not change
+    public boolean hasSavedState = false;
+    public boolean savedWhileEnabled = false;
+    public int savedMatchNumber = 0; // 0 when not in a match
+    public long savedBootSaveCount = 0; // Saves made by the boot that saved the state
+    public Pose2d pose = new Pose2d();
+    public Rotation2d gyroYaw = new Rotation2d(); // Raw gyro reading when the state was saved
+
+    // Only known once the wall clock was set both when the state was saved and now
+    public boolean ageKnown = false;
+    public double ageSecs = 0.0;
+  }
+
+  /** Reads the last state saved before this boot, and its age once that is known. */
+  public default void updateInputs(PosePersistenceIOInputs inputs) {}
+
+  /**
+   * Saves the state without waiting for it to reach storage.
+   *
+   * @param pose The estimated pose.
+   * @param gyroYaw The raw gyro reading the pose was estimated with.
+   */
+  public default void save(Pose2d pose, Rotation2d gyroYaw) {}
+}
@@ -0,0 +1,173 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.util.WallClock;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Pose persistence IO implementation for a small memory-mapped file.
+ *
+ * <p>The file holds two slots, written alternately, each with a sequence number and a CRC. A save
+ * only copies one slot into the mapped memory, then a background thread forces it to storage. If
+ * power is lost partway through, the slot being written fails its CRC and the other slot, which
+ * holds the previous save, is read instead.
+ *
+ * <p>The saved state is read once when this is created, before anything is saved. Each save also
+ * records whether the robot was enabled and in which match, and the wall clock time only if the
+ * driver station had set the clock, so a restore can be decided without trusting the clock.
+ */
+public class PosePersistenceIOFile implements PosePersistenceIO {
+  // Slot layout: sequence, wall clock millis (0 if unknown), x, y, rotation, gyro yaw, saves this
+  // boot, flags, match number, then a CRC of all of them
+  private static final int slotSize = 64;
+  private static final int checkedBytes = 56;
+  private static final short enabledFlag = 1;
+
+  private final MappedByteBuffer buffer; // Null if the file could not be mapped
+  private final BooleanSupplier clockValid;
+  private final ByteBuffer slot = ByteBuffer.allocate(slotSize);
+  private final CRC32 crc = new CRC32();
+  private final ExecutorService forceExecutor;
+  private final AtomicBoolean forcePending = new AtomicBoolean(false);
+  private long sequence = 0;
+  private long bootSaveCount = 0;
+
+  // The state saved before this boot
+  private boolean hasSavedState = false;
+  private long savedMillis = 0;
+  private boolean savedWhileEnabled = false;
+  private int savedMatchNumber = 0;
+  private long savedBootSaveCount = 0;
+  private Pose2d savedPose = new Pose2d();
+  private Rotation2d savedGyroYaw = new Rotation2d();
+
+  public PosePersistenceIOFile(Path path) {
+    this(path, WallClock::isValid);
+  }
+
+  /**
+   * Opens the file and reads the saved state.
+   *
+   * @param path The file, created if it does not exist.
+   * @param clockValid Returns whether the wall clock has been set.
+   */
+  PosePersistenceIOFile(Path path, BooleanSupplier clockValid) {
+    this.clockValid = clockValid;
+    MappedByteBuffer mapped = null;
+    try (FileChannel channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // The mapping stays valid after the channel is closed
+      mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2 * slotSize);
+    } catch (IOException e) {
+      DriverStation.reportWarning("Failed to open saved pose: " + e.getMessage(), false);
+    }
+    buffer = mapped;
+    forceExecutor =
+        Executors.newSingleThreadExecutor(
+            (runnable) -> {
+              Thread thread = new Thread(runnable, "PosePersistence");
+              thread.setDaemon(true);
+              return thread;
+            });
+    if (buffer != null) {
+      readSavedState();
+    }
+  }
+
+  private void readSavedState() {
+    // Use the newest slot that is intact
+    int newest = -1;
+    for (int i = 0; i < 2; i++) {
+      if (isIntact(i) && (newest < 0 || getSequence(i) > getSequence(newest))) {
+        newest = i;
+      }
+    }
+    if (newest < 0) {
+      return;
+    }
+    int offset = newest * slotSize;
+    sequence = buffer.getLong(offset);
+    hasSavedState = true;
+    savedMillis = buffer.getLong(offset + 8);
+    savedPose =
+        new Pose2d(
+            buffer.getDouble(offset + 16),
+            buffer.getDouble(offset + 24),
+            new Rotation2d(buffer.getDouble(offset + 32)));
+    savedGyroYaw = new Rotation2d(buffer.getDouble(offset + 40));
+    savedBootSaveCount = buffer.getInt(offset + 48);
+    savedWhileEnabled = (buffer.getShort(offset + 52) & enabledFlag) != 0;
+    savedMatchNumber = buffer.getShort(offset + 54);
+  }
+
+  private boolean isIntact(int index) {
+    int offset = index * slotSize;
+    crc.reset();
+    crc.update(buffer.slice(offset, checkedBytes));
+    return getSequence(index) > 0 && buffer.getLong(offset + checkedBytes) == crc.getValue();
+  }
+
+  private long getSequence(int index) {
+    return buffer.getLong(index * slotSize);
+  }
+
+  @Override
+  public void updateInputs(PosePersistenceIOInputs inputs) {
+    inputs.hasSavedState = hasSavedState;
+    if (!hasSavedState) {
+      return;
+    }
+    inputs.savedWhileEnabled = savedWhileEnabled;
+    inputs.savedMatchNumber = savedMatchNumber;
+    inputs.savedBootSaveCount = savedBootSaveCount;
+    inputs.pose = savedPose;
+    inputs.gyroYaw = savedGyroYaw;
+    inputs.ageKnown = savedMillis > 0 && clockValid.getAsBoolean();
+    inputs.ageSecs = inputs.ageKnown ? (System.currentTimeMillis() - savedMillis) / 1000.0 : 0.0;
+  }
+
+  @Override
+  public void save(Pose2d pose, Rotation2d gyroYaw) {
+    if (buffer == null) {
+      return;
+    }
+    sequence++;
+    bootSaveCount++;
+    slot.clear();
+    slot.putLong(sequence);
+    slot.putLong(clockValid.getAsBoolean() ? System.currentTimeMillis() : 0);
+    slot.putDouble(pose.getX());
+    slot.putDouble(pose.getY());
+    slot.putDouble(pose.getRotation().getRadians());
+    slot.putDouble(gyroYaw.getRadians());
+    slot.putInt((int) Math.min(bootSaveCount, Integer.MAX_VALUE));
+    slot.putShort(DriverStation.isEnabled() ? enabledFlag : 0);
+    slot.putShort((short) DriverStation.getMatchNumber());
+    crc.reset();
+    crc.update(slot.array(), 0, checkedBytes);
+    slot.putLong(crc.getValue());
+
+    // Overwrite the older slot, so the newer one survives a torn write
+    buffer.put((int) (sequence % 2) * slotSize, slot, 0, slotSize);
+    if (forcePending.compareAndSet(false, true)) {
+      forceExecutor.execute(
+          () -> {
+            forcePending.set(false);
+            buffer.force();
+          });
+    }
+  }
+}
@@ -14,13 +14,19 @@
 package frc.robot.subsystems.drive;
 
 import edu.wpi.first.wpilibj.Notifier;
+import frc.robot.util.jfr.OdometryBatchEvent;
+import frc.robot.util.jfr.OdometryLockWaitEvent;
+import frc.robot.util.log.OdometrySampleLog;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.OptionalDouble;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
-import org.littletonrobotics.junction.Logger;
 
 /**
  * Provides an interface for asynchronously reading high-frequency measurements to a set of queues.
@@ -30,56 +36,124 @@ import org.littletonrobotics.junction.Logger;
  */
 public class SparkMaxOdometryThread {
   private List<Supplier<OptionalDouble>> signals = new ArrayList<>();
+  private List<String> signalNames = new ArrayList<>();
   private List<Queue<Double>> queues = new ArrayList<>();
   private List<Queue<Double>> timestampQueues = new ArrayList<>();
 
-  private final Notifier notifier;
-  private static SparkMaxOdometryThread instance = null;
+  private final Lock odometryLock;
+  private final DoubleSupplier clock;
+  private Notifier notifier = null;
+  private volatile long threadId = -1;
+  private volatile long missedSamples = 0; // Only written by the notifier thread
+  private Path sampleLogFolder = null;
+  private volatile OdometrySampleLog sampleLog = null; // Also read by the main thread
+  private OdometryThreads.SampleListener sampleListener = null;
 
-  public static SparkMaxOdometryThread getInstance() {
-    if (instance == null) {
-      instance = new SparkMaxOdometryThread();
-    }
-    return instance;
+  SparkMaxOdometryThread(Lock odometryLock, DoubleSupplier clock) {
+    this.odometryLock = odometryLock;
+    this.clock = clock;
+  }
+
+  /** Records every sample to a binary log in the folder once started. */
+  void enableSampleLog(Path folder) {
+    sampleLogFolder = folder;
   }
 
-  private SparkMaxOdometryThread() {
-    notifier = new Notifier(this::periodic);
-    notifier.setName("SparkMaxOdometryThread");
+  /** Calls the listener with every sample once started. */
+  void setSampleListener(OdometryThreads.SampleListener listener) {
+    sampleListener = listener;
+  }
+
+  /** Returns the name of each registered signal. */
+  List<String> getSignalNames() {
+    return signalNames;
   }
 
   public void start() {
-    if (timestampQueues.size() > 0) {
+    if (timestampQueues.size() > 0 && notifier == null) {
+      if (sampleLogFolder != null) {
+        try {
+          sampleLog =
+              new OdometrySampleLog(
+                  OdometrySampleLog.newFilePath(sampleLogFolder, "SparkMax"),
+                  signalNames,
+                  OdometryThreads.sampleLogMaxRecords);
+        } catch (IOException e) {
+          System.err.println("Failed to create odometry sample log: " + e.getMessage());
+        }
+      }
+      notifier = new Notifier(this::periodic);
+      notifier.setName("SparkMaxOdometryThread");
       notifier.startPeriodic(1.0 / Module.ODOMETRY_FREQUENCY);
     }
   }
 
-  public Queue<Double> registerSignal(Supplier<OptionalDouble> signal) {
+  /** Returns the id of the notifier thread, or -1 if it has not sampled yet. */
+  public long getThreadId() {
+    return threadId;
+  }
+
+  /** Flushes the sample log and truncates it to the samples written, if there is one. */
+  void closeSampleLog() {
+    odometryLock.lock();
+    try {
+      if (sampleLog != null) {
+        sampleLog.close();
+        sampleLog = null;
+      }
+    } finally {
+      odometryLock.unlock();
+    }
+  }
+
+  /** Returns how many samples the sample log dropped, e.g. once it reached its maximum size. */
+  public long getDroppedLogSamples() {
+    OdometrySampleLog log = sampleLog;
+    return log != null ? log.getDroppedRecords() : 0;
+  }
+
+  /** Returns how many samples were dropped because a signal could not be read. */
+  public long getMissedSamples() {
+    return missedSamples;
+  }
+
+  /**
+   * Registers a signal to sample.
+   *
+   * @param name Name of the signal in the sample log, e.g. "Module0/DrivePosition".
+   * @param signal Returns the current value, or empty if it could not be read.
+   */
+  public Queue<Double> registerSignal(String name, Supplier<OptionalDouble> signal) {
     Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    Drive.odometryLock.lock();
+    odometryLock.lock();
     try {
       signals.add(signal);
+      signalNames.add(name);
       queues.add(queue);
     } finally {
-      Drive.odometryLock.unlock();
+      odometryLock.unlock();
     }
     return queue;
   }
 
   public Queue<Double> makeTimestampQueue() {
     Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    Drive.odometryLock.lock();
+    odometryLock.lock();
     try {
       timestampQueues.add(queue);
     } finally {
-      Drive.odometryLock.unlock();
+      odometryLock.unlock();
     }
     return queue;
   }
 
   private void periodic() {
-    Drive.odometryLock.lock();
-    double timestamp = Logger.getRealTimestamp() / 1e6;
+    threadId = Thread.currentThread().getId();
+    var lockEvent = OdometryLockWaitEvent.start("SparkMaxOdometryThread");
+    odometryLock.lock();
+    OdometryLockWaitEvent.finish(lockEvent);
+    var batchEvent = OdometryBatchEvent.start();
+    double timestamp = clock.getAsDouble();
     try {
       double[] values = new double[signals.size()];
       boolean isValid = true;
@@ -99,9 +173,21 @@ public class SparkMaxOdometryThread {
         for (int i = 0; i < timestampQueues.size(); i++) {
           timestampQueues.get(i).offer(timestamp);
         }
+        if (sampleLog != null) {
+          sampleLog.append(timestamp, values);
+        }
+        if (sampleListener != null) {
+          sampleListener.onSample(timestamp, values);
+        }
+      } else {
+        missedSamples++;
+      }
+      if (batchEvent != null) { // Only read the queue size when the event is recorded
+        OdometryBatchEvent.finish(
+            batchEvent, signals.size(), timestampQueues.get(0).size(), 0.0, isValid);
       }
     } finally {
-      Drive.odometryLock.unlock();
+      odometryLock.unlock();
     }
   }
 }
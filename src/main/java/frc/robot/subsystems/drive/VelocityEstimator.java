@@ -0,0 +1,136 @@
+package frc.robot.subsystems.drive;
+
+/**
+ * Estimates velocity and acceleration from timestamped position samples with a local least squares
+ * polynomial fit, a Savitzky-Golay filter for unevenly spaced samples.
+ *
+ * <p>Each sample, a line (or quadratic) is fit to the last few samples and its slope at the newest
+ * sample is the velocity. A line fit lags by half the window, the same as differencing its ends,
+ * but averages out encoder quantization much better. A quadratic fit does not lag under constant
+ * acceleration, at the cost of more noise. The acceleration always comes from a quadratic fit, so
+ * it describes the middle of the window.
+ *
+ * <p>The estimate restarts after a gap in the samples. Nothing here allocates after construction.
+ */
+public class VelocityEstimator {
+  private static final double maxSampleGapSecs = 0.1;
+
+  private final int window;
+  private final int order;
+  private final double[] timestamps;
+  private final double[] positions;
+  private long sampleCount = 0; // Since the last restart
+
+  private boolean hasEstimate = false;
+  private double velocity = 0.0;
+  private double acceleration = 0.0;
+  private double timestamp = 0.0;
+
+  /**
+   * Creates an estimator.
+   *
+   * @param window Number of samples to fit, at least 3.
+   * @param order Order of the polynomial the velocity comes from, 1 or 2.
+   */
+  public VelocityEstimator(int window, int order) {
+    if (window < 3 || order < 1 || order > 2) {
+      throw new IllegalArgumentException("Window must be at least 3 and order 1 or 2");
+    }
+    this.window = window;
+    this.order = order;
+    timestamps = new double[window];
+    positions = new double[window];
+  }
+
+  /** Adds samples in order, such as the odometry samples received this cycle. */
+  public void addSamples(double[] sampleTimestamps, double[] samplePositions) {
+    for (int i = 0; i < sampleTimestamps.length; i++) {
+      addSample(sampleTimestamps[i], samplePositions[i]);
+    }
+  }
+
+  /** Adds one sample and updates the estimate once the window is full. */
+  public void addSample(double sampleTimestamp, double position) {
+    if (sampleCount > 0) {
+      double gap = sampleTimestamp - timestamps[(int) ((sampleCount - 1) % window)];
+      if (gap <= 0.0 || gap > maxSampleGapSecs) {
+        reset();
+      }
+    }
+    int newest = (int) (sampleCount % window);
+    timestamps[newest] = sampleTimestamp;
+    positions[newest] = position;
+    sampleCount++;
+    if (sampleCount < window) {
+      return;
+    }
+
+    // Fit in time scaled to the window and relative to the newest sample, so the sums are well
+    // conditioned however large the timestamps and positions get
+    double duration = sampleTimestamp - timestamps[(int) (sampleCount % window)];
+    double s1 = 0.0;
+    double s2 = 0.0;
+    double s3 = 0.0;
+    double s4 = 0.0;
+    double y0 = 0.0;
+    double y1 = 0.0;
+    double y2 = 0.0;
+    for (int i = 0; i < window; i++) {
+      double s = (timestamps[i] - sampleTimestamp) / duration;
+      double y = positions[i] - position;
+      double ss = s * s;
+      s1 += s;
+      s2 += ss;
+      s3 += ss * s;
+      s4 += ss * ss;
+      y0 += y;
+      y1 += s * y;
+      y2 += ss * y;
+    }
+    double n = window;
+
+    // Quadratic y = a + b * s + c * s^2 by Cramer's rule on the normal equations
+    double determinant =
+        n * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s2 * s3) + s2 * (s1 * s3 - s2 * s2);
+    double b =
+        (n * (y1 * s4 - s3 * y2) - y0 * (s1 * s4 - s2 * s3) + s2 * (s1 * y2 - s2 * y1))
+            / determinant;
+    double c =
+        (n * (s2 * y2 - s3 * y1) - s1 * (s1 * y2 - s2 * y1) + y0 * (s1 * s3 - s2 * s2))
+            / determinant;
+    acceleration = 2.0 * c / (duration * duration);
+    if (order == 2) {
+      velocity = b / duration;
+    } else {
+      velocity = (n * y1 - s1 * y0) / (n * s2 - s1 * s1) / duration;
+    }
+    timestamp = sampleTimestamp;
+    hasEstimate = true;
+  }
+
+  /** Clears the samples, so the estimate restarts with the next full window. */
+  public void reset() {
+    sampleCount = 0;
+    hasEstimate = false;
+  }
+
+  /** Returns whether a full window has been fit since the last restart. */
+  public boolean hasEstimate() {
+    return hasEstimate;
+  }
+
+  /** Returns the velocity at the newest sample, in position units per second. */
+  public double getVelocity() {
+    return velocity;
+  }
+
+  /** Returns the acceleration over the window, in position units per second squared. */
+  public double getAcceleration() {
+    return acceleration;
+  }
+
+  /** Returns the timestamp of the newest sample in seconds. */
+  public double getTimestamp() {
+    return timestamp;
+  }
+}
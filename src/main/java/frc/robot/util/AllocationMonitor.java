@@ -0,0 +1,100 @@
+package frc.robot.util;
+
+import frc.robot.subsystems.drive.OdometryThreads;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Logs how much memory the robot threads allocate every loop, and how much time the garbage
+ * collector takes.
+ *
+ * <p>Allocation is read from the JVM's per-thread counters for the main thread and both odometry
+ * threads, so a change that starts allocating in the loop shows up as a step in "Allocation/".
+ * Collection counts and times from every collector are logged under "GC/". Allocation per profiled
+ * phase is logged by the {@link LoopProfiler}.
+ */
+public class AllocationMonitor {
+  private final boolean enabled;
+  private final OdometryThreads odometryThreads;
+  private final com.sun.management.ThreadMXBean threadBean;
+  private final List<GarbageCollectorMXBean> gcBeans;
+
+  private long lastMainBytes;
+  private long lastPhoenixBytes = 0;
+  private long lastSparkMaxBytes = 0;
+  private long lastGCCount;
+  private long lastGCTimeMS;
+
+  /**
+   * Creates a monitor. Call {@link #periodic()} once per loop from the main thread.
+   *
+   * @param enabled Whether to measure anything. Also disabled if the JVM has no allocation
+   *     counters.
+   * @param odometryThreads The odometry threads to measure alongside the main thread.
+   */
+  public AllocationMonitor(boolean enabled, OdometryThreads odometryThreads) {
+    this.odometryThreads = odometryThreads;
+    threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    this.enabled =
+        enabled
+            && threadBean.isThreadAllocatedMemorySupported()
+            && threadBean.isThreadAllocatedMemoryEnabled();
+
+    lastMainBytes = this.enabled ? threadBean.getCurrentThreadAllocatedBytes() : 0;
+    lastGCCount = getGCCount();
+    lastGCTimeMS = getGCTimeMS();
+  }
+
+  /** Logs the allocation and GC activity since the previous call. */
+  public void periodic() {
+    if (!enabled) {
+      return;
+    }
+
+    long mainBytes = threadBean.getCurrentThreadAllocatedBytes();
+    long phoenixBytes = getThreadBytes(odometryThreads.getPhoenix().getThreadId());
+    long sparkMaxBytes = getThreadBytes(odometryThreads.getSparkMax().getThreadId());
+    long gcCount = getGCCount();
+    long gcTimeMS = getGCTimeMS();
+
+    Logger.recordOutput("Allocation/MainBytes", mainBytes - lastMainBytes);
+    Logger.recordOutput(
+        "Allocation/PhoenixOdometryBytes", Math.max(phoenixBytes - lastPhoenixBytes, 0));
+    Logger.recordOutput(
+        "Allocation/SparkMaxOdometryBytes", Math.max(sparkMaxBytes - lastSparkMaxBytes, 0));
+    Logger.recordOutput("GC/Collections", gcCount - lastGCCount);
+    Logger.recordOutput("GC/TimeMS", gcTimeMS - lastGCTimeMS);
+    Logger.recordOutput("GC/TotalCollections", gcCount);
+    Logger.recordOutput("GC/TotalTimeMS", gcTimeMS);
+
+    lastMainBytes = mainBytes;
+    lastPhoenixBytes = phoenixBytes;
+    lastSparkMaxBytes = sparkMaxBytes;
+    lastGCCount = gcCount;
+    lastGCTimeMS = gcTimeMS;
+  }
+
+  /** Returns the bytes allocated by a thread so far, or 0 if it has not started. */
+  private long getThreadBytes(long threadId) {
+    return threadId < 0 ? 0 : Math.max(threadBean.getThreadAllocatedBytes(threadId), 0);
+  }
+
+  private long getGCCount() {
+    long count = 0;
+    for (int i = 0; i < gcBeans.size(); i++) {
+      count += Math.max(gcBeans.get(i).getCollectionCount(), 0);
+    }
+    return count;
+  }
+
+  private long getGCTimeMS() {
+    long time = 0;
+    for (int i = 0; i < gcBeans.size(); i++) {
+      time += Math.max(gcBeans.get(i).getCollectionTime(), 0);
+    }
+    return time;
+  }
+}
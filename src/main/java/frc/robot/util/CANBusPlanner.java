@@ -0,0 +1,293 @@
+package frc.robot.util;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.hardware.ParentDevice;
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.REVLibError;
+import edu.wpi.first.hal.can.CANJNI;
+import edu.wpi.first.hal.can.CANStatus;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotBase;
+import frc.robot.subsystems.drive.OdometryThreads;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Plans the status frame rates of every device on the CAN bus from the signals each IO class
+ * actually reads.
+ *
+ * <p>IO classes declare each signal they read and how often while they are constructed, through a
+ * handle for each device. The planner then picks the slowest frame period that still delivers every
+ * signal in time, disables SparkMax frames nothing reads, and estimates the resulting bus load,
+ * which is logged under "CAN/Plan/" and warned about when it is too high. Each handle applies its
+ * plan to the device when the device is configured.
+ *
+ * <p>While running, the estimate is logged under "CAN/" next to the measured utilization and the
+ * number of odometry samples lost to missing frames. The bus error counters are already logged by
+ * AdvantageKit under "SystemStats/CANBus/".
+ */
+public class CANBusPlanner {
+  private static final double bitRate = 1e6;
+  // Extended frame with 8 data bytes is 131 bits, plus typical bit stuffing
+  private static final double bitsPerFrame = 144.0;
+  private static final double heartbeatFramesPerSec = 50.0; // Sent by the RIO every 20 ms
+  private static final int disabledPeriodMS = 65535;
+  // Frames 0 and 1 also carry faults and temperature, so they are slowed down but never disabled
+  private static final int slowestHealthPeriodMS = 500;
+
+  private static final PeriodicFrame[] sparkMaxFrames = {
+    PeriodicFrame.kStatus0,
+    PeriodicFrame.kStatus1,
+    PeriodicFrame.kStatus2,
+    PeriodicFrame.kStatus3,
+    PeriodicFrame.kStatus4,
+    PeriodicFrame.kStatus5,
+    PeriodicFrame.kStatus6
+  };
+
+  /** A value reported by a SparkMax, and the status frame it is sent in. */
+  public enum SparkMaxSignal {
+    APPLIED_OUTPUT(0),
+    FAULTS(0),
+    VELOCITY(1),
+    TEMPERATURE(1),
+    BUS_VOLTAGE(1),
+    CURRENT(1),
+    POSITION(2),
+    ANALOG(3),
+    ALTERNATE_ENCODER(4),
+    ABSOLUTE_ENCODER_POSITION(5),
+    ABSOLUTE_ENCODER_VELOCITY(6);
+
+    private final int frame;
+
+    SparkMaxSignal(int frame) {
+      this.frame = frame;
+    }
+  }
+
+  /** The signals read from one SparkMax and its resulting frame periods. */
+  public static final class SparkMaxFrames {
+    private final String name;
+    private final double[] frameRates = new double[sparkMaxFrames.length];
+    private double controlRate = 0.0;
+
+    private SparkMaxFrames(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Declares that a signal is read.
+     *
+     * @param signal The signal.
+     * @param hz How often it is read. The highest rate of all the signals in a frame is used.
+     */
+    public SparkMaxFrames require(SparkMaxSignal signal, double hz) {
+      frameRates[signal.frame] = Math.max(frameRates[signal.frame], hz);
+      return this;
+    }
+
+    /** Declares how often a setpoint or voltage is sent to the controller. */
+    public SparkMaxFrames requireControl(double hz) {
+      controlRate = Math.max(controlRate, hz);
+      return this;
+    }
+
+    /** Returns the planned period of a status frame in milliseconds. */
+    public int getPeriodMS(PeriodicFrame frame) {
+      for (int i = 0; i < sparkMaxFrames.length; i++) {
+        if (sparkMaxFrames[i] == frame) {
+          return getPeriodMS(i);
+        }
+      }
+      throw new IllegalArgumentException("Unplanned frame: " + frame);
+    }
+
+    private int getPeriodMS(int frame) {
+      if (frameRates[frame] > 0.0) {
+        return (int) Math.max(Math.floor(1000.0 / frameRates[frame]), 1.0);
+      }
+      return frame <= 1 ? slowestHealthPeriodMS : disabledPeriodMS;
+    }
+
+    private double getFramesPerSec() {
+      double framesPerSec = controlRate;
+      for (int i = 0; i < sparkMaxFrames.length; i++) {
+        framesPerSec += 1000.0 / getPeriodMS(i);
+      }
+      return framesPerSec;
+    }
+
+    /**
+     * Sets every status frame period of the controller. Call with a CAN timeout set, so each
+     * setting is acknowledged.
+     *
+     * @return Whether every period was set.
+     */
+    public boolean apply(CANSparkMax sparkMax) {
+      boolean ok = true;
+      for (int i = 0; i < sparkMaxFrames.length; i++) {
+        ok &= sparkMax.setPeriodicFramePeriod(sparkMaxFrames[i], getPeriodMS(i)) == REVLibError.kOk;
+      }
+      return ok;
+    }
+  }
+
+  /** The signals read from one Phoenix 6 device. */
+  public static final class PhoenixSignals {
+    private final String name;
+    private final Map<BaseStatusSignal, Double> signalRates = new LinkedHashMap<>();
+    private double controlRate = 0.0;
+
+    private PhoenixSignals(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Declares that a signal is read.
+     *
+     * @param signal The signal.
+     * @param hz How often it is read. The highest rate declared for the signal is used.
+     */
+    public PhoenixSignals require(BaseStatusSignal signal, double hz) {
+      signalRates.merge(signal, hz, Math::max);
+      return this;
+    }
+
+    /** Declares that several signals are read at the same rate. */
+    public PhoenixSignals require(double hz, BaseStatusSignal... signals) {
+      for (BaseStatusSignal signal : signals) {
+        require(signal, hz);
+      }
+      return this;
+    }
+
+    /** Declares how often control requests are sent to the device. */
+    public PhoenixSignals requireControl(double hz) {
+      controlRate = Math.max(controlRate, hz);
+      return this;
+    }
+
+    private double getFramesPerSec() {
+      // Phoenix packs several signals into a frame, so this is an upper bound
+      double framesPerSec = controlRate;
+      for (double rate : signalRates.values()) {
+        framesPerSec += rate;
+      }
+      return framesPerSec;
+    }
+
+    /**
+     * Sets the update frequency of every declared signal, then disables every other signal.
+     *
+     * @return Whether every frequency was set.
+     */
+    public boolean apply(ParentDevice device) {
+      boolean ok = true;
+      for (var entry : signalRates.entrySet()) {
+        ok &= entry.getKey().setUpdateFrequency(entry.getValue()).isOK();
+      }
+      return ok && device.optimizeBusUtilization().isOK();
+    }
+  }
+
+  private final double maxUtilization;
+  private final OdometryThreads odometryThreads;
+  private final List<SparkMaxFrames> sparkMaxes = new ArrayList<>();
+  private final List<PhoenixSignals> phoenixDevices = new ArrayList<>();
+  private final CANStatus canStatus = new CANStatus();
+  private double estimatedUtilization = 0.0;
+
+  /**
+   * Creates a planner. Call {@link #periodic()} once per loop from the main thread.
+   *
+   * @param maxUtilization Estimated bus utilization, from 0 to 1, above which a warning is
+   *     reported.
+   * @param odometryThreads The odometry threads whose missed samples are logged.
+   */
+  public CANBusPlanner(double maxUtilization, OdometryThreads odometryThreads) {
+    this.maxUtilization = maxUtilization;
+    this.odometryThreads = odometryThreads;
+  }
+
+  /** Returns a new handle to declare the signals read from a SparkMax. */
+  public SparkMaxFrames sparkMax(String name) {
+    var frames = new SparkMaxFrames(name);
+    sparkMaxes.add(frames);
+    return frames;
+  }
+
+  /** Returns a new handle to declare the signals read from a Phoenix 6 device. */
+  public PhoenixSignals phoenix(String name) {
+    var signals = new PhoenixSignals(name);
+    phoenixDevices.add(signals);
+    return signals;
+  }
+
+  /** Estimates and logs the load of every device declared so far. */
+  public void plan() {
+    int count = sparkMaxes.size() + phoenixDevices.size();
+    String[] names = new String[count];
+    double[] framesPerSec = new double[count];
+    double totalFramesPerSec = heartbeatFramesPerSec;
+    for (int i = 0; i < sparkMaxes.size(); i++) {
+      var frames = sparkMaxes.get(i);
+      names[i] = frames.name;
+      framesPerSec[i] = frames.getFramesPerSec();
+      long[] periods = new long[sparkMaxFrames.length];
+      for (int frame = 0; frame < sparkMaxFrames.length; frame++) {
+        periods[frame] = frames.getPeriodMS(frame);
+      }
+      Logger.recordOutput("CAN/Plan/" + frames.name + "/PeriodsMS", periods);
+    }
+    for (int i = 0; i < phoenixDevices.size(); i++) {
+      var signals = phoenixDevices.get(i);
+      names[sparkMaxes.size() + i] = signals.name;
+      framesPerSec[sparkMaxes.size() + i] = signals.getFramesPerSec();
+    }
+    for (double rate : framesPerSec) {
+      totalFramesPerSec += rate;
+    }
+    estimatedUtilization = totalFramesPerSec * bitsPerFrame / bitRate;
+
+    Logger.recordOutput("CAN/Plan/Devices", names);
+    Logger.recordOutput("CAN/Plan/FramesPerSec", framesPerSec);
+    Logger.recordOutput("CAN/Plan/TotalFramesPerSec", totalFramesPerSec);
+    Logger.recordOutput("CAN/Plan/EstimatedUtilization", estimatedUtilization);
+    if (estimatedUtilization > maxUtilization) {
+      DriverStation.reportWarning(
+          String.format(
+              Locale.ROOT,
+              "Planned CAN utilization is %.0f%%, above the %.0f%% limit",
+              estimatedUtilization * 100.0,
+              maxUtilization * 100.0),
+          false);
+    }
+  }
+
+  /**
+   * Logs the measured bus utilization next to the estimate, the missed odometry samples, and the
+   * samples the odometry sample logs dropped.
+   */
+  public void periodic() {
+    if (!RobotBase.isReal()) {
+      return;
+    }
+    CANJNI.getCANStatus(canStatus);
+    Logger.recordOutput("CAN/MeasuredUtilization", canStatus.percentBusUtilization);
+    Logger.recordOutput("CAN/EstimatedUtilization", estimatedUtilization);
+    Logger.recordOutput(
+        "CAN/PhoenixMissedSamples", odometryThreads.getPhoenix().getMissedSamples());
+    Logger.recordOutput(
+        "CAN/SparkMaxMissedSamples", odometryThreads.getSparkMax().getMissedSamples());
+    Logger.recordOutput(
+        "CAN/PhoenixDroppedLogSamples", odometryThreads.getPhoenix().getDroppedLogSamples());
+    Logger.recordOutput(
+        "CAN/SparkMaxDroppedLogSamples", odometryThreads.getSparkMax().getDroppedLogSamples());
+  }
+}
@@ -0,0 +1,155 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants;
+import frc.robot.Constants.Mode;
+import java.util.Arrays;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.inputs.LoggableInputs;
+
+/**
+ * Logging helpers that skip values which are bit-identical to the last ones logged.
+ *
+ * <p>AdvantageKit keeps the last value of every key in its table, so skipping an unchanged value
+ * leaves the log exactly as it was while saving the cost of serializing it again. Every key is
+ * still logged once per keyframe period, even if nothing changed. Each helper owns one key, and
+ * every write to that key must go through it so it knows what was last logged.
+ */
+public final class ChangeSuppressedLogger {
+  private ChangeSuppressedLogger() {}
+
+  /** An output key that is only logged when its value changes. */
+  public static class Output {
+    private final String key;
+    private final int keyframeLoops;
+    private long[] last = new long[0];
+    private long[] current = new long[8];
+    private int length = 0;
+    private boolean logged = false;
+    private int loopsSinceLogged = 0;
+
+    /**
+     * Creates an output.
+     *
+     * @param key The output key.
+     * @param keyframeLoops The value is logged at least once every this many calls.
+     */
+    public Output(String key, int keyframeLoops) {
+      this.key = key;
+      this.keyframeLoops = keyframeLoops;
+    }
+
+    /** Logs the rotation if it changed. Null is logged as is. */
+    public void record(Rotation2d value) {
+      length = 0;
+      if (value == null) {
+        addNull();
+      } else {
+        add(value.getRadians());
+      }
+      if (shouldLog()) {
+        Logger.recordOutput(key, value);
+      }
+    }
+
+    /** Logs the pose if it changed. */
+    public void record(Pose3d value) {
+      length = 0;
+      add(value.getX());
+      add(value.getY());
+      add(value.getZ());
+      add(value.getRotation().getQuaternion().getW());
+      add(value.getRotation().getQuaternion().getX());
+      add(value.getRotation().getQuaternion().getY());
+      add(value.getRotation().getQuaternion().getZ());
+      if (shouldLog()) {
+        Logger.recordOutput(key, value);
+      }
+    }
+
+    /** Logs the states if any of them changed. */
+    public void record(SwerveModuleState... value) {
+      length = 0;
+      add(value.length);
+      for (SwerveModuleState state : value) {
+        add(state.speedMetersPerSecond);
+        add(state.angle.getRadians());
+      }
+      if (shouldLog()) {
+        Logger.recordOutput(key, value);
+      }
+    }
+
+    private void add(double component) {
+      if (length == current.length) {
+        current = Arrays.copyOf(current, length * 2);
+      }
+      current[length++] = Double.doubleToRawLongBits(component);
+    }
+
+    private void addNull() {
+      add(Double.longBitsToDouble(0x7ff8dead00000000L)); // NaN payload no value produces
+    }
+
+    /** Compares the components added since the last call to the ones last logged. */
+    private boolean shouldLog() {
+      loopsSinceLogged++;
+      if (logged
+          && loopsSinceLogged < keyframeLoops
+          && Arrays.equals(current, 0, length, last, 0, last.length)) {
+        return false;
+      }
+      last = Arrays.copyOf(current, length);
+      logged = true;
+      loopsSinceLogged = 0;
+      return true;
+    }
+  }
+
+  /**
+   * An inputs table that is only processed when its stamp changes, such as the timestamp of the
+   * latest camera frame. In replay it is always processed, so the inputs are read from the log.
+   */
+  public static class Inputs {
+    private final String key;
+    private final LoggableInputs inputs;
+    private final int keyframeLoops;
+    private boolean processed = false;
+    private long lastStamp = 0;
+    private int loopsSinceProcessed = 0;
+
+    /**
+     * Creates an inputs table.
+     *
+     * @param key The inputs key.
+     * @param inputs The inputs object, updated by the IO before each call.
+     * @param keyframeLoops The inputs are processed at least once every this many calls.
+     */
+    public Inputs(String key, LoggableInputs inputs, int keyframeLoops) {
+      this.key = key;
+      this.inputs = inputs;
+      this.keyframeLoops = keyframeLoops;
+    }
+
+    /**
+     * Processes the inputs if the stamp changed.
+     *
+     * @param stamp A value that changes whenever any of the inputs change.
+     */
+    public void process(long stamp) {
+      loopsSinceProcessed++;
+      if (Constants.currentMode != Mode.REPLAY
+          && processed
+          && stamp == lastStamp
+          && loopsSinceProcessed < keyframeLoops) {
+        return;
+      }
+      Logger.processInputs(key, inputs);
+      processed = true;
+      lastStamp = stamp;
+      loopsSinceProcessed = 0;
+    }
+  }
+}
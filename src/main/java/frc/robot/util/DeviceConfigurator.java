@@ -0,0 +1,254 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Configures every motor controller and sensor at boot, all at once instead of one after another.
+ *
+ * <p>Each device is configured on its own thread. Its settings are applied, read back to verify
+ * them, and applied again only if that fails. Settings the device keeps across power cycles are
+ * only written to flash when they change: a hash of them is stored on the RIO for every device, and
+ * when it matches and the device reads back the same settings, nothing is written at all. Settings
+ * the device forgets on power loss are applied on every boot.
+ *
+ * <p>How long each device took, how many attempts it needed, whether its flash was written and
+ * whether it is ready are logged under "DeviceConfig/", along with the total time to ready.
+ */
+public class DeviceConfigurator {
+  /** The configuration steps of one device. Each returns whether it succeeded. */
+  public interface Device {
+    /** Returns a name unique among the devices, used as the key of its stored hash. */
+    String getName();
+
+    /** Returns a description of every persistent setting, hashed to detect changes. */
+    String describeConfig();
+
+    /** Applies the persistent settings, starting from factory defaults. */
+    boolean apply();
+
+    /** Reads back the persistent settings and checks them against the config. */
+    boolean verify();
+
+    /** Saves the persistent settings to flash, if the device does not do so on its own. */
+    default boolean persist() {
+      return true;
+    }
+
+    /**
+     * Applies the settings the device forgets on power loss. Runs on every boot, last, even if the
+     * persistent settings failed.
+     */
+    default boolean applyVolatile() {
+      return true;
+    }
+  }
+
+  /** What happened to one device. */
+  private static final class Outcome {
+    int attempts = 0;
+    boolean flashed = false;
+    boolean ready = false;
+    double seconds = 0.0;
+    String hash = null; // Stored if the device is ready
+  }
+
+  private final Path hashFile;
+  private final int maxAttempts;
+  private final double timeoutSecs;
+  private final List<Device> devices = new ArrayList<>();
+  private final List<AtomicBoolean> readyFlags = new ArrayList<>();
+  private volatile boolean cancelled = false; // Set at the timeout, stops every remaining step
+
+  /**
+   * Creates a configurator.
+   *
+   * @param hashFile The file the hash of each device's persistent settings is stored in.
+   * @param maxAttempts Attempts at each step before giving up on a device.
+   * @param timeoutSecs Time to wait for every device before moving on without the rest.
+   */
+  public DeviceConfigurator(Path hashFile, int maxAttempts, double timeoutSecs) {
+    this.hashFile = hashFile;
+    this.maxAttempts = maxAttempts;
+    this.timeoutSecs = timeoutSecs;
+  }
+
+  /**
+   * Adds a device to configure in {@link #configureAll()}.
+   *
+   * @return Whether the device is ready, false until {@link #configureAll()} has finished with it.
+   */
+  public BooleanSupplier add(Device device) {
+    AtomicBoolean ready = new AtomicBoolean(false);
+    devices.add(device);
+    readyFlags.add(ready);
+    return ready::get;
+  }
+
+  /**
+   * Configures every device added so far in parallel and waits until all are done, or until the
+   * timeout. Devices still being configured then stop before their next step and are not ready.
+   */
+  public void configureAll() {
+    long startNanos = System.nanoTime();
+    Properties storedHashes = loadHashes();
+
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.max(devices.size(), 1),
+            (runnable) -> {
+              Thread thread = new Thread(runnable, "DeviceConfigurator");
+              thread.setDaemon(true);
+              return thread;
+            });
+    List<Future<Outcome>> futures = new ArrayList<>();
+    for (Device device : devices) {
+      String storedHash = storedHashes.getProperty(device.getName());
+      futures.add(executor.submit(() -> configure(device, storedHash)));
+    }
+
+    long deadlineNanos = startNanos + (long) (timeoutSecs * 1e9);
+    String[] names = new String[devices.size()];
+    long[] attempts = new long[devices.size()];
+    boolean[] flashed = new boolean[devices.size()];
+    boolean[] ready = new boolean[devices.size()];
+    double[] seconds = new double[devices.size()];
+    List<String> failed = new ArrayList<>();
+    for (int i = 0; i < devices.size(); i++) {
+      Outcome outcome;
+      try {
+        long remainingNanos = Math.max(deadlineNanos - System.nanoTime(), 0);
+        outcome = futures.get(i).get(remainingNanos, TimeUnit.NANOSECONDS);
+      } catch (TimeoutException | ExecutionException e) {
+        outcome = new Outcome();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        outcome = new Outcome();
+      }
+      names[i] = devices.get(i).getName();
+      attempts[i] = outcome.attempts;
+      flashed[i] = outcome.flashed;
+      ready[i] = outcome.ready;
+      seconds[i] = outcome.seconds;
+      readyFlags.get(i).set(outcome.ready);
+      if (outcome.ready) {
+        storedHashes.setProperty(names[i], outcome.hash);
+      } else {
+        storedHashes.remove(names[i]); // Configure from scratch next boot
+        failed.add(names[i]);
+      }
+    }
+
+    // Interrupting would not stop the vendor calls, so wait for the current step of each device
+    // still being configured to end, which its CAN timeout bounds. Nothing else may use the
+    // devices until then.
+    cancelled = true;
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        DriverStation.reportWarning("Waiting for device configuration to stop", false);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    saveHashes(storedHashes);
+
+    double timeToReady = (System.nanoTime() - startNanos) / 1e9;
+    Logger.recordOutput("DeviceConfig/Devices", names);
+    Logger.recordOutput("DeviceConfig/Attempts", attempts);
+    Logger.recordOutput("DeviceConfig/FlashWritten", flashed);
+    Logger.recordOutput("DeviceConfig/Ready", ready);
+    Logger.recordOutput("DeviceConfig/DurationsSecs", seconds);
+    Logger.recordOutput("DeviceConfig/TimeToReadySecs", timeToReady);
+    Logger.recordOutput("DeviceConfig/ReadyTimestamp", Timer.getFPGATimestamp());
+    Logger.recordOutput("DeviceConfig/AllReady", failed.isEmpty());
+    if (!failed.isEmpty()) {
+      DriverStation.reportError("Device configuration failed: " + String.join(", ", failed), false);
+    }
+  }
+
+  private Outcome configure(Device device, String storedHash) {
+    long startNanos = System.nanoTime();
+    Outcome outcome = new Outcome();
+    String hash = hash(device.describeConfig());
+
+    // Nothing to write if the saved settings are unchanged, unless the device was swapped or reset
+    boolean configured = hash.equals(storedHash) && device.verify();
+    while (!configured && outcome.attempts < maxAttempts && !cancelled) {
+      outcome.attempts++;
+      configured = device.apply() && device.verify();
+    }
+    if (configured && outcome.attempts > 0 && !cancelled) {
+      configured = retry(device::persist);
+      outcome.flashed = configured;
+    }
+
+    // Runs unless cancelled, so a device that failed is still left in its normal runtime state
+    boolean volatileApplied = retry(device::applyVolatile);
+    outcome.ready = configured && volatileApplied;
+    outcome.hash = hash;
+    outcome.seconds = (System.nanoTime() - startNanos) / 1e9;
+    return outcome;
+  }
+
+  private boolean retry(BooleanSupplier step) {
+    for (int attempt = 0; attempt < maxAttempts && !cancelled; attempt++) {
+      if (step.getAsBoolean()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String hash(String config) {
+    CRC32 crc = new CRC32();
+    crc.update(config.getBytes(StandardCharsets.UTF_8));
+    return Long.toHexString(crc.getValue());
+  }
+
+  private Properties loadHashes() {
+    Properties hashes = new Properties();
+    if (Files.exists(hashFile)) {
+      try (InputStream input = Files.newInputStream(hashFile)) {
+        hashes.load(input);
+      } catch (IOException e) {
+        hashes.clear(); // Configure everything from scratch
+      }
+    }
+    return hashes;
+  }
+
+  private void saveHashes(Properties hashes) {
+    // Write to a temporary file first, so losing power mid-write cannot corrupt the stored hashes
+    Path temporary = hashFile.resolveSibling(hashFile.getFileName() + ".tmp");
+    try {
+      try (OutputStream output = Files.newOutputStream(temporary)) {
+        hashes.store(output, "Hashes of the settings saved to each device's flash");
+      }
+      Files.move(
+          temporary, hashFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      DriverStation.reportWarning("Failed to save device config hashes: " + e.getMessage(), false);
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package frc.robot.util;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
+import edu.wpi.first.wpilibj.DriverStation;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BooleanSupplier;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Polls the faults, sticky faults, temperature and firmware version of every device on its own low
+ * priority thread, a couple of times per second.
+ *
+ * <p>Every device is read in one pass, then the results are handed to the main thread, which logs
+ * them as a table under "DeviceHealth/" and turns them into alerts. An alert is logged for every
+ * device that is disconnected, was not configured, has an active fault or is over its temperature
+ * limit, and each new alert is also reported to the driver station. None of this runs in the
+ * odometry or control path.
+ */
+public class DeviceHealthMonitor {
+  /** Reads the health of one device. */
+  public interface Device {
+    /** Returns the name shown in the status table. */
+    String getName();
+
+    /** Returns the temperature above which an alert is raised. */
+    default double getTemperatureLimitCelsius() {
+      return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Reads the health of the device into the status. Called on the monitor thread with the device
+     * lock held, so it must only read values the device already sent and never block.
+     */
+    void poll(Status status);
+  }
+
+  /** The health of one device at the last poll. */
+  public static final class Status {
+    public boolean connected = false;
+    public long faults = 0;
+    public long stickyFaults = 0;
+    public double temperatureCelsius = 0.0;
+    public String firmware = "";
+  }
+
+  /** Health of a Phoenix 6 device, read from its fault, temperature and version signals. */
+  public static final class PhoenixDevice implements Device {
+    private final String name;
+    private final StatusSignal<Integer> faults;
+    private final StatusSignal<Integer> stickyFaults;
+    private final StatusSignal<Integer> version;
+    private final StatusSignal<Double> temperature;
+    private final double temperatureLimitCelsius;
+    private final BaseStatusSignal[] signals;
+
+    /**
+     * Creates the health reader of a device.
+     *
+     * @param name The name shown in the status table.
+     * @param faults The fault field signal of the device.
+     * @param stickyFaults The sticky fault field signal of the device.
+     * @param version The version signal of the device.
+     * @param temperature The temperature signal of the device, or null if it has none.
+     * @param temperatureLimitCelsius The temperature above which an alert is raised.
+     */
+    public PhoenixDevice(
+        String name,
+        StatusSignal<Integer> faults,
+        StatusSignal<Integer> stickyFaults,
+        StatusSignal<Integer> version,
+        StatusSignal<Double> temperature,
+        double temperatureLimitCelsius) {
+      this.name = name;
+      this.faults = faults;
+      this.stickyFaults = stickyFaults;
+      this.version = version;
+      this.temperature = temperature;
+      this.temperatureLimitCelsius = temperatureLimitCelsius;
+      signals =
+          temperature == null
+              ? new BaseStatusSignal[] {faults, stickyFaults, version}
+              : new BaseStatusSignal[] {faults, stickyFaults, version, temperature};
+    }
+
+    /** Returns the signals read every poll, which must be updated at least at the poll rate. */
+    public BaseStatusSignal[] getSignals() {
+      return signals;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public double getTemperatureLimitCelsius() {
+      return temperatureLimitCelsius;
+    }
+
+    @Override
+    public void poll(Status status) {
+      status.connected = BaseStatusSignal.refreshAll(signals).isOK();
+      status.faults = faults.getValue() & 0xFFFFFFFFL;
+      status.stickyFaults = stickyFaults.getValue() & 0xFFFFFFFFL;
+      status.temperatureCelsius = temperature == null ? 0.0 : temperature.getValueAsDouble();
+      int fullVersion = version.getValue();
+      status.firmware =
+          String.format(
+              Locale.ROOT,
+              "%d.%d.%d.%d",
+              (fullVersion >> 24) & 0xFF,
+              (fullVersion >> 16) & 0xFF,
+              (fullVersion >> 8) & 0xFF,
+              fullVersion & 0xFF);
+    }
+  }
+
+  private final double periodSecs;
+  private final Lock deviceLock;
+  private final List<Device> devices = new ArrayList<>();
+  private final List<BooleanSupplier> configured = new ArrayList<>();
+  private Thread thread = null;
+
+  // Latest poll, handed from the monitor thread to the main thread
+  private final Object snapshotLock = new Object();
+  private Status[] snapshot = null;
+  private Set<String> activeAlerts = new HashSet<>();
+
+  /**
+   * Creates a monitor. Call {@link #periodic()} once per loop from the main thread.
+   *
+   * @param periodSecs Time between polls of every device.
+   * @param deviceLock Held while each device is read, so the reads never interleave with the
+   *     odometry and control reads of the same device.
+   */
+  public DeviceHealthMonitor(double periodSecs, Lock deviceLock) {
+    this.periodSecs = periodSecs;
+    this.deviceLock = deviceLock;
+  }
+
+  /** Returns how often every device is polled, for the rate of the signals it reads. */
+  public double getRateHz() {
+    return 1.0 / periodSecs;
+  }
+
+  /** Adds a device to poll. Must be called before {@link #start()}. */
+  public void add(Device device) {
+    add(device, () -> true);
+  }
+
+  /**
+   * Adds a device to poll, with an alert while it is not configured. Must be called before {@link
+   * #start()}.
+   *
+   * @param device The device.
+   * @param configured Returns whether the device was configured, read on the main thread.
+   */
+  public void add(Device device, BooleanSupplier configured) {
+    devices.add(device);
+    this.configured.add(configured);
+  }
+
+  /** Starts polling (no-op if no devices have been added). */
+  public void start() {
+    if (devices.isEmpty() || thread != null) {
+      return;
+    }
+    thread = new Thread(this::run, "DeviceHealthMonitor");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  private void run() {
+    while (true) {
+      Status[] statuses = new Status[devices.size()];
+      for (int i = 0; i < statuses.length; i++) {
+        statuses[i] = new Status();
+        deviceLock.lock();
+        try {
+          devices.get(i).poll(statuses[i]);
+        } finally {
+          deviceLock.unlock();
+        }
+      }
+      synchronized (snapshotLock) {
+        snapshot = statuses;
+      }
+
+      try {
+        Thread.sleep((long) (periodSecs * 1000.0));
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  /** Logs the status table and alerts whenever a poll has finished since the previous call. */
+  public void periodic() {
+    Status[] statuses;
+    synchronized (snapshotLock) {
+      statuses = snapshot;
+      snapshot = null;
+    }
+    if (statuses == null) {
+      return;
+    }
+
+    String[] names = new String[statuses.length];
+    boolean[] connected = new boolean[statuses.length];
+    boolean[] isConfigured = new boolean[statuses.length];
+    long[] faults = new long[statuses.length];
+    long[] stickyFaults = new long[statuses.length];
+    double[] temperatures = new double[statuses.length];
+    String[] firmware = new String[statuses.length];
+    List<String> alerts = new ArrayList<>();
+    for (int i = 0; i < statuses.length; i++) {
+      Device device = devices.get(i);
+      Status status = statuses[i];
+      names[i] = device.getName();
+      connected[i] = status.connected;
+      isConfigured[i] = configured.get(i).getAsBoolean();
+      faults[i] = status.faults;
+      stickyFaults[i] = status.stickyFaults;
+      temperatures[i] = status.temperatureCelsius;
+      firmware[i] = status.firmware;
+
+      if (!isConfigured[i]) {
+        alerts.add(names[i] + " is not configured");
+      }
+
+      // Values read from a disconnected device are stale, so it only gets one alert
+      if (!status.connected) {
+        alerts.add(names[i] + " is disconnected");
+        continue;
+      }
+      if (status.faults != 0) {
+        alerts.add(String.format(Locale.ROOT, "%s has faults 0x%X", names[i], status.faults));
+      }
+      if (status.temperatureCelsius > device.getTemperatureLimitCelsius()) {
+        alerts.add(
+            String.format(
+                Locale.ROOT, "%s is over %.0f C", names[i], device.getTemperatureLimitCelsius()));
+      }
+    }
+
+    Logger.recordOutput("DeviceHealth/Devices", names);
+    Logger.recordOutput("DeviceHealth/Connected", connected);
+    Logger.recordOutput("DeviceHealth/Configured", isConfigured);
+    Logger.recordOutput("DeviceHealth/Faults", faults);
+    Logger.recordOutput("DeviceHealth/StickyFaults", stickyFaults);
+    Logger.recordOutput("DeviceHealth/TemperaturesCelsius", temperatures);
+    Logger.recordOutput("DeviceHealth/Firmware", firmware);
+    Logger.recordOutput("DeviceHealth/Alerts", alerts.toArray(new String[0]));
+    Logger.recordOutput("DeviceHealth/AllHealthy", alerts.isEmpty());
+
+    // Only report alerts as they appear, not every poll
+    Set<String> newAlerts = new HashSet<>(alerts);
+    for (String alert : alerts) {
+      if (!activeAlerts.contains(alert)) {
+        DriverStation.reportWarning("Device health: " + alert, false);
+      }
+    }
+    activeAlerts = newAlerts;
+  }
+}
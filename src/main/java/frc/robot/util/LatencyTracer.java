@@ -0,0 +1,246 @@
+package frc.robot.util;
+
+import edu.wpi.first.hal.DriverStationJNI;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.RobotController;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Measures the latency from a driver station packet to the motor command it causes, and to the
+ * wheel motion that follows.
+ *
+ * <p>A background thread waits on the HAL's new data event and stamps the arrival of every driver
+ * station packet. Each loop uses the newest packet that arrived before it started, since that is
+ * the one the joystick values are read from. A trace then follows that input through the drive:
+ *
+ * <ul>
+ *   <li>"PacketToRead": packet arrival to the joystick values being read by the drive command.
+ *   <li>"ReadToSetpoint": the read to the module setpoints being set.
+ *   <li>"SetpointToCommand": the setpoints to the modules sending them to the motor controllers,
+ *       normally in the next loop. With high-rate control, this ends when the setpoints are handed
+ *       to the odometry thread.
+ *   <li>"Total": packet arrival to the motor command.
+ *   <li>"CommandToMotion": when the driver starts moving from rest, the command to the first
+ *       odometry sample where a wheel has moved a few millimeters.
+ * </ul>
+ *
+ * <p>Each stage keeps a histogram with 1 ms bins since boot, published with its mean, p50, p99 and
+ * max under "LatencyTracer/" every few loops. When disabled, every call returns immediately.
+ */
+public class LatencyTracer {
+  private static final int binCount = 100; // The last bin also counts every longer latency
+  private static final double motionThresholdMeters = 0.005;
+  private static final long motionTimeoutMicros = 500_000;
+
+  private final boolean enabled;
+  private final int publishPeriodLoops;
+  private final Stage packetToRead = new Stage("PacketToRead");
+  private final Stage readToSetpoint = new Stage("ReadToSetpoint");
+  private final Stage setpointToCommand = new Stage("SetpointToCommand");
+  private final Stage total = new Stage("Total");
+  private final Stage commandToMotion = new Stage("CommandToMotion");
+  private final Stage[] stages = {
+    packetToRead, readToSetpoint, setpointToCommand, total, commandToMotion
+  };
+  private final double[] motionStartMeters = new double[4];
+  private int loopCount = 0;
+
+  private volatile long lastPacketMicros = 0; // Written by the packet thread
+  private long loopPacketMicros = 0;
+
+  // The trace in flight, 0 when there is none
+  private long packetMicros = 0;
+  private long readMicros = 0;
+  private long setpointMicros = 0;
+  private boolean requestsMotion = false;
+  private boolean requestedMotion = false; // Whether the previous input requested motion
+
+  // The motion trace in flight, 0 when there is none
+  private long motionCommandMicros = 0;
+  private boolean hasMotionStart = false;
+
+  /**
+   * Creates a tracer. Call {@link #beginLoop()} and {@link #endLoop()} once per loop from the main
+   * thread.
+   *
+   * @param enabled Whether to measure anything. A disabled tracer is a no-op.
+   * @param publishPeriodLoops Number of loops between publishing statistics.
+   */
+  public LatencyTracer(boolean enabled, int publishPeriodLoops) {
+    this.enabled = enabled;
+    this.publishPeriodLoops = publishPeriodLoops;
+    if (enabled) {
+      Thread thread = new Thread(this::watchPackets, "LatencyTracer");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  private void watchPackets() {
+    int event = WPIUtilJNI.createEvent(false, false);
+    DriverStationJNI.provideNewDataEventHandle(event);
+    try {
+      while (true) {
+        WPIUtilJNI.waitForObject(event);
+        lastPacketMicros = RobotController.getFPGATime();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      DriverStationJNI.removeNewDataEventHandle(event);
+      WPIUtilJNI.destroyEvent(event);
+    }
+  }
+
+  /** Marks the start of a loop, after the driver station data has been refreshed. */
+  public void beginLoop() {
+    if (enabled) {
+      loopPacketMicros = lastPacketMicros;
+    }
+  }
+
+  /**
+   * Starts a trace when the drive command reads the joysticks.
+   *
+   * @param requestsMotion Whether the input asks the robot to move, after the deadband.
+   */
+  public void markInputRead(boolean requestsMotion) {
+    if (!enabled || loopPacketMicros == 0) {
+      return;
+    }
+    packetMicros = loopPacketMicros;
+    readMicros = RobotController.getFPGATime();
+    setpointMicros = 0;
+    this.requestsMotion = requestsMotion;
+  }
+
+  /** Marks the module setpoints being set from the traced input, if there is one. */
+  public void markSetpoint() {
+    if (enabled && readMicros != 0 && setpointMicros == 0) {
+      setpointMicros = RobotController.getFPGATime();
+    }
+  }
+
+  /** Marks the module setpoints being sent to the motor controllers, completing the trace. */
+  public void markCommandSent() {
+    if (!enabled || setpointMicros == 0) {
+      return;
+    }
+    long commandMicros = RobotController.getFPGATime();
+    packetToRead.record(readMicros - packetMicros);
+    readToSetpoint.record(setpointMicros - readMicros);
+    setpointToCommand.record(commandMicros - setpointMicros);
+    total.record(commandMicros - packetMicros);
+
+    // Only a start from rest shows the latency to motion
+    if (requestsMotion && !requestedMotion) {
+      motionCommandMicros = commandMicros;
+      hasMotionStart = false;
+    }
+    requestedMotion = requestsMotion;
+    readMicros = 0;
+    setpointMicros = 0;
+  }
+
+  /**
+   * Checks an odometry sample for the first wheel motion after a start from rest.
+   *
+   * @param timestampSecs The sample timestamp in seconds, on the FPGA clock.
+   * @param positions The position of each module at the sample.
+   */
+  public void addOdometrySample(double timestampSecs, SwerveModulePosition[] positions) {
+    if (!enabled || motionCommandMicros == 0) {
+      return;
+    }
+    long sampleMicros = (long) (timestampSecs * 1e6);
+    if (sampleMicros - motionCommandMicros > motionTimeoutMicros) {
+      motionCommandMicros = 0; // Never moved, e.g. because the robot was pushed against a wall
+      return;
+    }
+
+    // Samples up to the command give the positions the motion is measured from
+    if (sampleMicros <= motionCommandMicros || !hasMotionStart) {
+      for (int i = 0; i < motionStartMeters.length; i++) {
+        motionStartMeters[i] = positions[i].distanceMeters;
+      }
+      hasMotionStart = true;
+      return;
+    }
+    for (int i = 0; i < motionStartMeters.length; i++) {
+      if (Math.abs(positions[i].distanceMeters - motionStartMeters[i]) > motionThresholdMeters) {
+        commandToMotion.record(sampleMicros - motionCommandMicros);
+        motionCommandMicros = 0;
+        return;
+      }
+    }
+  }
+
+  /** Marks the end of a loop and publishes the statistics when due. */
+  public void endLoop() {
+    if (!enabled) {
+      return;
+    }
+    loopCount++;
+    if (loopCount % publishPeriodLoops != 0) {
+      return;
+    }
+    for (Stage stage : stages) {
+      stage.publish();
+    }
+  }
+
+  /** The latency histogram of one stage. */
+  private static final class Stage {
+    private final long[] counts = new long[binCount];
+    private final String countsKey;
+    private final String meanKey;
+    private final String p50Key;
+    private final String p99Key;
+    private final String maxKey;
+    private long count = 0;
+    private long sumMicros = 0;
+    private long maxMicros = 0;
+
+    private Stage(String name) {
+      String prefix = "LatencyTracer/" + name + "/";
+      countsKey = prefix + "CountsPerMS";
+      meanKey = prefix + "MeanMS";
+      p50Key = prefix + "P50MS";
+      p99Key = prefix + "P99MS";
+      maxKey = prefix + "MaxMS";
+    }
+
+    private void record(long micros) {
+      micros = Math.max(micros, 0);
+      counts[(int) Math.min(micros / 1000, binCount - 1)]++;
+      count++;
+      sumMicros += micros;
+      maxMicros = Math.max(maxMicros, micros);
+    }
+
+    /** Returns the upper edge of the bin that contains the quantile, in milliseconds. */
+    private double quantileMS(double quantile) {
+      long target = (long) Math.ceil(count * quantile);
+      long seen = 0;
+      for (int i = 0; i < binCount; i++) {
+        seen += counts[i];
+        if (seen >= target) {
+          return i + 1.0;
+        }
+      }
+      return binCount;
+    }
+
+    private void publish() {
+      if (count == 0) {
+        return;
+      }
+      Logger.recordOutput(countsKey, counts);
+      Logger.recordOutput(meanKey, sumMicros / (double) count / 1e3);
+      Logger.recordOutput(p50Key, quantileMS(0.5));
+      Logger.recordOutput(p99Key, quantileMS(0.99));
+      Logger.recordOutput(maxKey, maxMicros / 1e3);
+    }
+  }
+}
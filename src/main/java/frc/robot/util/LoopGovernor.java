@@ -0,0 +1,165 @@
+package frc.robot.util;
+
+import java.util.Arrays;
+import org.littletonrobotics.junction.AutoLog;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Watches the main loop time and sheds optional work when the loop runs over budget.
+ *
+ * <p>The governor keeps a rolling average of the user code time in {@code robotPeriodic}. When the
+ * average crosses the threshold for the next level it escalates one level, and it only steps back
+ * down once the average has stayed below the current level's threshold (minus a hysteresis margin)
+ * for a number of loops. Control and odometry are never shed, only the work each level lists.
+ *
+ * <p>The level is logged as an input, so replay makes exactly the same shedding decisions as the
+ * robot did even though the replayed loop times differ.
+ */
+public class LoopGovernor {
+  /** Degradation levels, each shedding everything the previous levels shed. */
+  public enum Level {
+    /** Everything runs every loop. */
+    NOMINAL,
+    /** Debug outputs are only logged every few loops. */
+    DECIMATE_DEBUG,
+    /** Camera frames that are old or already processed are not run through the pose estimator. */
+    SKIP_STALE_VISION,
+    /** Dashboard work such as the auto chooser only runs every few loops. */
+    DEFER_DASHBOARD
+  }
+
+  @AutoLog
+  public static class LoopGovernorInputs {
+    public int level = 0;
+    public double averageLoopMS = 0.0;
+  }
+
+  private static final Level[] levels = Level.values();
+
+  private final LoopGovernorInputsAutoLogged inputs = new LoopGovernorInputsAutoLogged();
+  private final boolean enabled;
+  private final double[] thresholdsMS;
+  private final double hysteresisMS;
+  private final int recoveryLoops;
+  private final int decimation;
+  private final double budgetMS;
+  private final double[] window;
+
+  private Level level = Level.NOMINAL;
+  private Level nextLevel = Level.NOMINAL;
+  private double windowSum = 0.0;
+  private int windowCount = 0;
+  private int windowNext = 0;
+  private int loopsBelowThreshold = 0;
+  private long loopCount = 0;
+  private long overrunCount = 0;
+  private long loopStartMicros = 0;
+
+  /**
+   * Creates a governor.
+   *
+   * @param enabled Whether to shed load at all. A disabled governor always stays nominal.
+   * @param budgetMS Loop time budget, used to count overruns.
+   * @param thresholdsMS Average loop time needed to enter each level above nominal, in order.
+   * @param hysteresisMS How far below a level's threshold the average must fall to leave it.
+   * @param windowLoops Number of loops in the rolling average.
+   * @param recoveryLoops Number of consecutive loops below threshold before stepping down a level.
+   * @param decimation Shed work runs once every this many loops.
+   */
+  public LoopGovernor(
+      boolean enabled,
+      double budgetMS,
+      double[] thresholdsMS,
+      double hysteresisMS,
+      int windowLoops,
+      int recoveryLoops,
+      int decimation) {
+    if (thresholdsMS.length != levels.length - 1) {
+      throw new IllegalArgumentException(
+          "Expected " + (levels.length - 1) + " thresholds, got " + thresholdsMS.length);
+    }
+    this.enabled = enabled;
+    this.budgetMS = budgetMS;
+    this.thresholdsMS = thresholdsMS.clone();
+    this.hysteresisMS = hysteresisMS;
+    this.recoveryLoops = recoveryLoops;
+    this.decimation = decimation;
+    window = new double[windowLoops];
+  }
+
+  /** Logs the level chosen at the end of the last loop. Call at the start of robotPeriodic. */
+  public void beginLoop() {
+    loopStartMicros = Logger.getRealTimestamp();
+    loopCount++;
+
+    inputs.level = nextLevel.ordinal();
+    inputs.averageLoopMS = windowCount > 0 ? windowSum / windowCount : 0.0;
+    Logger.processInputs("LoopGovernor", inputs);
+    level = levels[inputs.level];
+
+    Logger.recordOutput("LoopGovernor/Level", level.name());
+    Logger.recordOutput("LoopGovernor/OverrunCount", overrunCount);
+  }
+
+  /** Measures the loop and picks the level for the next one. Call at the end of robotPeriodic. */
+  public void endLoop() {
+    double loopMS = (Logger.getRealTimestamp() - loopStartMicros) / 1000.0;
+    if (loopMS > budgetMS) {
+      overrunCount++;
+    }
+
+    windowSum += loopMS - window[windowNext];
+    window[windowNext] = loopMS;
+    windowNext = (windowNext + 1) % window.length;
+    windowCount = Math.min(windowCount + 1, window.length);
+    if (!enabled || windowCount < window.length) {
+      return;
+    }
+
+    double average = windowSum / windowCount;
+    int current = level.ordinal();
+    if (current < thresholdsMS.length && average > thresholdsMS[current]) {
+      changeLevel(levels[current + 1]);
+    } else if (current > 0 && average < thresholdsMS[current - 1] - hysteresisMS) {
+      if (++loopsBelowThreshold >= recoveryLoops) {
+        changeLevel(levels[current - 1]);
+      }
+    } else {
+      loopsBelowThreshold = 0;
+    }
+  }
+
+  /** Switches level and refills the window so the new level is judged on its own loop times. */
+  private void changeLevel(Level newLevel) {
+    nextLevel = newLevel;
+    loopsBelowThreshold = 0;
+    Arrays.fill(window, 0.0);
+    windowSum = 0.0;
+    windowCount = 0;
+    windowNext = 0;
+  }
+
+  /** Returns the level in effect for this loop. */
+  public Level getLevel() {
+    return level;
+  }
+
+  /** Returns whether debug outputs should be logged this loop. */
+  public boolean shouldLogDebug() {
+    return level.compareTo(Level.DECIMATE_DEBUG) < 0 || isDecimatedLoop();
+  }
+
+  /** Returns whether stale camera frames should be skipped this loop. */
+  public boolean shouldSkipStaleVision() {
+    return level.compareTo(Level.SKIP_STALE_VISION) >= 0;
+  }
+
+  /** Returns whether dashboard work should run this loop. */
+  public boolean shouldUpdateDashboard() {
+    return level.compareTo(Level.DEFER_DASHBOARD) < 0 || isDecimatedLoop();
+  }
+
+  private boolean isDecimatedLoop() {
+    return loopCount % decimation == 0;
+  }
+}
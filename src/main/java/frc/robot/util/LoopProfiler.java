@@ -0,0 +1,193 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Measures how long each phase of the robot loop takes.
+ *
+ * <p>Phases are created once up front and timed with {@link Phase#start()} and {@link
+ * Phase#stop()}. Each phase keeps a fixed window of recent durations, and every few loops the
+ * rolling min/mean/p99/max are published under "LoopProfiler/". Running commands are timed
+ * automatically through the command scheduler. When allocation tracking is on, the average bytes
+ * the main thread allocated per run of each phase are published too. When disabled, every call
+ * returns immediately.
+ */
+public class LoopProfiler {
+  private final boolean enabled;
+  private final boolean trackAllocations;
+  private final com.sun.management.ThreadMXBean threadBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private final int windowSize;
+  private final int publishPeriodLoops;
+  private final List<Phase> phases = new ArrayList<>();
+  // Keyed by name, so commands recreated each time they are scheduled share one phase
+  private final Map<String, Phase> commandPhases = new HashMap<>();
+  private final long[] scratch;
+  private long lastMarkNanos = 0;
+  private long lastMarkBytes = 0;
+  private int loopCount = 0;
+
+  /**
+   * Creates a profiler.
+   *
+   * @param enabled Whether to measure anything. A disabled profiler is a no-op.
+   * @param windowSize Number of recent samples used for the rolling statistics.
+   * @param publishPeriodLoops Number of loops between publishing statistics.
+   */
+  public LoopProfiler(boolean enabled, int windowSize, int publishPeriodLoops) {
+    this(enabled, false, windowSize, publishPeriodLoops);
+  }
+
+  /**
+   * Creates a profiler.
+   *
+   * @param enabled Whether to measure anything. A disabled profiler is a no-op.
+   * @param trackAllocations Whether to also measure the bytes allocated by each phase.
+   * @param windowSize Number of recent samples used for the rolling statistics.
+   * @param publishPeriodLoops Number of loops between publishing statistics.
+   */
+  public LoopProfiler(
+      boolean enabled, boolean trackAllocations, int windowSize, int publishPeriodLoops) {
+    this.enabled = enabled;
+    this.trackAllocations =
+        enabled && trackAllocations && threadBean.isThreadAllocatedMemorySupported();
+    this.windowSize = windowSize;
+    this.publishPeriodLoops = publishPeriodLoops;
+    scratch = new long[enabled ? windowSize : 0];
+    if (enabled) {
+      CommandScheduler.getInstance().onCommandExecute(this::commandExecuted);
+    }
+  }
+
+  /** Returns whether the profiler is measuring anything. */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Creates a phase, published under "LoopProfiler/{name}". */
+  public Phase phase(String name) {
+    Phase phase = new Phase(name);
+    if (enabled) {
+      phases.add(phase);
+    }
+    return phase;
+  }
+
+  /**
+   * Records the duration since the previous phase ended or command ran. Called after each command
+   * executes, so the time includes any scheduler bookkeeping since the previous measurement.
+   */
+  private void commandExecuted(Command command) {
+    long now = System.nanoTime();
+    long bytes = allocatedBytes();
+    String name = command.getName();
+    Phase phase = commandPhases.get(name);
+    if (phase == null) {
+      phase = phase("Commands/" + name);
+      commandPhases.put(name, phase);
+    }
+    phase.record(now - lastMarkNanos, bytes - lastMarkBytes);
+    lastMarkNanos = now;
+    lastMarkBytes = bytes;
+  }
+
+  private long allocatedBytes() {
+    return trackAllocations ? threadBean.getCurrentThreadAllocatedBytes() : 0;
+  }
+
+  /** Marks the end of a loop and publishes the rolling statistics when due. */
+  public void endLoop() {
+    if (!enabled) {
+      return;
+    }
+    loopCount++;
+    if (loopCount % publishPeriodLoops != 0) {
+      return;
+    }
+    for (Phase phase : phases) {
+      phase.publish();
+    }
+  }
+
+  /** A timed section of the robot loop. */
+  public class Phase {
+    private final long[] window;
+    private final String minKey;
+    private final String meanKey;
+    private final String p99Key;
+    private final String maxKey;
+    private final String allocatedKey;
+    private int count = 0;
+    private int next = 0;
+    private long startNanos = 0;
+    private long startBytes = 0;
+    private long allocatedSincePublish = 0;
+    private int runsSincePublish = 0;
+
+    private Phase(String name) {
+      window = new long[enabled ? windowSize : 0];
+      String prefix = "LoopProfiler/" + name + "/";
+      minKey = prefix + "MinMS";
+      meanKey = prefix + "MeanMS";
+      p99Key = prefix + "P99MS";
+      maxKey = prefix + "MaxMS";
+      allocatedKey = prefix + "AllocatedBytes";
+    }
+
+    /** Starts timing the phase. */
+    public void start() {
+      if (enabled) {
+        startBytes = allocatedBytes();
+        startNanos = System.nanoTime();
+      }
+    }
+
+    /** Stops timing the phase and records the duration. */
+    public void stop() {
+      if (enabled) {
+        long now = System.nanoTime();
+        long bytes = allocatedBytes();
+        record(now - startNanos, bytes - startBytes);
+        lastMarkNanos = now;
+        lastMarkBytes = bytes;
+      }
+    }
+
+    private void record(long nanos, long bytes) {
+      window[next] = nanos;
+      next = (next + 1) % window.length;
+      count = Math.min(count + 1, window.length);
+      allocatedSincePublish += bytes;
+      runsSincePublish++;
+    }
+
+    private void publish() {
+      if (count == 0) {
+        return;
+      }
+      System.arraycopy(window, 0, scratch, 0, count);
+      Arrays.sort(scratch, 0, count);
+      long sum = 0;
+      for (int i = 0; i < count; i++) {
+        sum += scratch[i];
+      }
+      Logger.recordOutput(minKey, scratch[0] / 1e6);
+      Logger.recordOutput(meanKey, sum / (double) count / 1e6);
+      Logger.recordOutput(p99Key, scratch[Math.min(count - 1, (int) (count * 0.99))] / 1e6);
+      Logger.recordOutput(maxKey, scratch[count - 1] / 1e6);
+      if (trackAllocations && runsSincePublish > 0) {
+        Logger.recordOutput(allocatedKey, allocatedSincePublish / runsSincePublish);
+      }
+      allocatedSincePublish = 0;
+      runsSincePublish = 0;
+    }
+  }
+}
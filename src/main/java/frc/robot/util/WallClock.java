@@ -0,0 +1,40 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Tells whether the wall clock can be trusted.
+ *
+ * <p>The roboRIO has no battery-backed clock, so after a reboot its date is wrong until the driver
+ * station sets it, shortly after connecting. Like AdvantageKit's WPILOGWriter, the clock is trusted
+ * once a driver station has been attached for a few seconds. It can be checked from any thread.
+ */
+public final class WallClock {
+  private static final long syncDelayMicros = 5_000_000;
+  private static final long minValidMillis = 1_600_000_000_000L; // Anything earlier was never set
+
+  private static long attachedSinceMicros = -1;
+  private static boolean valid = false; // Stays set, the clock keeps time once it has been set
+
+  private WallClock() {}
+
+  /** Returns whether the wall clock has been set by the driver station. */
+  public static synchronized boolean isValid() {
+    if (valid) {
+      return true;
+    }
+    if (!DriverStation.isDSAttached()) {
+      attachedSinceMicros = -1;
+      return false;
+    }
+    long now = RobotController.getFPGATime();
+    if (attachedSinceMicros < 0) {
+      attachedSinceMicros = now;
+    }
+    valid =
+        now - attachedSinceMicros >= syncDelayMicros
+            && System.currentTimeMillis() > minValidMillis;
+    return valid;
+  }
+}
@@ -0,0 +1,40 @@
+package frc.robot.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR event spanning one phase of {@code Drive.periodic}. */
+@Name("frc.robot.DrivePhase")
+@Label("Drive Phase")
+@Category({"Robot", "Drive"})
+@Description("One phase of Drive.periodic")
+@StackTrace(false)
+public class DrivePhaseEvent extends Event {
+  private static final EventType type = EventType.getEventType(DrivePhaseEvent.class);
+
+  @Label("Phase")
+  private String phase;
+
+  /** Starts the event, or returns null without allocating when it is not being recorded. */
+  public static DrivePhaseEvent start(String phase) {
+    if (!type.isEnabled()) {
+      return null;
+    }
+    DrivePhaseEvent event = new DrivePhaseEvent();
+    event.phase = phase;
+    event.begin();
+    return event;
+  }
+
+  /** Ends and commits an event returned by {@link #start}, if any. */
+  public static void finish(DrivePhaseEvent event) {
+    if (event != null) {
+      event.commit();
+    }
+  }
+}
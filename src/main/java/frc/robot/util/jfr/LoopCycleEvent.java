@@ -0,0 +1,44 @@
+package frc.robot.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR event spanning one run of {@code Robot.robotPeriodic}. */
+@Name("frc.robot.LoopCycle")
+@Label("Loop Cycle")
+@Category({"Robot", "Loop"})
+@Description("One run of robotPeriodic")
+@StackTrace(false)
+public class LoopCycleEvent extends Event {
+  private static final EventType type = EventType.getEventType(LoopCycleEvent.class);
+
+  @Label("Cycle")
+  private long cycle;
+
+  @Label("Governor Level")
+  private String governorLevel;
+
+  /** Starts the event, or returns null without allocating when it is not being recorded. */
+  public static LoopCycleEvent start(long cycle) {
+    if (!type.isEnabled()) {
+      return null;
+    }
+    LoopCycleEvent event = new LoopCycleEvent();
+    event.cycle = cycle;
+    event.begin();
+    return event;
+  }
+
+  /** Ends and commits an event returned by {@link #start}, if any. */
+  public static void finish(LoopCycleEvent event, String governorLevel) {
+    if (event != null) {
+      event.governorLevel = governorLevel;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package frc.robot.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** JFR event spanning one odometry sample being written to the queues. */
+@Name("frc.robot.OdometryBatch")
+@Label("Odometry Batch")
+@Category({"Robot", "Drive", "Odometry"})
+@Description("One set of high-frequency odometry signals sampled by an odometry thread")
+@StackTrace(false)
+public class OdometryBatchEvent extends Event {
+  private static final EventType type = EventType.getEventType(OdometryBatchEvent.class);
+
+  @Label("Signal Count")
+  private int signalCount;
+
+  @Label("Queued Samples")
+  @Description("Samples waiting for the main loop after this one was added")
+  private int queuedSamples;
+
+  @Label("Latency")
+  @Description("Average age of the signals when they were read")
+  @Timespan(Timespan.NANOSECONDS)
+  private long latency;
+
+  @Label("Valid")
+  private boolean valid;
+
+  /** Starts the event, or returns null without allocating when it is not being recorded. */
+  public static OdometryBatchEvent start() {
+    if (!type.isEnabled()) {
+      return null;
+    }
+    OdometryBatchEvent event = new OdometryBatchEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Ends and commits an event returned by {@link #start}, if any. Callers should only compute the
+   * arguments when the event is not null, since it is null whenever the event is not recorded.
+   *
+   * @param signalCount Number of signals sampled.
+   * @param queuedSamples Samples in the timestamp queue after this one was added.
+   * @param latencySeconds Average age of the signals when they were read.
+   * @param valid Whether every signal was read successfully.
+   */
+  public static void finish(
+      OdometryBatchEvent event,
+      int signalCount,
+      int queuedSamples,
+      double latencySeconds,
+      boolean valid) {
+    if (event != null) {
+      event.signalCount = signalCount;
+      event.queuedSamples = queuedSamples;
+      event.latency = (long) (latencySeconds * 1e9);
+      event.valid = valid;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package frc.robot.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR event spanning the time a thread waits to acquire the drive's odometry lock. */
+@Name("frc.robot.OdometryLockWait")
+@Label("Odometry Lock Wait")
+@Category({"Robot", "Drive", "Odometry"})
+@Description("Time spent waiting to acquire the odometry lock")
+@StackTrace(false)
+public class OdometryLockWaitEvent extends Event {
+  private static final EventType type = EventType.getEventType(OdometryLockWaitEvent.class);
+
+  @Label("Waiter")
+  private String waiter;
+
+  /** Starts the event, or returns null without allocating when it is not being recorded. */
+  public static OdometryLockWaitEvent start(String waiter) {
+    if (!type.isEnabled()) {
+      return null;
+    }
+    OdometryLockWaitEvent event = new OdometryLockWaitEvent();
+    event.waiter = waiter;
+    event.begin();
+    return event;
+  }
+
+  /** Ends and commits an event returned by {@link #start}, if any. */
+  public static void finish(OdometryLockWaitEvent event) {
+    if (event != null) {
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package frc.robot.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR event spanning the pose solve for one camera frame. */
+@Name("frc.robot.VisionFrame")
+@Label("Vision Frame")
+@Category({"Robot", "Vision"})
+@Description("One camera frame run through the pose estimator")
+@StackTrace(false)
+public class VisionFrameEvent extends Event {
+  private static final EventType type = EventType.getEventType(VisionFrameEvent.class);
+
+  @Label("Camera")
+  private String camera;
+
+  @Label("Tag Count")
+  private int tagCount;
+
+  @Label("Pose Estimated")
+  private boolean estimated;
+
+  /** Starts the event, or returns null without allocating when it is not being recorded. */
+  public static VisionFrameEvent start(String camera) {
+    if (!type.isEnabled()) {
+      return null;
+    }
+    VisionFrameEvent event = new VisionFrameEvent();
+    event.camera = camera;
+    event.begin();
+    return event;
+  }
+
+  /** Ends and commits an event returned by {@link #start}, if any. */
+  public static void finish(VisionFrameEvent event, int tagCount, boolean estimated) {
+    if (event != null) {
+      event.tagCount = tagCount;
+      event.estimated = estimated;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,388 @@
+package frc.robot.util.log;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.util.WallClock;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.littletonrobotics.junction.LogDataReceiver;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.LogTable.LogValue;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Writes the log to a WPILOG file from a dedicated thread, so slow storage never holds up the
+ * logger.
+ *
+ * <p>Each cycle, only the values that changed are encoded and copied into a preallocated ring
+ * buffer. A writer thread drains the ring in large sequential writes through a direct buffer, each
+ * time a full batch is queued and at least once a second. If the ring is too full for a cycle, keys
+ * under the debug prefixes are dropped first (and written the next time they fit), then the whole
+ * cycle. Inputs should never be debug keys, so a log that only lost debug keys still replays.
+ *
+ * <p>Like WPILOGWriter, the file starts with a random name, since the clock is rarely set at boot,
+ * and is renamed with the date once the driver station sets the clock and with the event and match
+ * once a match starts. If the folder cannot be opened, the fallback folder is used instead. After a
+ * write error, nothing more is logged.
+ *
+ * <p>Call {@link #recordMetrics()} each loop to log the ring usage, write latency and drop counts
+ * under "AsyncLogWriter/".
+ */
+public class AsyncWPILOGWriter implements LogDataReceiver {
+  private static final String timestampKey = "/Timestamp";
+  private static final long maxBatchAgeNanos = 1_000_000_000;
+
+  private final Path folder;
+  private final Path fallbackFolder;
+  private final String randomIdentifier = Integer.toHexString(new Random().nextInt());
+  private final String[] debugPrefixes;
+  private final byte[] ring;
+  private final ByteBuffer directBuffer;
+
+  // Producer state, only touched from putTable
+  private final WPILOGEncoder encoder = new WPILOGEncoder(64 * 1024);
+  private final Map<String, Integer> entryIds = new HashMap<>();
+  private final Map<String, LogValue> lastValues = new HashMap<>();
+  private final List<String> pendingKeys = new ArrayList<>();
+  private final List<LogValue> pendingValues = new ArrayList<>();
+  private final List<String> pendingStarts = new ArrayList<>();
+  private int timestampEntry = -1;
+  private int nextEntryId = 1;
+  private Path path = null; // Renamed as the date and match become known
+  private String logDate = null;
+  private String logMatchText = null;
+
+  // Shared between the producer and the writer thread
+  private final AtomicLong writeIndex = new AtomicLong();
+  private final AtomicLong readIndex = new AtomicLong();
+  private final AtomicLong maxWriteLatencyNanos = new AtomicLong();
+  private final AtomicLong droppedDebugRecords = new AtomicLong();
+  private final AtomicLong droppedCycles = new AtomicLong();
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private volatile boolean running = false;
+  private volatile long lastWriteLatencyNanos = 0;
+  private volatile IOException writeError = null;
+
+  private Thread writerThread;
+  private FileChannel channel;
+
+  /**
+   * Creates a writer.
+   *
+   * @param folder Folder to create the log file in.
+   * @param fallbackFolder Folder used if the log file cannot be created in the first one.
+   * @param ringBytes Size of the ring buffer between the logger and the writer thread.
+   * @param batchBytes Size of the direct buffer used for each write.
+   * @param debugPrefixes Keys dropped first when the ring is full, e.g. "/RealOutputs/Debug/".
+   */
+  public AsyncWPILOGWriter(
+      Path folder, Path fallbackFolder, int ringBytes, int batchBytes, String... debugPrefixes) {
+    this.folder = folder;
+    this.fallbackFolder = fallbackFolder;
+    this.debugPrefixes = debugPrefixes.clone();
+    ring = new byte[ringBytes];
+    directBuffer = ByteBuffer.allocateDirect(batchBytes);
+  }
+
+  @Override
+  public void start() {
+    if (WallClock.isValid()) {
+      logDate = new SimpleDateFormat("yy-MM-dd_HH-mm-ss").format(new Date());
+    }
+    if (!open(folder)) {
+      DriverStation.reportError(
+          "[AsyncWPILOGWriter] Logging to " + fallbackFolder + " instead of " + folder, false);
+      if (!open(fallbackFolder)) {
+        return;
+      }
+    }
+
+    encoder.clear();
+    encoder.writeHeader(WPILOGEncoder.advantageKitHeader);
+    publish(encoder.getBuffer().array(), encoder.size());
+
+    running = true;
+    writerThread = new Thread(this::writeLoop, "AsyncWPILOGWriter");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  @Override
+  public void end() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join();
+      channel.close();
+    } catch (InterruptedException | IOException e) {
+      DriverStation.reportWarning(
+          "[AsyncWPILOGWriter] Failed to close log file: " + e.getMessage(), false);
+    }
+  }
+
+  /** Creates the log file in a folder, and returns whether that succeeded. */
+  private boolean open(Path logFolder) {
+    try {
+      Files.createDirectories(logFolder);
+      path = logFolder.resolve(filename());
+      channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      return true;
+    } catch (IOException e) {
+      DriverStation.reportError(
+          "[AsyncWPILOGWriter] Failed to open log file in " + logFolder + ": " + e.getMessage(),
+          false);
+      return false;
+    }
+  }
+
+  private String filename() {
+    return "akit_"
+        + (logDate != null ? logDate : randomIdentifier)
+        + (logMatchText != null ? "_" + logMatchText : "")
+        + ".wpilog";
+  }
+
+  /** Renames the file once the date is known and once a match starts, as WPILOGWriter does. */
+  private void updateFilename(LogTable table) {
+    boolean changed = false;
+    if (logDate == null && WallClock.isValid()) {
+      logDate = new SimpleDateFormat("yy-MM-dd_HH-mm-ss").format(new Date());
+      changed = true;
+    }
+    if (logMatchText == null) {
+      String matchPrefix;
+      switch (table.get("DriverStation/MatchType", 0)) {
+        case 1:
+          matchPrefix = "p";
+          break;
+        case 2:
+          matchPrefix = "q";
+          break;
+        case 3:
+          matchPrefix = "e";
+          break;
+        default:
+          matchPrefix = null; // Not in a match
+          break;
+      }
+      if (matchPrefix != null) {
+        String eventName = table.get("DriverStation/EventName", "").toLowerCase();
+        logMatchText =
+            (eventName.isEmpty() ? "" : eventName + "_")
+                + matchPrefix
+                + table.get("DriverStation/MatchNumber", 0);
+        changed = true;
+      }
+    }
+    if (!changed) {
+      return;
+    }
+
+    // The writer thread keeps writing through the open channel while the file is renamed
+    Path renamed = path.resolveSibling(filename());
+    try {
+      Files.move(path, renamed);
+      path = renamed;
+    } catch (IOException e) {
+      DriverStation.reportWarning(
+          "[AsyncWPILOGWriter] Failed to rename log file: " + e.getMessage(), false);
+    }
+  }
+
+  @Override
+  public void putTable(LogTable table) {
+    if (!running || writeError != null) {
+      return; // Nothing can be written after an error, so skip encoding too
+    }
+    updateFilename(table);
+    long timestamp = table.getTimestamp();
+    long free = ring.length - (writeIndex.get() - readIndex.get());
+
+    // Try the full cycle, then without debug keys, then give up on the cycle
+    if (encodeCycle(table, timestamp, true) <= free) {
+      commitCycle();
+    } else if (encodeCycle(table, timestamp, false) <= free) {
+      droppedDebugRecords.addAndGet(countDebugChanges(table));
+      commitCycle();
+    } else {
+      droppedCycles.incrementAndGet();
+    }
+  }
+
+  /**
+   * Encodes every changed value in the table into the encoder and remembers what was encoded.
+   *
+   * @return The encoded size in bytes.
+   */
+  private int encodeCycle(LogTable table, long timestamp, boolean includeDebug) {
+    encoder.clear();
+    pendingKeys.clear();
+    pendingValues.clear();
+    pendingStarts.clear();
+    int provisionalId = nextEntryId;
+
+    if (timestampEntry < 0) {
+      encoder.writeStart(
+          provisionalId, timestampKey, "int64", WPILOGEncoder.advantageKitMetadata, timestamp);
+      encoder.writeInteger(provisionalId++, timestamp, timestamp);
+      pendingStarts.add(timestampKey);
+    } else {
+      encoder.writeInteger(timestampEntry, timestamp, timestamp);
+    }
+
+    for (Map.Entry<String, LogValue> field : table.getAll(false).entrySet()) {
+      String key = field.getKey();
+      LogValue value = field.getValue();
+      if (value.equals(lastValues.get(key)) || (!includeDebug && isDebugKey(key))) {
+        continue;
+      }
+      Integer id = entryIds.get(key);
+      if (id == null) {
+        id = provisionalId++;
+        encoder.writeStart(
+            id, key, value.getWPILOGType(), WPILOGEncoder.advantageKitMetadata, timestamp);
+        pendingStarts.add(key);
+      }
+      encoder.writeValue(id, timestamp, value);
+      pendingKeys.add(key);
+      pendingValues.add(value);
+    }
+    return encoder.size();
+  }
+
+  /** Copies the encoded cycle into the ring and records the values and entries it wrote. */
+  private void commitCycle() {
+    publish(encoder.getBuffer().array(), encoder.size());
+    for (String key : pendingStarts) {
+      if (key.equals(timestampKey)) {
+        timestampEntry = nextEntryId++;
+      } else {
+        entryIds.put(key, nextEntryId++);
+      }
+    }
+    for (int i = 0; i < pendingKeys.size(); i++) {
+      lastValues.put(pendingKeys.get(i), pendingValues.get(i));
+    }
+  }
+
+  private long countDebugChanges(LogTable table) {
+    long count = 0;
+    for (Map.Entry<String, LogValue> field : table.getAll(false).entrySet()) {
+      if (isDebugKey(field.getKey()) && !field.getValue().equals(lastValues.get(field.getKey()))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private boolean isDebugKey(String key) {
+    for (String prefix : debugPrefixes) {
+      if (key.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Copies bytes into the ring. The caller has checked that there is room. */
+  private void publish(byte[] bytes, int length) {
+    long index = writeIndex.get();
+    int offset = (int) (index % ring.length);
+    int first = Math.min(length, ring.length - offset);
+    System.arraycopy(bytes, 0, ring, offset, first);
+    System.arraycopy(bytes, first, ring, 0, length - first);
+    writeIndex.set(index + length);
+    if (index - readIndex.get() + length >= directBuffer.capacity()) {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  /**
+   * Drains full batches from the ring to the file as they fill, and everything queued once it has
+   * waited for the maximum batch age. When stopped, drains whatever is left.
+   */
+  private void writeLoop() {
+    long lastPartialNanos = System.nanoTime();
+    while (running && writeError == null) {
+      long waitNanos = lastPartialNanos + maxBatchAgeNanos - System.nanoTime();
+      if (waitNanos <= 0) {
+        drain(true);
+        lastPartialNanos = System.nanoTime();
+      } else if (writeIndex.get() - readIndex.get() >= directBuffer.capacity()) {
+        drain(false);
+      } else {
+        LockSupport.parkNanos(waitNanos); // Woken early when a batch fills or on close
+      }
+    }
+    drain(true);
+  }
+
+  /**
+   * Writes queued bytes to the file in batches.
+   *
+   * @param includePartial Whether to also write a final batch smaller than the direct buffer.
+   */
+  private void drain(boolean includePartial) {
+    long read = readIndex.get();
+    long write = writeIndex.get();
+    while ((write - read >= directBuffer.capacity() || (includePartial && read < write))
+        && writeError == null) {
+      int length = (int) Math.min(write - read, directBuffer.capacity());
+      int offset = (int) (read % ring.length);
+      int first = Math.min(length, ring.length - offset);
+      directBuffer.clear();
+      directBuffer.put(ring, offset, first);
+      directBuffer.put(ring, 0, length - first);
+      directBuffer.flip();
+
+      long start = System.nanoTime();
+      try {
+        while (directBuffer.hasRemaining()) {
+          channel.write(directBuffer);
+        }
+      } catch (IOException e) {
+        writeError = e;
+        DriverStation.reportError(
+            "[AsyncWPILOGWriter] Failed to write log file, logging stopped: " + e.getMessage(),
+            false);
+        return;
+      }
+      long latency = System.nanoTime() - start;
+      lastWriteLatencyNanos = latency;
+      maxWriteLatencyNanos.accumulateAndGet(latency, Math::max);
+      bytesWritten.addAndGet(length);
+
+      read += length;
+      readIndex.set(read);
+    }
+  }
+
+  /** Logs the writer metrics. The max write latency is reset each call. */
+  public void recordMetrics() {
+    long queued = writeIndex.get() - readIndex.get();
+    Logger.recordOutput("AsyncLogWriter/QueuedBytes", queued);
+    Logger.recordOutput("AsyncLogWriter/QueueFraction", queued / (double) ring.length);
+    Logger.recordOutput("AsyncLogWriter/LastWriteLatencyMS", lastWriteLatencyNanos / 1e6);
+    Logger.recordOutput(
+        "AsyncLogWriter/MaxWriteLatencyMS", maxWriteLatencyNanos.getAndSet(0) / 1e6);
+    Logger.recordOutput("AsyncLogWriter/BytesWritten", bytesWritten.get());
+    Logger.recordOutput("AsyncLogWriter/DroppedDebugRecords", droppedDebugRecords.get());
+    Logger.recordOutput("AsyncLogWriter/DroppedCycles", droppedCycles.get());
+    Logger.recordOutput("AsyncLogWriter/Healthy", running && writeError == null);
+  }
+}
@@ -0,0 +1,241 @@
+package frc.robot.util.log;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A compact binary log of every high-frequency odometry sample, written by the odometry thread.
+ *
+ * <p>The file grows in memory-mapped chunks, so appending a sample is a handful of memory stores
+ * with no allocation or system call. A background thread maps and preloads the next chunk before
+ * the current one fills, since growing a file on the USB stick zero-fills it, and flushes the
+ * mappings to disk once per second. If the next chunk is somehow not ready in time, samples are
+ * dropped until it is rather than waiting. Each record is the sample timestamp followed by one
+ * value per signal, all little-endian doubles. Closing the log truncates the file to the records
+ * written. When the maximum number of records is reached, further samples are dropped.
+ *
+ * <p>Layout: magic (8 bytes), record count (int64), signal count (int32), data offset (int32),
+ * then each signal name as a length-prefixed UTF-8 string, then the records starting at the data
+ * offset.
+ */
+public class OdometrySampleLog {
+  public static final byte[] magic = "ODOLOG01".getBytes(StandardCharsets.US_ASCII);
+  public static final int recordCountOffset = 8;
+  public static final int signalCountOffset = 16;
+  public static final int dataOffsetOffset = 20;
+  public static final int namesOffset = 24;
+  public static final String extension = ".odolog";
+  private static final int chunkBytes = 1024 * 1024;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final Thread flusher;
+  private final int signalCount;
+  private final int dataOffset;
+  private final int recordSize;
+  private final int chunkRecords;
+  private final long maxRecords;
+  private volatile MappedByteBuffer chunk; // Read by the flusher
+  private volatile MappedByteBuffer previousChunk = null; // Flushed once more after a new chunk
+  private volatile MappedByteBuffer nextChunk = null; // Mapped by the flusher, taken when full
+  private long nextChunkPosition; // Only touched by the flusher
+  private int chunkRecordCount = 0;
+  private long recordCount = 0;
+  private volatile long droppedRecords = 0; // Only written by the appending thread
+  private boolean closed = false;
+  private volatile boolean stopFlusher = false; // Not an interrupt, which would close the channel
+
+  /**
+   * Creates a log file.
+   *
+   * @param file The file to create.
+   * @param signalNames The name of each signal, in the order values are appended.
+   * @param maxRecords Number of records after which further samples are dropped.
+   */
+  public OdometrySampleLog(Path file, List<String> signalNames, long maxRecords)
+      throws IOException {
+    signalCount = signalNames.size();
+    recordSize = 8 * (signalCount + 1);
+    this.maxRecords = maxRecords;
+
+    int headerSize = namesOffset;
+    byte[][] names = new byte[signalCount][];
+    for (int i = 0; i < signalCount; i++) {
+      names[i] = signalNames.get(i).getBytes(StandardCharsets.UTF_8);
+      headerSize += 4 + names[i].length;
+    }
+    dataOffset = (headerSize + 7) & ~7;
+
+    chunkRecords = Math.max(chunkBytes / recordSize, 1);
+
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    header = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataOffset);
+    header.order(ByteOrder.LITTLE_ENDIAN);
+    header.put(magic);
+    header.putLong(0);
+    header.putInt(signalCount);
+    header.putInt(dataOffset);
+    for (byte[] name : names) {
+      header.putInt(name.length);
+      header.put(name);
+    }
+    chunk = mapChunk(dataOffset);
+    nextChunkPosition = dataOffset + (long) chunkRecords * recordSize;
+
+    flusher = new Thread(this::flushLoop, "OdometrySampleLogFlusher");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  /**
+   * Appends one sample. Only call from a single thread.
+   *
+   * @param timestamp The sample timestamp in seconds.
+   * @param values One value per signal.
+   */
+  public void append(double timestamp, double[] values) {
+    if (closed) {
+      return;
+    }
+    if (recordCount >= maxRecords) {
+      droppedRecords++;
+      return;
+    }
+    MappedByteBuffer buffer = chunk;
+    if (chunkRecordCount == chunkRecords) {
+      buffer = nextChunk;
+      if (buffer == null) {
+        droppedRecords++; // The flusher has not mapped the next chunk yet
+        return;
+      }
+      nextChunk = null;
+      previousChunk = chunk;
+      chunk = buffer;
+      chunkRecordCount = 0;
+      LockSupport.unpark(flusher); // Map the one after it
+    }
+    int offset = chunkRecordCount * recordSize;
+    buffer.putDouble(offset, timestamp);
+    for (int i = 0; i < signalCount; i++) {
+      buffer.putDouble(offset + 8 * (i + 1), values[i]);
+    }
+    chunkRecordCount++;
+    recordCount++;
+    header.putLong(recordCountOffset, recordCount); // Published after the record is complete
+  }
+
+  /**
+   * Flushes every record and truncates the file to them. Must not be called at the same time as
+   * {@link #append}; later samples are ignored.
+   */
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    stopFlusher = true;
+    LockSupport.unpark(flusher);
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    try {
+      // Nothing touches the mappings past the end once truncated
+      channel.truncate(dataOffset + recordCount * recordSize);
+      channel.close();
+    } catch (IOException e) {
+      DriverStation.reportWarning(
+          "Failed to close odometry sample log: " + e.getMessage(), false);
+    }
+  }
+
+  /**
+   * Returns a new file path in the folder, named after the source and the current time if the
+   * clock has been set (otherwise a random suffix).
+   */
+  public static Path newFilePath(Path folder, String source) {
+    String suffix;
+    if (System.currentTimeMillis() > 1_600_000_000_000L) {
+      suffix = new SimpleDateFormat("yy-MM-dd_HH-mm-ss").format(new Date());
+    } else {
+      suffix = Integer.toHexString(new Random().nextInt());
+    }
+    return folder.resolve("odometry_" + source + "_" + suffix + extension);
+  }
+
+  /**
+   * Returns the number of samples dropped because the file was full or the next chunk was not
+   * mapped in time. Can be called from any thread.
+   */
+  public long getDroppedRecords() {
+    return droppedRecords;
+  }
+
+  private MappedByteBuffer mapChunk(long position) throws IOException {
+    // Mapping past the end of the file grows it
+    MappedByteBuffer buffer =
+        channel.map(FileChannel.MapMode.READ_WRITE, position, (long) chunkRecords * recordSize);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.load(); // Fault the pages in here rather than on the odometry thread
+    return buffer;
+  }
+
+  /** Keeps the next chunk mapped and flushes once per second, until the log is closed. */
+  private void flushLoop() {
+    long lastFlushNanos = System.nanoTime();
+    boolean mapFailed = false;
+    while (!stopFlusher) {
+      if (nextChunk == null && !mapFailed) {
+        try {
+          nextChunk = mapChunk(nextChunkPosition);
+          nextChunkPosition += (long) chunkRecords * recordSize;
+        } catch (IOException e) {
+          mapFailed = true;
+          DriverStation.reportWarning(
+              "Failed to grow odometry sample log: " + e.getMessage(), false);
+        }
+      }
+      long waitNanos = lastFlushNanos + 1_000_000_000L - System.nanoTime();
+      if (waitNanos <= 0) {
+        flush();
+        lastFlushNanos = System.nanoTime();
+      } else {
+        LockSupport.parkNanos(waitNanos); // Woken early when the next chunk is taken
+      }
+    }
+  }
+
+  private void flush() {
+    MappedByteBuffer previous = previousChunk;
+    if (previous != null) {
+      previous.force();
+      previousChunk = null;
+    }
+    MappedByteBuffer current = chunk;
+    if (current != null) {
+      current.force();
+    }
+    header.force();
+  }
+}
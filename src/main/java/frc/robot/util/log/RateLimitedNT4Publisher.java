@@ -0,0 +1,170 @@
+package frc.robot.util.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.littletonrobotics.junction.LogDataReceiver;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.LogTable.LogValue;
+import org.littletonrobotics.junction.networktables.NT4Publisher;
+
+/**
+ * Publishes the log to NetworkTables at a limited rate per key prefix.
+ *
+ * <p>Each key uses the rule with the longest matching prefix. A rule's keys are only sent once its
+ * period has passed, and then only the ones that changed, so the dashboard always gets the latest
+ * value without every intermediate one. Rules are sent in priority order until the per-cycle byte
+ * budget runs out, and whatever is left over waits for the next cycle. This only affects
+ * NetworkTables; log files still record every value.
+ *
+ * <p>Like every data receiver, this runs on the logger's receiver thread rather than the main loop.
+ */
+public class RateLimitedNT4Publisher implements LogDataReceiver {
+  /** A publishing rate and priority for every key under a prefix. */
+  public static class Rule {
+    public final String prefix;
+    public final double rateHz;
+    public final int priority;
+
+    /**
+     * Creates a rule.
+     *
+     * @param prefix Key prefix, including the leading "/" (e.g. "/RealOutputs/Odometry/").
+     * @param rateHz Maximum publishing rate.
+     * @param priority Lower values are sent first when the byte budget is tight.
+     */
+    public Rule(String prefix, double rateHz, int priority) {
+      this.prefix = prefix;
+      this.rateHz = rateHz;
+      this.priority = priority;
+    }
+  }
+
+  private static class RuleState {
+    final Rule rule;
+    final long periodMicros;
+    final List<String> keys = new ArrayList<>();
+    long lastPublishMicros = Long.MIN_VALUE / 2;
+
+    RuleState(Rule rule) {
+      this.rule = rule;
+      periodMicros = (long) (1e6 / rule.rateHz);
+    }
+  }
+
+  private final NT4Publisher publisher = new NT4Publisher();
+  private final RuleState[] rules;
+  private final RuleState defaultRule;
+  private final int maxBytesPerCycle;
+  private final Map<String, RuleState> ruleByKey = new HashMap<>();
+  private final Map<String, LogValue> lastPublished = new HashMap<>();
+
+  /**
+   * Creates a publisher.
+   *
+   * @param defaultRateHz Rate for keys that match no rule.
+   * @param maxBytesPerCycle Approximate number of value bytes to publish per cycle.
+   * @param rules Publishing rules.
+   */
+  public RateLimitedNT4Publisher(double defaultRateHz, int maxBytesPerCycle, Rule... rules) {
+    this.maxBytesPerCycle = maxBytesPerCycle;
+    defaultRule = new RuleState(new Rule("/", defaultRateHz, Integer.MAX_VALUE));
+    this.rules =
+        Arrays.stream(rules)
+            .sorted(Comparator.comparingInt(rule -> rule.priority))
+            .map(RuleState::new)
+            .toArray(RuleState[]::new);
+  }
+
+  @Override
+  public void putTable(LogTable table) throws InterruptedException {
+    long timestamp = table.getTimestamp();
+    Map<String, LogValue> values = table.getAll(false);
+    for (String key : values.keySet()) {
+      if (!ruleByKey.containsKey(key)) {
+        RuleState rule = findRule(key);
+        ruleByKey.put(key, rule);
+        rule.keys.add(key);
+      }
+    }
+
+    LogTable filtered = new LogTable(timestamp);
+    int budget = maxBytesPerCycle;
+    for (RuleState rule : rules) {
+      budget = publishRule(rule, values, filtered, timestamp, budget);
+    }
+    publishRule(defaultRule, values, filtered, timestamp, budget);
+    publisher.putTable(filtered);
+  }
+
+  /**
+   * Copies a rule's changed keys into the filtered table if the rule is due.
+   *
+   * @return The remaining byte budget.
+   */
+  private int publishRule(
+      RuleState rule,
+      Map<String, LogValue> values,
+      LogTable filtered,
+      long timestamp,
+      int budget) {
+    if (timestamp - rule.lastPublishMicros < rule.periodMicros) {
+      return budget;
+    }
+    for (String key : rule.keys) {
+      LogValue value = values.get(key);
+      if (value == null || value.equals(lastPublished.get(key))) {
+        continue;
+      }
+      int size = estimateSize(value);
+      if (size > budget && budget < maxBytesPerCycle) {
+        return 0; // Out of budget, try the rest of this rule next cycle
+      }
+      filtered.put(key.substring(1), value); // Filtered table adds its own "/" prefix
+      lastPublished.put(key, value);
+      budget -= size;
+    }
+    rule.lastPublishMicros = timestamp;
+    return budget;
+  }
+
+  private RuleState findRule(String key) {
+    RuleState best = defaultRule;
+    int bestLength = -1;
+    for (RuleState rule : rules) {
+      if (key.startsWith(rule.rule.prefix) && rule.rule.prefix.length() > bestLength) {
+        best = rule;
+        bestLength = rule.rule.prefix.length();
+      }
+    }
+    return best;
+  }
+
+  private static int estimateSize(LogValue value) {
+    switch (value.type) {
+      case Raw:
+        return value.getRaw().length;
+      case String:
+        return value.getString().length();
+      case BooleanArray:
+        return value.getBooleanArray().length;
+      case IntegerArray:
+        return value.getIntegerArray().length * 8;
+      case FloatArray:
+        return value.getFloatArray().length * 4;
+      case DoubleArray:
+        return value.getDoubleArray().length * 8;
+      case StringArray:
+        int size = 0;
+        for (String element : value.getStringArray()) {
+          size += element.length();
+        }
+        return size;
+      default:
+        return 8;
+    }
+  }
+}
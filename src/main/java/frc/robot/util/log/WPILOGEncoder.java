@@ -0,0 +1,222 @@
+package frc.robot.util.log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import org.littletonrobotics.junction.LogTable.LogValue;
+
+/**
+ * Encodes WPILOG records into a reusable buffer.
+ *
+ * <p>The buffer grows as needed and is reused between calls, so steady-state encoding of numeric
+ * values does not allocate. See the WPILib "datalog.adoc" specification for the format.
+ */
+public class WPILOGEncoder {
+  /** Extra header written by AdvantageKit, which AdvantageScope uses to recognize its logs. */
+  public static final String advantageKitHeader = "AdvantageKit";
+
+  /** Entry metadata written by AdvantageKit. */
+  public static final String advantageKitMetadata = "{\"source\":\"AdvantageKit\"}";
+
+  private static final byte[] magic = "WPILOG".getBytes(StandardCharsets.US_ASCII);
+  private static final short version = 0x0100;
+  private static final int controlEntry = 0;
+  private static final byte controlStart = 0;
+
+  private ByteBuffer buffer;
+
+  /** Creates an encoder with the given initial buffer capacity in bytes. */
+  public WPILOGEncoder(int initialCapacity) {
+    buffer = ByteBuffer.allocate(initialCapacity).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** Returns the encoded bytes, from index 0 up to the buffer position. */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  /** Returns the number of encoded bytes. */
+  public int size() {
+    return buffer.position();
+  }
+
+  /** Discards everything encoded so far. */
+  public void clear() {
+    buffer.clear();
+  }
+
+  /** Encodes the file header, which must come first in the file. */
+  public void writeHeader(String extraHeader) {
+    byte[] extra = extraHeader.getBytes(StandardCharsets.UTF_8);
+    ensureRemaining(magic.length + 6 + extra.length);
+    buffer.put(magic);
+    buffer.putShort(version);
+    buffer.putInt(extra.length);
+    buffer.put(extra);
+  }
+
+  /** Encodes a control record that starts a new entry. */
+  public void writeStart(int entry, String name, String type, String metadata, long timestamp) {
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+    byte[] metadataBytes = metadata.getBytes(StandardCharsets.UTF_8);
+    int size = 17 + nameBytes.length + typeBytes.length + metadataBytes.length;
+    writeRecordHeader(controlEntry, size, timestamp);
+    buffer.put(controlStart);
+    buffer.putInt(entry);
+    buffer.putInt(nameBytes.length);
+    buffer.put(nameBytes);
+    buffer.putInt(typeBytes.length);
+    buffer.put(typeBytes);
+    buffer.putInt(metadataBytes.length);
+    buffer.put(metadataBytes);
+  }
+
+  /** Encodes a logged value as a data record. */
+  public void writeValue(int entry, long timestamp, LogValue value) {
+    switch (value.type) {
+      case Raw:
+        writeRaw(entry, timestamp, value.getRaw());
+        break;
+      case Boolean:
+        writeBoolean(entry, timestamp, value.getBoolean());
+        break;
+      case Integer:
+        writeInteger(entry, timestamp, value.getInteger());
+        break;
+      case Float:
+        writeFloat(entry, timestamp, value.getFloat());
+        break;
+      case Double:
+        writeDouble(entry, timestamp, value.getDouble());
+        break;
+      case String:
+        writeRaw(entry, timestamp, value.getString().getBytes(StandardCharsets.UTF_8));
+        break;
+      case BooleanArray:
+        writeBooleanArray(entry, timestamp, value.getBooleanArray());
+        break;
+      case IntegerArray:
+        writeIntegerArray(entry, timestamp, value.getIntegerArray());
+        break;
+      case FloatArray:
+        writeFloatArray(entry, timestamp, value.getFloatArray());
+        break;
+      case DoubleArray:
+        writeDoubleArray(entry, timestamp, value.getDoubleArray());
+        break;
+      case StringArray:
+        writeStringArray(entry, timestamp, value.getStringArray());
+        break;
+    }
+  }
+
+  public void writeRaw(int entry, long timestamp, byte[] value) {
+    writeRecordHeader(entry, value.length, timestamp);
+    buffer.put(value);
+  }
+
+  public void writeBoolean(int entry, long timestamp, boolean value) {
+    writeRecordHeader(entry, 1, timestamp);
+    buffer.put((byte) (value ? 1 : 0));
+  }
+
+  public void writeInteger(int entry, long timestamp, long value) {
+    writeRecordHeader(entry, 8, timestamp);
+    buffer.putLong(value);
+  }
+
+  public void writeFloat(int entry, long timestamp, float value) {
+    writeRecordHeader(entry, 4, timestamp);
+    buffer.putFloat(value);
+  }
+
+  public void writeDouble(int entry, long timestamp, double value) {
+    writeRecordHeader(entry, 8, timestamp);
+    buffer.putDouble(value);
+  }
+
+  public void writeBooleanArray(int entry, long timestamp, boolean[] value) {
+    writeRecordHeader(entry, value.length, timestamp);
+    for (boolean element : value) {
+      buffer.put((byte) (element ? 1 : 0));
+    }
+  }
+
+  public void writeIntegerArray(int entry, long timestamp, long[] value) {
+    writeRecordHeader(entry, value.length * 8, timestamp);
+    for (long element : value) {
+      buffer.putLong(element);
+    }
+  }
+
+  public void writeFloatArray(int entry, long timestamp, float[] value) {
+    writeRecordHeader(entry, value.length * 4, timestamp);
+    for (float element : value) {
+      buffer.putFloat(element);
+    }
+  }
+
+  public void writeDoubleArray(int entry, long timestamp, double[] value) {
+    writeRecordHeader(entry, value.length * 8, timestamp);
+    for (double element : value) {
+      buffer.putDouble(element);
+    }
+  }
+
+  public void writeStringArray(int entry, long timestamp, String[] value) {
+    byte[][] elements = new byte[value.length][];
+    int size = 4;
+    for (int i = 0; i < value.length; i++) {
+      elements[i] = value[i].getBytes(StandardCharsets.UTF_8);
+      size += 4 + elements[i].length;
+    }
+    writeRecordHeader(entry, size, timestamp);
+    buffer.putInt(value.length);
+    for (byte[] element : elements) {
+      buffer.putInt(element.length);
+      buffer.put(element);
+    }
+  }
+
+  /**
+   * Encodes a record header and makes room for the payload. Each field uses as few bytes as
+   * possible, with the lengths packed into the first byte.
+   */
+  private void writeRecordHeader(int entry, int payloadSize, long timestamp) {
+    int entryLength = unsignedLength(entry & 0xFFFFFFFFL);
+    int sizeLength = unsignedLength(payloadSize & 0xFFFFFFFFL);
+    int timestampLength = unsignedLength(timestamp);
+    ensureRemaining(1 + entryLength + sizeLength + timestampLength + payloadSize);
+    buffer.put(
+        (byte) ((entryLength - 1) | ((sizeLength - 1) << 2) | ((timestampLength - 1) << 4)));
+    putUnsigned(entry, entryLength);
+    putUnsigned(payloadSize, sizeLength);
+    putUnsigned(timestamp, timestampLength);
+  }
+
+  private void putUnsigned(long value, int length) {
+    for (int i = 0; i < length; i++) {
+      buffer.put((byte) (value >>> (8 * i)));
+    }
+  }
+
+  private static int unsignedLength(long value) {
+    int length = 1;
+    while (length < 8 && (value >>> (8 * length)) != 0) {
+      length++;
+    }
+    return length;
+  }
+
+  private void ensureRemaining(int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return;
+    }
+    int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+    ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.flip();
+    grown.put(buffer);
+    buffer = grown;
+  }
+}
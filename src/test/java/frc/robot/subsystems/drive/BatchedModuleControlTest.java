@@ -0,0 +1,112 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Checks the batched math against the per module path it replaces, on random states. */
+class BatchedModuleControlTest {
+  private static final double period = 0.02;
+  private static final double epsilon = 1e-9;
+  private static final int n = BatchedModuleControl.moduleCount;
+
+  private final Random random = new Random(6328);
+
+  private double uniform(double min, double max) {
+    return min + (max - min) * random.nextDouble();
+  }
+
+  @Test
+  void optimizeMatchesSwerveModuleState() {
+    BatchedModuleControl control = new BatchedModuleControl(period);
+    double[] speeds = new double[n];
+    double[] anglesRad = new double[n];
+    for (int trial = 0; trial < 1000; trial++) {
+      SwerveModuleState[] expected = new SwerveModuleState[n];
+      for (int i = 0; i < n; i++) {
+        // Module angles are not wrapped, since they include the relative encoder offset
+        control.angleRad[i] = uniform(-3.0 * Math.PI, 3.0 * Math.PI);
+        speeds[i] = uniform(-5.0, 5.0);
+        anglesRad[i] = uniform(-Math.PI, Math.PI);
+        expected[i] =
+            SwerveModuleState.optimize(
+                new SwerveModuleState(speeds[i], new Rotation2d(anglesRad[i])),
+                new Rotation2d(control.angleRad[i]));
+      }
+      control.optimize(speeds, anglesRad);
+      for (int i = 0; i < n; i++) {
+        assertEquals(expected[i].speedMetersPerSecond, speeds[i], epsilon);
+        assertEquals(
+            0.0, MathUtil.angleModulus(expected[i].angle.getRadians() - anglesRad[i]), epsilon);
+        assertTrue(Math.abs(anglesRad[i]) <= Math.PI);
+      }
+    }
+  }
+
+  @Test
+  void calculateMatchesPerModuleControllers() {
+    BatchedModuleControl control = new BatchedModuleControl(period);
+    PIDController[] turnFeedback = new PIDController[n];
+    PIDController[] driveFeedback = new PIDController[n];
+    SimpleMotorFeedforward[] driveFeedforward = new SimpleMotorFeedforward[n];
+    for (int i = 0; i < n; i++) {
+      control.turnKP[i] = uniform(0.0, 10.0);
+      control.turnKD[i] = uniform(0.0, 0.5);
+      control.driveKP[i] = uniform(0.0, 0.2);
+      control.driveKD[i] = uniform(0.0, 0.01);
+      control.driveKS[i] = uniform(0.0, 0.2);
+      control.driveKV[i] = uniform(0.0, 0.2);
+      turnFeedback[i] = new PIDController(control.turnKP[i], 0.0, control.turnKD[i], period);
+      turnFeedback[i].enableContinuousInput(-Math.PI, Math.PI);
+      driveFeedback[i] = new PIDController(control.driveKP[i], 0.0, control.driveKD[i], period);
+      driveFeedforward[i] = new SimpleMotorFeedforward(control.driveKS[i], control.driveKV[i]);
+    }
+
+    for (int step = 0; step < 500; step++) {
+      for (int i = 0; i < n; i++) {
+        control.angleRad[i] = uniform(-3.0 * Math.PI, 3.0 * Math.PI);
+        control.velocityRadPerSec[i] = uniform(-100.0, 100.0);
+        control.angleSetpointRad[i] = uniform(-Math.PI, Math.PI);
+        control.velocitySetpointRadPerSec[i] = uniform(-100.0, 100.0);
+      }
+      control.calculate();
+
+      for (int i = 0; i < n; i++) {
+        // Same steps as Module.periodic
+        double turnVolts =
+            turnFeedback[i].calculate(control.angleRad[i], control.angleSetpointRad[i]);
+        double velocitySetpoint =
+            control.velocitySetpointRadPerSec[i] * Math.cos(turnFeedback[i].getPositionError());
+        double driveVolts =
+            driveFeedforward[i].calculate(velocitySetpoint)
+                + driveFeedback[i].calculate(control.velocityRadPerSec[i], velocitySetpoint);
+        assertEquals(turnVolts, control.turnVolts[i], epsilon);
+        assertEquals(driveVolts, control.driveVolts[i], epsilon);
+      }
+    }
+  }
+
+  @Test
+  void noSetpointsMeansNoVoltage() {
+    BatchedModuleControl control = new BatchedModuleControl(period);
+    control.angleSetpointRad[0] = 1.0;
+    control.velocitySetpointRadPerSec[0] = 10.0;
+    control.angleSetpointRad[1] = 1.0; // Turn only
+    control.calculate();
+    assertFalse(Double.isNaN(control.turnVolts[0]));
+    assertFalse(Double.isNaN(control.driveVolts[0]));
+    assertFalse(Double.isNaN(control.turnVolts[1]));
+    assertTrue(Double.isNaN(control.driveVolts[1]));
+    for (int i = 2; i < n; i++) {
+      assertTrue(Double.isNaN(control.turnVolts[i]) && Double.isNaN(control.driveVolts[i]));
+    }
+  }
+}
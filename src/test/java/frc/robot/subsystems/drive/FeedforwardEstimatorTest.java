@@ -0,0 +1,89 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.Constants.FeedforwardEstimationConstants;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class FeedforwardEstimatorTest {
+  private static final double period = 0.004; // 250 Hz odometry
+  private static final double span = FeedforwardEstimationConstants.differenceSpan * period;
+
+  private static final double kS = 0.2;
+  private static final double kV = 0.13;
+  private static final double kA = 0.02;
+
+  // Wheel velocity 20 sin(1.3 t) + 8 sin(4.1 t), which reverses often and keeps accelerating
+  private static double position(double t) {
+    return -20.0 / 1.3 * Math.cos(1.3 * t) - 8.0 / 4.1 * Math.cos(4.1 * t);
+  }
+
+  private static double velocity(double t) {
+    return 20.0 * Math.sin(1.3 * t) + 8.0 * Math.sin(4.1 * t);
+  }
+
+  private static double acceleration(double t) {
+    return 20.0 * 1.3 * Math.cos(1.3 * t) + 8.0 * 4.1 * Math.cos(4.1 * t);
+  }
+
+  /**
+   * Feeds the estimator one sample per cycle for a while. The voltage is the one the model gives
+   * for the velocity half a span back and the acceleration a span back, which is what the
+   * estimator's differences measure.
+   */
+  private static void run(FeedforwardEstimator estimator, double seconds, Random noise) {
+    for (int i = 0; i < seconds / period; i++) {
+      double t = i * period;
+      double v = velocity(t - span / 2.0);
+      double volts = kS * Math.signum(v) + kV * v + kA * acceleration(t - span);
+      if (noise != null) {
+        volts += 0.05 * noise.nextGaussian();
+      }
+      estimator.addSamples(new double[] {t}, new double[] {position(t)}, volts);
+    }
+  }
+
+  @Test
+  void recoversKnownGains() {
+    FeedforwardEstimator estimator = new FeedforwardEstimator(0, 0.0, 0.1, 0.0);
+    assertFalse(estimator.isConfident());
+    run(estimator, 40.0, null);
+    assertEquals(kS, estimator.getKS(), 0.005);
+    assertEquals(kV, estimator.getKV(), 0.001);
+    assertEquals(kA, estimator.getKA(), 0.001);
+    assertTrue(estimator.isConfident());
+  }
+
+  @Test
+  void boundsCoverTheGainsWithNoisyVoltage() {
+    FeedforwardEstimator estimator = new FeedforwardEstimator(0, 0.0, 0.1, 0.0);
+    run(estimator, 40.0, new Random(6328));
+    assertTrue(estimator.getBound(0) > 0.0);
+    assertEquals(kS, estimator.getKS(), 2.0 * estimator.getBound(0));
+    assertEquals(kV, estimator.getKV(), 2.0 * estimator.getBound(1));
+    assertEquals(kA, estimator.getKA(), 2.0 * estimator.getBound(2));
+  }
+
+  @Test
+  void gapRestartsDifferencing() {
+    // Samples on both sides of a gap would give a huge false acceleration if they were mixed
+    FeedforwardEstimator estimator = new FeedforwardEstimator(0, kS, kV, kA);
+    run(estimator, 10.0, null);
+    double resume = 10.0 + 1.0;
+    for (int i = 0; i < 100; i++) {
+      double t = resume + i * period;
+      estimator.addSamples(
+          new double[] {t},
+          new double[] {position(t) + 50.0},
+          kS * Math.signum(velocity(t - span / 2.0))
+              + kV * velocity(t - span / 2.0)
+              + kA * acceleration(t - span));
+    }
+    assertEquals(kS, estimator.getKS(), 0.005);
+    assertEquals(kV, estimator.getKV(), 0.001);
+    assertEquals(kA, estimator.getKA(), 0.001);
+  }
+}
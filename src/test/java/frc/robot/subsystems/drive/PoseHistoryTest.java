@@ -0,0 +1,142 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PoseHistoryTest {
+  private static final double epsilon = 1e-9;
+
+  private final double[] out = new double[3];
+
+  @Test
+  void emptyHistoryHasNoPose() {
+    PoseHistory history = new PoseHistory(4);
+    assertTrue(history.isEmpty());
+    assertFalse(history.getPoseAt(1.0, out));
+    assertFalse(history.getVelocityAt(1.0, 0.02, out));
+  }
+
+  @Test
+  void ignoresSamplesThatAreNotNewer() {
+    PoseHistory history = new PoseHistory(4);
+    history.add(1.0, 1.0, 0.0, 0.0);
+    history.add(1.0, 5.0, 0.0, 0.0);
+    history.add(0.5, 5.0, 0.0, 0.0);
+    assertTrue(history.getPoseAt(1.0, out));
+    assertEquals(1.0, out[0], epsilon);
+  }
+
+  @Test
+  void interpolatesBetweenSamples() {
+    PoseHistory history = new PoseHistory(4);
+    history.add(1.0, 0.0, 0.0, 0.0);
+    history.add(2.0, 2.0, -4.0, 1.0);
+    assertTrue(history.getPoseAt(1.25, out));
+    assertArrayEquals(new double[] {0.5, -1.0, 0.25}, out, epsilon);
+  }
+
+  @Test
+  void clampsToBothEnds() {
+    PoseHistory history = new PoseHistory(4);
+    history.add(1.0, 1.0, 2.0, 0.1);
+    history.add(2.0, 3.0, 4.0, 0.2);
+    assertTrue(history.getPoseAt(0.0, out));
+    assertArrayEquals(new double[] {1.0, 2.0, 0.1}, out, epsilon);
+    assertTrue(history.getPoseAt(5.0, out));
+    assertArrayEquals(new double[] {3.0, 4.0, 0.2}, out, epsilon);
+  }
+
+  @Test
+  void keepsTheNewestSamplesOnceFull() {
+    PoseHistory history = new PoseHistory(4);
+    for (int i = 0; i < 10; i++) {
+      history.add(i, 10.0 * i, 0.0, 0.0);
+    }
+
+    // Only samples 6 to 9 remain, and the search still works across the wrap
+    assertTrue(history.getPoseAt(0.0, out));
+    assertEquals(60.0, out[0], epsilon);
+    assertTrue(history.getPoseAt(7.5, out));
+    assertEquals(75.0, out[0], epsilon);
+    assertTrue(history.getPoseAt(8.25, out));
+    assertEquals(82.5, out[0], epsilon);
+    assertTrue(history.getPoseAt(20.0, out));
+    assertEquals(90.0, out[0], epsilon);
+  }
+
+  @Test
+  void clearEmptiesTheHistory() {
+    PoseHistory history = new PoseHistory(4);
+    history.add(1.0, 1.0, 0.0, 0.0);
+    history.clear();
+    assertTrue(history.isEmpty());
+    history.add(0.5, 2.0, 0.0, 0.0);
+    assertTrue(history.getPoseAt(0.5, out));
+    assertEquals(2.0, out[0], epsilon);
+  }
+
+  @Test
+  void interpolatesRotationTheShortWayAcrossPi() {
+    PoseHistory history = new PoseHistory(4);
+    history.add(1.0, 0.0, 0.0, Math.PI - 0.1);
+    history.add(2.0, 0.0, 0.0, -Math.PI + 0.1);
+    assertTrue(history.getPoseAt(1.25, out));
+    assertEquals(Math.PI - 0.05, out[2], epsilon);
+    assertTrue(history.getPoseAt(1.75, out));
+    assertEquals(-Math.PI + 0.05, out[2], epsilon);
+  }
+
+  @Test
+  void angularVelocityAcrossPiIsTheShortWay() {
+    PoseHistory history = new PoseHistory(8);
+    history.add(1.0, 0.0, 0.0, Math.PI - 0.1);
+    history.add(2.0, 0.0, 0.0, -Math.PI + 0.1);
+    assertTrue(history.getVelocityAt(1.5, 1.0, out));
+    assertEquals(0.2, out[2], epsilon);
+  }
+
+  @Test
+  void velocityInsideTheHistory() {
+    PoseHistory history = new PoseHistory(16);
+    for (int i = 0; i < 10; i++) {
+      history.add(0.1 * i, 2.0 * i * 0.1, -1.0 * i * 0.1, 0.5 * i * 0.1);
+    }
+    assertTrue(history.getVelocityAt(0.45, 0.2, out));
+    assertArrayEquals(new double[] {2.0, -1.0, 0.5}, out, epsilon);
+  }
+
+  @Test
+  void velocityNearTheEndsShortensTheSpan() {
+    PoseHistory history = new PoseHistory(16);
+    for (int i = 0; i < 10; i++) {
+      history.add(0.1 * i, 3.0 * i * 0.1, 0.0, 0.0);
+    }
+    assertTrue(history.getVelocityAt(0.0, 0.2, out));
+    assertEquals(3.0, out[0], epsilon);
+    assertTrue(history.getVelocityAt(0.9, 0.2, out));
+    assertEquals(3.0, out[0], epsilon);
+  }
+
+  @Test
+  void velocityOutsideTheHistoryUsesTheNearestEnd() {
+    PoseHistory history = new PoseHistory(16);
+    history.add(1.0, 0.0, 0.0, 0.0);
+    history.add(2.0, 1.0, 0.0, 0.0);
+    history.add(3.0, 3.0, 0.0, 0.0);
+    assertTrue(history.getVelocityAt(-5.0, 1.0, out));
+    assertEquals(1.0, out[0], epsilon);
+    assertTrue(history.getVelocityAt(10.0, 1.0, out));
+    assertEquals(2.0, out[0], epsilon);
+  }
+
+  @Test
+  void velocityNeedsTwoSamples() {
+    PoseHistory history = new PoseHistory(4);
+    history.add(1.0, 1.0, 0.0, 0.0);
+    assertFalse(history.getVelocityAt(1.0, 0.02, out));
+  }
+}
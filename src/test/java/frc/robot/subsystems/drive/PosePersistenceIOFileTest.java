@@ -0,0 +1,124 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PosePersistenceIOFileTest {
+  private static final int slotSize = 64;
+
+  @TempDir Path folder;
+
+  @BeforeAll
+  static void initializeHAL() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  private Path file() {
+    return folder.resolve("pose.bin");
+  }
+
+  private PosePersistenceIOInputsAutoLogged read(boolean clockValid) {
+    var inputs = new PosePersistenceIOInputsAutoLogged();
+    new PosePersistenceIOFile(file(), () -> clockValid).updateInputs(inputs);
+    return inputs;
+  }
+
+  /** Saves poses with x = 1, 2, ... in order. The last one is in slot count % 2. */
+  private void save(int count, boolean clockValid) {
+    var io = new PosePersistenceIOFile(file(), () -> clockValid);
+    for (int i = 1; i <= count; i++) {
+      io.save(new Pose2d(i, 2.0 * i, new Rotation2d(0.1 * i)), new Rotation2d(0.5 * i));
+    }
+  }
+
+  private void corruptSlot(int slot) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file().toFile(), "rw")) {
+      raf.seek(slot * slotSize + 20); // Inside the x coordinate
+      raf.write(0x5A);
+    }
+  }
+
+  @Test
+  void emptyFileHasNoSavedState() {
+    assertFalse(read(false).hasSavedState);
+  }
+
+  @Test
+  void readsTheNewestSlot() {
+    save(3, false);
+    var inputs = read(false);
+    assertTrue(inputs.hasSavedState);
+    assertEquals(3.0, inputs.pose.getX(), 1e-9);
+    assertEquals(6.0, inputs.pose.getY(), 1e-9);
+    assertEquals(0.3, inputs.pose.getRotation().getRadians(), 1e-9);
+    assertEquals(1.5, inputs.gyroYaw.getRadians(), 1e-9);
+    assertEquals(3, inputs.savedBootSaveCount);
+    assertFalse(inputs.savedWhileEnabled);
+  }
+
+  @Test
+  void tornNewestSlotFallsBackToThePreviousSave() throws IOException {
+    save(3, false);
+    corruptSlot(1); // The third save went to slot 3 % 2
+    var inputs = read(false);
+    assertTrue(inputs.hasSavedState);
+    assertEquals(2.0, inputs.pose.getX(), 1e-9);
+    assertEquals(2, inputs.savedBootSaveCount);
+  }
+
+  @Test
+  void tornOlderSlotIsIgnored() throws IOException {
+    save(3, false);
+    corruptSlot(0);
+    assertEquals(3.0, read(false).pose.getX(), 1e-9);
+  }
+
+  @Test
+  void bothSlotsTornHasNoSavedState() throws IOException {
+    save(3, false);
+    corruptSlot(0);
+    corruptSlot(1);
+    assertFalse(read(false).hasSavedState);
+  }
+
+  @Test
+  void savesAfterReadingKeepAlternatingSlots() throws IOException {
+    save(3, false);
+    save(1, false); // Continues from sequence 3, so this is sequence 4 in slot 0
+    corruptSlot(0);
+    assertEquals(3.0, read(false).pose.getX(), 1e-9);
+  }
+
+  @Test
+  void ageIsOnlyKnownWhenTheClockWasSetForBoth() {
+    save(1, false);
+    assertFalse(read(true).ageKnown);
+
+    save(1, true);
+    assertFalse(read(false).ageKnown);
+    var inputs = read(true);
+    assertTrue(inputs.ageKnown);
+    assertTrue(inputs.ageSecs >= 0.0 && inputs.ageSecs < 10.0);
+  }
+
+  @Test
+  void savedStateDoesNotChangeWhenSavingAgain() {
+    save(1, false);
+    var io = new PosePersistenceIOFile(file(), () -> false);
+    io.save(new Pose2d(9.0, 9.0, new Rotation2d()), new Rotation2d());
+    var inputs = new PosePersistenceIOInputsAutoLogged();
+    io.updateInputs(inputs);
+    assertEquals(1.0, inputs.pose.getX(), 1e-9);
+  }
+}
@@ -0,0 +1,109 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class VelocityEstimatorTest {
+  private static final double period = 0.004; // 250 Hz odometry
+  private static final double epsilon = 1e-6;
+
+  @Test
+  void rejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new VelocityEstimator(2, 1));
+    assertThrows(IllegalArgumentException.class, () -> new VelocityEstimator(5, 0));
+    assertThrows(IllegalArgumentException.class, () -> new VelocityEstimator(5, 3));
+  }
+
+  @Test
+  void noEstimateUntilTheWindowIsFull() {
+    VelocityEstimator estimator = new VelocityEstimator(5, 1);
+    for (int i = 0; i < 4; i++) {
+      estimator.addSample(i * period, i);
+      assertFalse(estimator.hasEstimate());
+    }
+    estimator.addSample(4 * period, 4.0);
+    assertTrue(estimator.hasEstimate());
+    assertEquals(4 * period, estimator.getTimestamp(), epsilon);
+  }
+
+  @Test
+  void constantVelocityRamp() {
+    // Late in a long match, so large timestamps and positions must not hurt the fit
+    double start = 5000.0;
+    for (int order = 1; order <= 2; order++) {
+      VelocityEstimator estimator = new VelocityEstimator(7, order);
+      for (int i = 0; i < 100; i++) {
+        double t = start + i * period;
+        estimator.addSample(t, 1.0e4 + 3.0 * (t - start));
+      }
+      assertTrue(estimator.hasEstimate());
+      assertEquals(3.0, estimator.getVelocity(), epsilon);
+      assertEquals(0.0, estimator.getAcceleration(), epsilon);
+    }
+  }
+
+  @Test
+  void unevenSpacing() {
+    // Samples arrive with jitter, the fit uses their actual timestamps
+    Random random = new Random(6328);
+    VelocityEstimator line = new VelocityEstimator(6, 1);
+    VelocityEstimator quadratic = new VelocityEstimator(6, 2);
+    double t = 0.0;
+    for (int i = 0; i < 200; i++) {
+      t += period * (0.5 + random.nextDouble());
+      line.addSample(t, -2.0 * t);
+      quadratic.addSample(t, 1.5 * t + 2.0 * t * t); // Accelerating at 4
+      if (line.hasEstimate()) {
+        assertEquals(-2.0, line.getVelocity(), epsilon);
+        assertEquals(1.5 + 4.0 * t, quadratic.getVelocity(), epsilon);
+        assertEquals(4.0, quadratic.getAcceleration(), epsilon);
+      }
+    }
+  }
+
+  @Test
+  void lineFitLagsByHalfTheWindowUnderAcceleration() {
+    VelocityEstimator estimator = new VelocityEstimator(5, 1);
+    for (int i = 0; i < 50; i++) {
+      double t = i * period;
+      estimator.addSample(t, t * t); // Velocity 2t
+    }
+    double middle = (49 - 2) * period;
+    assertEquals(2.0 * middle, estimator.getVelocity(), epsilon);
+  }
+
+  @Test
+  void gapRestartsTheEstimate() {
+    VelocityEstimator estimator = new VelocityEstimator(5, 1);
+    for (int i = 0; i < 10; i++) {
+      estimator.addSample(i * period, 1.0 * i * period);
+    }
+    assertEquals(1.0, estimator.getVelocity(), epsilon);
+
+    // After the gap the old samples must not be mixed in, the new ones move at 5 instead
+    double resume = 1.0;
+    for (int i = 0; i < 4; i++) {
+      estimator.addSample(resume + i * period, 100.0 + 5.0 * i * period);
+      assertFalse(estimator.hasEstimate());
+    }
+    estimator.addSample(resume + 4 * period, 100.0 + 5.0 * 4 * period);
+    assertTrue(estimator.hasEstimate());
+    assertEquals(5.0, estimator.getVelocity(), epsilon);
+  }
+
+  @Test
+  void timestampGoingBackwardsRestartsTheEstimate() {
+    VelocityEstimator estimator = new VelocityEstimator(3, 1);
+    for (int i = 0; i < 5; i++) {
+      estimator.addSample(i * period, i);
+    }
+    assertTrue(estimator.hasEstimate());
+    estimator.addSample(0.0, 0.0);
+    assertFalse(estimator.hasEstimate());
+  }
+}
@@ -0,0 +1,153 @@
+package frc.robot.util.log;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.LogTable.LogValue;
+
+/** Encodes a few cycles the way AsyncWPILOGWriter does and reads them back with WPILib. */
+class WPILOGEncoderTest {
+  private static final int cycles = 4;
+
+  /** A record the reader should find, in order. */
+  private static final class Expected {
+    final int entry;
+    final long timestamp;
+    final String startName; // Null for a data record
+    final LogValue value;
+
+    Expected(int entry, long timestamp, String startName, LogValue value) {
+      this.entry = entry;
+      this.timestamp = timestamp;
+      this.startName = startName;
+      this.value = value;
+    }
+  }
+
+  private static LogTable cycle(int index) {
+    // The third cycle is past 2^32 microseconds, so timestamps need more than four bytes
+    long timestamp = index < 2 ? 20_000L * (index + 1) : 5_000_000_000L + 20_000L * index;
+    LogTable table = new LogTable(timestamp);
+    table.put("Boolean", index % 2 == 0);
+    table.put("Integer", -5L * index);
+    table.put("Float", 1.5f * index);
+    table.put("Double", Math.PI * index);
+    table.put("String", "cycle " + index + " \u00fc");
+    table.put("Raw", new byte[] {(byte) index, 0, (byte) 0xFF});
+    table.put("BooleanArray", new boolean[] {true, index > 1});
+    table.put("IntegerArray", new long[] {index, Long.MIN_VALUE, Long.MAX_VALUE});
+    table.put("FloatArray", new float[] {0.25f * index, -1.0f});
+    double[] doubles = new double[40]; // Over 255 bytes, so the size needs two bytes
+    Arrays.fill(doubles, 0.1 * index);
+    table.put("DoubleArray", doubles);
+    table.put("StringArray", new String[] {"a", "", "b" + index});
+    table.put("Empty", new double[] {});
+    if (index >= 2) {
+      table.put("Late", 7.0 + index); // An entry that starts partway through the log
+    }
+    return table;
+  }
+
+  @Test
+  void roundTripsThroughDataLogReader() {
+    WPILOGEncoder encoder = new WPILOGEncoder(16); // Small, so it has to grow
+    List<Expected> expected = new ArrayList<>();
+    Map<String, Integer> entryIds = new HashMap<>();
+    encoder.writeHeader(WPILOGEncoder.advantageKitHeader);
+    for (int i = 0; i < cycles; i++) {
+      LogTable table = cycle(i);
+      long timestamp = table.getTimestamp();
+      for (Map.Entry<String, LogValue> field : table.getAll(false).entrySet()) {
+        String key = field.getKey();
+        LogValue value = field.getValue();
+        Integer id = entryIds.get(key);
+        if (id == null) {
+          id = 300 + entryIds.size(); // Over 255, so entry ids need two bytes
+          entryIds.put(key, id);
+          encoder.writeStart(
+              id, key, value.getWPILOGType(), WPILOGEncoder.advantageKitMetadata, timestamp);
+          expected.add(new Expected(id, timestamp, key, value));
+        }
+        encoder.writeValue(id, timestamp, value);
+        expected.add(new Expected(id, timestamp, null, value));
+      }
+    }
+
+    byte[] bytes = Arrays.copyOf(encoder.getBuffer().array(), encoder.size());
+    DataLogReader reader = new DataLogReader(ByteBuffer.wrap(bytes));
+    assertTrue(reader.isValid());
+    assertEquals(0x0100, reader.getVersion());
+    assertEquals(WPILOGEncoder.advantageKitHeader, reader.getExtraHeader());
+
+    Iterator<DataLogRecord> records = reader.iterator();
+    for (Expected record : expected) {
+      assertTrue(records.hasNext());
+      check(record, records.next());
+    }
+    assertFalse(records.hasNext());
+  }
+
+  private static void check(Expected expected, DataLogRecord record) {
+    assertEquals(expected.timestamp, record.getTimestamp());
+    if (expected.startName != null) {
+      assertTrue(record.isStart());
+      DataLogRecord.StartRecordData start = record.getStartData();
+      assertEquals(expected.entry, start.entry);
+      assertEquals(expected.startName, start.name);
+      assertEquals(expected.value.getWPILOGType(), start.type);
+      assertEquals(WPILOGEncoder.advantageKitMetadata, start.metadata);
+      return;
+    }
+
+    assertEquals(expected.entry, record.getEntry());
+    LogValue value = expected.value;
+    switch (value.type) {
+      case Raw:
+        assertArrayEquals(value.getRaw(), record.getRaw());
+        break;
+      case Boolean:
+        assertEquals(value.getBoolean(), record.getBoolean());
+        break;
+      case Integer:
+        assertEquals(value.getInteger(), record.getInteger());
+        break;
+      case Float:
+        assertEquals(value.getFloat(), record.getFloat());
+        break;
+      case Double:
+        assertEquals(value.getDouble(), record.getDouble());
+        break;
+      case String:
+        assertEquals(value.getString(), record.getString());
+        break;
+      case BooleanArray:
+        assertArrayEquals(value.getBooleanArray(), record.getBooleanArray());
+        break;
+      case IntegerArray:
+        assertArrayEquals(value.getIntegerArray(), record.getIntegerArray());
+        break;
+      case FloatArray:
+        assertArrayEquals(value.getFloatArray(), record.getFloatArray());
+        break;
+      case DoubleArray:
+        assertArrayEquals(value.getDoubleArray(), record.getDoubleArray());
+        break;
+      case StringArray:
+        assertArrayEquals(value.getStringArray(), record.getStringArray());
+        break;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package frc.robot.tools;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts WPILOG files to the columnar format read by {@link ColumnarLog}, so later analysis only
+ * reads the keys it needs instead of parsing the whole log again.
+ *
+ * <p>Each log is read once, and every key of a type {@link LogSeries} can decode becomes a column.
+ * Strings and raw values are left out. An array whose length varies is padded with NaN to its
+ * longest sample, and gets a second column under its key plus {@code "/length"} with the length of
+ * each row.
+ *
+ * <p>Usage: {@code ColumnarExport <log.wpilog or directory> [output.wpicol]}. For a directory,
+ * every log in it is converted next to the original.
+ */
+public final class ColumnarExport {
+  public static final String lengthSuffix = "/length";
+
+  private ColumnarExport() {}
+
+  public static void main(String... args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage: ColumnarExport <log.wpilog or directory> [output.wpicol]");
+      System.exit(1);
+    }
+    Path input = Path.of(args[0]);
+    if (Files.isDirectory(input)) {
+      List<Path> logs;
+      try (Stream<Path> files = Files.list(input)) {
+        logs =
+            files
+                .filter((file) -> file.getFileName().toString().endsWith(".wpilog"))
+                .sorted()
+                .collect(Collectors.toList());
+      }
+      for (Path log : logs) {
+        export(log, defaultOutput(log));
+      }
+    } else {
+      export(input, args.length == 2 ? Path.of(args[1]) : defaultOutput(input));
+    }
+  }
+
+  private static Path defaultOutput(Path log) {
+    String name = log.getFileName().toString().replaceAll("\\.wpilog$", "");
+    return log.resolveSibling(name + ColumnarLog.extension);
+  }
+
+  /** Converts one log. */
+  public static void export(Path log, Path output) throws IOException {
+    long start = System.nanoTime();
+    Map<String, LogSeries> columns = new TreeMap<>(LogSeries.readAll(log));
+    for (Map.Entry<String, LogSeries> column : List.copyOf(columns.entrySet())) {
+      if (column.getValue().isRagged()) {
+        columns.put(column.getKey() + lengthSuffix, column.getValue().lengths());
+      }
+    }
+
+    // Size the directory first, so every column's data offset is known before writing
+    long size = ColumnarLog.directoryOffset;
+    for (Map.Entry<String, LogSeries> column : columns.entrySet()) {
+      size += 4 + column.getKey().getBytes(StandardCharsets.UTF_8).length;
+      size += 4 + column.getValue().type().getBytes(StandardCharsets.UTF_8).length;
+      size += 16 + 16 * column.getValue().width();
+    }
+    long dataOffset = (size + 7) & ~7;
+    size = dataOffset;
+    for (LogSeries series : columns.values()) {
+      size += 8L * series.size() * (series.width() + 1);
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Log is too large to convert: " + log);
+    }
+
+    Files.deleteIfExists(output);
+    MappedByteBuffer buffer;
+    try (RandomAccessFile raf = new RandomAccessFile(output.toFile(), "rw")) {
+      raf.setLength(size);
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put(ColumnarLog.magic);
+    buffer.putInt(columns.size());
+    buffer.putInt(0);
+
+    long offset = dataOffset;
+    for (Map.Entry<String, LogSeries> column : columns.entrySet()) {
+      LogSeries series = column.getValue();
+      putString(buffer, column.getKey());
+      putString(buffer, series.type());
+      buffer.putInt(series.width());
+      buffer.putInt(series.size());
+      buffer.putLong(offset);
+      writeSummary(buffer, series);
+      writeData(buffer, (int) offset, series);
+      offset += 8L * series.size() * (series.width() + 1);
+    }
+    buffer.force();
+
+    System.out.printf(
+        "%s: %d columns, %d KB, %.0f ms%n",
+        output.getFileName(), columns.size(), size / 1024, (System.nanoTime() - start) / 1e6);
+  }
+
+  private static void putString(MappedByteBuffer buffer, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+  /** Writes the min of every component, then the max of every component, ignoring NaN. */
+  private static void writeSummary(MappedByteBuffer buffer, LogSeries series) {
+    int width = series.width();
+    double[] min = new double[width];
+    double[] max = new double[width];
+    for (int component = 0; component < width; component++) {
+      min[component] = Double.POSITIVE_INFINITY;
+      max[component] = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < series.size(); i++) {
+        double value = series.value(i, component);
+        if (Double.isNaN(value)) {
+          continue;
+        }
+        min[component] = Math.min(min[component], value);
+        max[component] = Math.max(max[component], value);
+      }
+    }
+    for (double value : min) {
+      buffer.putDouble(value);
+    }
+    for (double value : max) {
+      buffer.putDouble(value);
+    }
+  }
+
+  /** Writes the timestamps, then each component as a contiguous array. */
+  private static void writeData(MappedByteBuffer buffer, int offset, LogSeries series) {
+    int rows = series.size();
+    for (int i = 0; i < rows; i++) {
+      buffer.putLong(offset + 8 * i, series.timestamp(i));
+    }
+    for (int component = 0; component < series.width(); component++) {
+      int componentOffset = offset + 8 * rows * (component + 1);
+      for (int i = 0; i < rows; i++) {
+        buffer.putDouble(componentOffset + 8 * i, series.value(i, component));
+      }
+    }
+  }
+}
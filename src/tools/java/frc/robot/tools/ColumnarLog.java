@@ -0,0 +1,218 @@
+package frc.robot.tools;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads a columnar log written by {@link ColumnarExport}.
+ *
+ * <p>The file is memory-mapped and only the directory is read up front, so a query only touches the
+ * pages of the columns it uses. Each column holds one WPILOG key: its sorted timestamps, which
+ * double as the index for time lookups, then each component of the value as its own contiguous
+ * array. The directory also has every component's min and max, so a column can be ruled out
+ * without reading it.
+ *
+ * <p>Layout: magic (8 bytes), column count (int32), padding (int32), then for each column its key
+ * and type as length-prefixed UTF-8 strings, width (int32), row count (int32), data offset (int64),
+ * then the min and max of each component (float64). Data starts 8-aligned, and each column's data
+ * is its timestamps (int64) followed by each component's values (float64), all little-endian. A
+ * variable length array is padded with NaN and its row lengths are in the column under its key plus
+ * {@link ColumnarExport#lengthSuffix}.
+ *
+ * <p>Usage: {@code ColumnarLog <log.wpicol>} prints a summary of every column.
+ */
+public final class ColumnarLog {
+  public static final byte[] magic = "WPICOL01".getBytes(StandardCharsets.US_ASCII);
+  public static final int columnCountOffset = 8;
+  public static final int directoryOffset = 16;
+  public static final String extension = ".wpicol";
+
+  /** One key of the log. */
+  public static final class Column {
+    private final MappedByteBuffer buffer;
+    private final String key;
+    private final String type;
+    private final int width;
+    private final int rows;
+    private final int dataOffset;
+    private final double[] min;
+    private final double[] max;
+
+    private Column(
+        MappedByteBuffer buffer,
+        String key,
+        String type,
+        int width,
+        int rows,
+        int dataOffset,
+        double[] min,
+        double[] max) {
+      this.buffer = buffer;
+      this.key = key;
+      this.type = type;
+      this.width = width;
+      this.rows = rows;
+      this.dataOffset = dataOffset;
+      this.min = min;
+      this.max = max;
+    }
+
+    /** Returns the WPILOG key. */
+    public String key() {
+      return key;
+    }
+
+    /** Returns the WPILOG type. */
+    public String type() {
+      return type;
+    }
+
+    /** Returns the number of values in each row. */
+    public int width() {
+      return width;
+    }
+
+    /** Returns the number of rows. */
+    public int rows() {
+      return rows;
+    }
+
+    /** Returns the smallest value of a component. */
+    public double min(int component) {
+      return min[component];
+    }
+
+    /** Returns the largest value of a component. */
+    public double max(int component) {
+      return max[component];
+    }
+
+    /** Returns the timestamp of a row in microseconds. */
+    public long timestamp(int row) {
+      return buffer.getLong(dataOffset + 8 * row);
+    }
+
+    /** Returns one value of a row. */
+    public double value(int row, int component) {
+      return buffer.getDouble(componentOffset(component) + 8 * row);
+    }
+
+    /** Returns a read-only view of every timestamp, for bulk reads. */
+    public LongBuffer timestamps() {
+      return buffer
+          .slice(dataOffset, 8 * rows)
+          .order(ByteOrder.LITTLE_ENDIAN)
+          .asLongBuffer()
+          .asReadOnlyBuffer();
+    }
+
+    /** Returns a read-only view of every value of a component, for bulk reads. */
+    public DoubleBuffer values(int component) {
+      return buffer
+          .slice(componentOffset(component), 8 * rows)
+          .order(ByteOrder.LITTLE_ENDIAN)
+          .asDoubleBuffer()
+          .asReadOnlyBuffer();
+    }
+
+    /** Returns the index of the latest row at or before the timestamp, or -1 if there is none. */
+    public int indexAt(long timestamp) {
+      // Find the first row after the timestamp, so the last of several equal timestamps is used
+      int low = 0;
+      int high = rows;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (timestamp(middle) <= timestamp) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low - 1;
+    }
+
+    private int componentOffset(int component) {
+      return dataOffset + 8 * rows * (component + 1);
+    }
+  }
+
+  private final Map<String, Column> columns;
+
+  /** Maps the file and reads its directory. */
+  public ColumnarLog(Path file) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    byte[] fileMagic = new byte[magic.length];
+    buffer.get(0, fileMagic);
+    if (!Arrays.equals(fileMagic, magic)) {
+      throw new IOException("Not a columnar log: " + file);
+    }
+
+    int columnCount = buffer.getInt(columnCountOffset);
+    Map<String, Column> columns = new LinkedHashMap<>();
+    buffer.position(directoryOffset);
+    for (int i = 0; i < columnCount; i++) {
+      String key = readString(buffer);
+      String type = readString(buffer);
+      int width = buffer.getInt();
+      int rows = buffer.getInt();
+      int dataOffset = (int) buffer.getLong();
+      double[] min = new double[width];
+      double[] max = new double[width];
+      buffer.asDoubleBuffer().get(min).get(max);
+      buffer.position(buffer.position() + 16 * width);
+      columns.put(key, new Column(buffer, key, type, width, rows, dataOffset, min, max));
+    }
+    this.columns = Collections.unmodifiableMap(columns);
+  }
+
+  private static String readString(MappedByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Returns every column, sorted by key. */
+  public Map<String, Column> getColumns() {
+    return columns;
+  }
+
+  /** Returns a column, or null if the key is not in the log. */
+  public Column getColumn(String key) {
+    return columns.get(key);
+  }
+
+  public static void main(String... args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: ColumnarLog <log.wpicol>");
+      System.exit(1);
+    }
+    for (Column column : new ColumnarLog(Path.of(args[0])).getColumns().values()) {
+      System.out.printf(
+          "%s (%s) %d rows, %.3f to %.3f s%n",
+          column.key(),
+          column.type(),
+          column.rows(),
+          column.timestamp(0) / 1e6,
+          column.timestamp(column.rows() - 1) / 1e6);
+      for (int i = 0; i < column.width(); i++) {
+        System.out.printf("  [%d] min %g, max %g%n", i, column.min(i), column.max(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,244 @@
+package frc.robot.tools;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Timestamped samples of a single WPILOG entry, decoded into primitive arrays.
+ *
+ * <p>AdvantageKit only writes a value when it changes, so lookups between samples hold the previous
+ * value ({@link #indexAt(long)}). Arrays may change length from sample to sample, so the values of
+ * every sample are stored back to back with the offset where each one starts.
+ */
+public final class LogSeries {
+  /** Struct types whose members are all doubles, so they decode to one value per member. */
+  private static final Set<String> doubleStructs =
+      Set.of(
+          "Rotation2d",
+          "Translation2d",
+          "Pose2d",
+          "Transform2d",
+          "Twist2d",
+          "Quaternion",
+          "Rotation3d",
+          "Translation3d",
+          "Pose3d",
+          "Transform3d",
+          "Twist3d",
+          "ChassisSpeeds",
+          "SwerveModuleState",
+          "SwerveModulePosition");
+
+  private long[] timestamps = new long[256];
+  // Sample i is the values from offsets[i] up to offsets[i + 1]
+  private int[] offsets = new int[timestamps.length + 1];
+  private double[] values = new double[256];
+  private final String type;
+  private int width = 0;
+  private boolean isRagged = false;
+  private int size = 0;
+
+  LogSeries(String type) {
+    this.type = type;
+  }
+
+  /**
+   * Reads the requested keys from a log in a single pass. Numeric and boolean scalars and arrays,
+   * and geometry and kinematics structs (and arrays of them) are supported. Keys that are missing
+   * from the log are omitted from the result.
+   */
+  public static Map<String, LogSeries> read(Path log, Set<String> keys) throws IOException {
+    return read(log, keys::contains);
+  }
+
+  /** Reads every key of a supported type from a log in a single pass. */
+  public static Map<String, LogSeries> readAll(Path log) throws IOException {
+    Map<String, LogSeries> result = read(log, (key) -> true);
+    result.values().removeIf((series) -> series.size == 0);
+    return result;
+  }
+
+  private static Map<String, LogSeries> read(Path log, Predicate<String> keys) throws IOException {
+    DataLogReader reader = new DataLogReader(log.toString());
+    if (!reader.isValid()) {
+      throw new IOException("Not a valid WPILOG file: " + log);
+    }
+
+    Map<Integer, String> entryKeys = new HashMap<>();
+    Map<Integer, String> entryTypes = new HashMap<>();
+    Map<String, LogSeries> result = new HashMap<>();
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        var start = record.getStartData();
+        if (keys.test(start.name)) {
+          entryKeys.put(start.entry, start.name);
+          entryTypes.put(start.entry, start.type);
+        }
+        continue;
+      }
+      if (record.isControl()) {
+        continue;
+      }
+      String key = entryKeys.get(record.getEntry());
+      if (key == null) {
+        continue;
+      }
+      String type = entryTypes.get(record.getEntry());
+      double[] sample = decode(record, type);
+      if (sample == null) {
+        continue;
+      }
+      result
+          .computeIfAbsent(key, (k) -> new LogSeries(type))
+          .add(record.getTimestamp(), sample);
+    }
+    return result;
+  }
+
+  private static double[] decode(DataLogRecord record, String type) {
+    switch (type) {
+      case "double":
+        return new double[] {record.getDouble()};
+      case "float":
+        return new double[] {record.getFloat()};
+      case "int64":
+        return new double[] {record.getInteger()};
+      case "boolean":
+        return new double[] {record.getBoolean() ? 1.0 : 0.0};
+      case "double[]":
+        return record.getDoubleArray();
+      case "float[]":
+        float[] floats = record.getFloatArray();
+        double[] fromFloats = new double[floats.length];
+        for (int i = 0; i < floats.length; i++) {
+          fromFloats[i] = floats[i];
+        }
+        return fromFloats;
+      case "int64[]":
+        return Arrays.stream(record.getIntegerArray()).asDoubleStream().toArray();
+      case "boolean[]":
+        boolean[] booleans = record.getBooleanArray();
+        double[] fromBooleans = new double[booleans.length];
+        for (int i = 0; i < booleans.length; i++) {
+          fromBooleans[i] = booleans[i] ? 1.0 : 0.0;
+        }
+        return fromBooleans;
+      default:
+        if (isDoubleStruct(type)) {
+          ByteBuffer buffer = ByteBuffer.wrap(record.getRaw()).order(ByteOrder.LITTLE_ENDIAN);
+          double[] members = new double[buffer.remaining() / 8];
+          buffer.asDoubleBuffer().get(members);
+          return members;
+        }
+        return null;
+    }
+  }
+
+  private static boolean isDoubleStruct(String type) {
+    if (!type.startsWith("struct:")) {
+      return false;
+    }
+    String name = type.substring("struct:".length());
+    if (name.endsWith("[]")) {
+      name = name.substring(0, name.length() - 2);
+    }
+    return doubleStructs.contains(name);
+  }
+
+  private void add(long timestamp, double[] sample) {
+    if (size == timestamps.length) {
+      timestamps = Arrays.copyOf(timestamps, size * 2);
+      offsets = Arrays.copyOf(offsets, size * 2 + 1);
+    }
+    int offset = offsets[size];
+    if (offset + sample.length > values.length) {
+      values = Arrays.copyOf(values, Math.max(values.length * 2, offset + sample.length));
+    }
+    if (size > 0 && sample.length != length(0)) {
+      isRagged = true;
+    }
+    timestamps[size] = timestamp;
+    System.arraycopy(sample, 0, values, offset, sample.length);
+    offsets[size + 1] = offset + sample.length;
+    width = Math.max(width, sample.length);
+    size++;
+  }
+
+  /** Returns the number of samples. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the WPILOG type of the entry. */
+  public String type() {
+    return type;
+  }
+
+  /** Returns the number of values in the longest sample. */
+  public int width() {
+    return width;
+  }
+
+  /** Returns whether the samples differ in length, as variable length arrays can. */
+  public boolean isRagged() {
+    return isRagged;
+  }
+
+  /** Returns the number of values in a sample. */
+  public int length(int index) {
+    return offsets[index + 1] - offsets[index];
+  }
+
+  /** Returns the timestamp of a sample in microseconds. */
+  public long timestamp(int index) {
+    return timestamps[index];
+  }
+
+  /** Returns one value of a sample, or NaN if the sample is too short to have it. */
+  public double value(int index, int component) {
+    return component < length(index) ? values[offsets[index] + component] : Double.NaN;
+  }
+
+  /** Returns the index of the latest sample at or before the timestamp, or -1 if there is none. */
+  public int indexAt(long timestamp) {
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    if (index < 0) {
+      index = -index - 2;
+    } else {
+      // Several values may share a timestamp, use the last one
+      while (index + 1 < size && timestamps[index + 1] == timestamp) {
+        index++;
+      }
+    }
+    return index;
+  }
+
+  /** Returns a copy of the first component of every sample. */
+  public double[] firstComponents() {
+    double[] result = new double[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = value(i, 0);
+    }
+    return result;
+  }
+
+  /** Returns the length of every sample as its own single value series. */
+  public LogSeries lengths() {
+    LogSeries result = new LogSeries("int64");
+    double[] sample = new double[1];
+    for (int i = 0; i < size; i++) {
+      sample[0] = length(i);
+      result.add(timestamps[i], sample);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,136 @@
+package frc.robot.tools;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import frc.robot.util.log.WPILOGEncoder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges binary odometry sample logs into a copy of the main WPILOG, so the full-rate samples can
+ * be viewed alongside everything else in AdvantageScope.
+ *
+ * <p>Every record of the main log is copied unchanged. Each sample signal becomes a double entry
+ * under "/OdometrySamples/", interleaved by timestamp. Both logs use the FPGA clock, so no
+ * alignment is needed.
+ *
+ * <p>Usage: {@code MergeOdometryLog <main.wpilog> <output.wpilog> <samples.odolog>...}
+ */
+public final class MergeOdometryLog {
+  private static final String keyPrefix = "/OdometrySamples/";
+  private static final int flushBytes = 1 << 20;
+
+  private final WPILOGEncoder encoder = new WPILOGEncoder(2 * flushBytes);
+  private final List<OdometrySampleReader> samples = new ArrayList<>();
+  private final List<int[]> sampleEntries = new ArrayList<>();
+  private final int[] nextSample;
+  private FileChannel output;
+
+  private MergeOdometryLog(List<OdometrySampleReader> samples) {
+    this.samples.addAll(samples);
+    nextSample = new int[samples.size()];
+  }
+
+  public static void main(String... args) throws IOException {
+    if (args.length < 3) {
+      System.err.println(
+          "Usage: MergeOdometryLog <main.wpilog> <output.wpilog> <samples.odolog>...");
+      System.exit(1);
+    }
+    List<OdometrySampleReader> samples = new ArrayList<>();
+    for (int i = 2; i < args.length; i++) {
+      samples.add(new OdometrySampleReader(Path.of(args[i])));
+    }
+    new MergeOdometryLog(samples).merge(Path.of(args[0]), Path.of(args[1]));
+  }
+
+  private void merge(Path mainLog, Path outputLog) throws IOException {
+    DataLogReader reader = new DataLogReader(mainLog.toString());
+    if (!reader.isValid()) {
+      throw new IOException("Not a valid WPILOG file: " + mainLog);
+    }
+
+    // First pass, find the entry ids already in use
+    int maxEntry = 0;
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        maxEntry = Math.max(maxEntry, record.getStartData().entry);
+      }
+    }
+
+    output =
+        FileChannel.open(
+            outputLog,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+    encoder.writeHeader(reader.getExtraHeader());
+
+    int nextEntry = maxEntry + 1;
+    long sampleCount = 0;
+    for (OdometrySampleReader sample : samples) {
+      List<String> names = sample.getSignalNames();
+      int[] entries = new int[names.size()];
+      for (int i = 0; i < names.size(); i++) {
+        entries[i] = nextEntry++;
+        encoder.writeStart(
+            entries[i], keyPrefix + names.get(i), "double", WPILOGEncoder.advantageKitMetadata, 0);
+      }
+      sampleEntries.add(entries);
+      sampleCount += sample.size();
+    }
+
+    // Second pass, copy every record and interleave the samples by timestamp
+    for (DataLogRecord record : reader) {
+      writeSamplesUntil(record.getTimestamp());
+      encoder.writeRaw(record.getEntry(), record.getTimestamp(), record.getRaw());
+      flushIfFull();
+    }
+    writeSamplesUntil(Long.MAX_VALUE);
+    flush();
+    output.close();
+
+    System.out.printf(
+        "Merged %d odometry samples from %d file(s) into %s%n",
+        sampleCount, samples.size(), outputLog);
+  }
+
+  /** Writes every sample with a timestamp at or before the given time in microseconds. */
+  private void writeSamplesUntil(long timestamp) throws IOException {
+    for (int s = 0; s < samples.size(); s++) {
+      OdometrySampleReader sample = samples.get(s);
+      int[] entries = sampleEntries.get(s);
+      while (nextSample[s] < sample.size()) {
+        int index = nextSample[s];
+        long sampleTimestamp = Math.round(sample.timestamp(index) * 1e6);
+        if (sampleTimestamp > timestamp) {
+          break;
+        }
+        for (int i = 0; i < entries.length; i++) {
+          encoder.writeDouble(entries[i], sampleTimestamp, sample.value(index, i));
+        }
+        nextSample[s]++;
+        flushIfFull();
+      }
+    }
+  }
+
+  private void flushIfFull() throws IOException {
+    if (encoder.size() >= flushBytes) {
+      flush();
+    }
+  }
+
+  private void flush() throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap(encoder.getBuffer().array(), 0, encoder.size());
+    while (bytes.hasRemaining()) {
+      output.write(bytes);
+    }
+    encoder.clear();
+  }
+}
@@ -0,0 +1,73 @@
+package frc.robot.tools;
+
+import frc.robot.util.log.OdometrySampleLog;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Reads a binary odometry sample log written by {@link OdometrySampleLog}. */
+public final class OdometrySampleReader {
+  private final MappedByteBuffer buffer;
+  private final List<String> signalNames;
+  private final int dataOffset;
+  private final int recordSize;
+  private final int size;
+
+  /** Maps the file and reads its header. */
+  public OdometrySampleReader(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    byte[] magic = new byte[OdometrySampleLog.magic.length];
+    buffer.get(0, magic);
+    if (!Arrays.equals(magic, OdometrySampleLog.magic)) {
+      throw new IOException("Not an odometry sample log: " + file);
+    }
+    long recordCount = buffer.getLong(OdometrySampleLog.recordCountOffset);
+    int signalCount = buffer.getInt(OdometrySampleLog.signalCountOffset);
+    dataOffset = buffer.getInt(OdometrySampleLog.dataOffsetOffset);
+    recordSize = 8 * (signalCount + 1);
+
+    signalNames = new ArrayList<>(signalCount);
+    int position = OdometrySampleLog.namesOffset;
+    for (int i = 0; i < signalCount; i++) {
+      byte[] name = new byte[buffer.getInt(position)];
+      buffer.get(position + 4, name);
+      signalNames.add(new String(name, StandardCharsets.UTF_8));
+      position += 4 + name.length;
+    }
+
+    // The count may lag the last record if the robot lost power mid-write
+    long available = (buffer.capacity() - dataOffset) / recordSize;
+    size = (int) Math.min(recordCount, available);
+  }
+
+  /** Returns the signal names, in column order. */
+  public List<String> getSignalNames() {
+    return signalNames;
+  }
+
+  /** Returns the number of samples. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the timestamp of a sample in seconds. */
+  public double timestamp(int index) {
+    return buffer.getDouble(dataOffset + index * recordSize);
+  }
+
+  /** Returns one signal's value in a sample. */
+  public double value(int index, int signal) {
+    return buffer.getDouble(dataOffset + index * recordSize + 8 * (signal + 1));
+  }
+}
@@ -0,0 +1,264 @@
+package frc.robot.tools;
+
+import frc.robot.Constants;
+import frc.robot.Main;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replays every log in a directory, each in its own JVM, and summarizes how far the replayed robot
+ * code diverged from the original.
+ *
+ * <p>Each child process runs the normal robot program in replay mode (selected by {@link
+ * Constants#replayLogEnvironmentVariable}), so it writes the usual "_sim" log next to the input.
+ * Once a replay finishes, the original and replayed pose and loop time outputs are compared and a
+ * line is added to "replay-summary.csv" in the log directory.
+ *
+ * <p>Usage: {@code ReplayBatch <log directory> [parallelism]}
+ */
+public final class ReplayBatch {
+  private static final String SIM_SUFFIX = "_sim";
+  private static final String REAL_POSE_KEY = "/RealOutputs/Odometry/Robot";
+  private static final String REPLAY_POSE_KEY = "/ReplayOutputs/Odometry/Robot";
+  private static final String REAL_LOOP_KEY = "/RealOutputs/LoggedRobot/UserCodeMS";
+  private static final String REPLAY_LOOP_KEY = "/ReplayOutputs/LoggedRobot/UserCodeMS";
+  private static final String CYCLE_KEY = "/Timestamp";
+
+  private ReplayBatch() {}
+
+  /** Result of replaying a single log. */
+  private record Summary(
+      String log,
+      int exitCode,
+      double wallSeconds,
+      int cycles,
+      double maxTranslationErrorMeters,
+      double rmsTranslationErrorMeters,
+      double maxRotationErrorRad,
+      LoopStats realLoop,
+      LoopStats replayLoop) {}
+
+  /** Loop time statistics in milliseconds. */
+  private record LoopStats(double mean, double p50, double p99, double max) {
+    static final LoopStats EMPTY = new LoopStats(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+    static LoopStats of(LogSeries series) {
+      if (series == null || series.size() == 0) {
+        return EMPTY;
+      }
+      double[] values = series.firstComponents();
+      Arrays.sort(values);
+      return new LoopStats(
+          Arrays.stream(values).average().orElse(Double.NaN),
+          percentile(values, 0.5),
+          percentile(values, 0.99),
+          values[values.length - 1]);
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+      return sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))];
+    }
+  }
+
+  public static void main(String... args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: ReplayBatch <log directory> [parallelism]");
+      System.exit(1);
+    }
+    Path logDirectory = Paths.get(args[0]).toAbsolutePath();
+    int parallelism =
+        args.length > 1
+            ? Integer.parseInt(args[1])
+            : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    List<Path> logs;
+    try (Stream<Path> files = Files.list(logDirectory)) {
+      logs =
+          files
+              .filter((path) -> path.toString().endsWith(".wpilog"))
+              .filter((path) -> !path.getFileName().toString().contains(SIM_SUFFIX))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    if (logs.isEmpty()) {
+      System.err.println("No logs found in " + logDirectory);
+      System.exit(1);
+    }
+    System.out.println(
+        "Replaying " + logs.size() + " logs with " + parallelism + " parallel processes");
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    List<Future<Summary>> futures = new ArrayList<>();
+    for (Path log : logs) {
+      futures.add(executor.submit(() -> replay(log)));
+    }
+    List<Summary> summaries = new ArrayList<>();
+    for (Future<Summary> future : futures) {
+      Summary summary = future.get();
+      summaries.add(summary);
+      print(summary);
+    }
+    executor.shutdown();
+
+    Path summaryFile = logDirectory.resolve("replay-summary.csv");
+    write(summaryFile, summaries);
+    System.out.println("Summary written to " + summaryFile);
+
+    boolean failed = summaries.stream().anyMatch((summary) -> summary.exitCode() != 0);
+    System.exit(failed ? 1 : 0);
+  }
+
+  /** Replays a single log in a child JVM and compares the outputs. */
+  private static Summary replay(Path log) throws IOException, InterruptedException {
+    Path replayLog = simPath(log);
+    Files.deleteIfExists(replayLog);
+    Path console = Paths.get(replayLog.toString().replace(".wpilog", ".txt"));
+
+    ProcessBuilder builder =
+        new ProcessBuilder(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-Djava.library.path=" + System.getProperty("java.library.path"),
+            "-cp",
+            System.getProperty("java.class.path"),
+            Main.class.getName());
+    builder.environment().put(Constants.replayLogEnvironmentVariable, log.toString());
+    builder.redirectErrorStream(true);
+    builder.redirectOutput(console.toFile());
+
+    long start = System.nanoTime();
+    int exitCode = builder.start().waitFor();
+    double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+    if (exitCode != 0 || !Files.exists(replayLog)) {
+      return new Summary(
+          log.getFileName().toString(),
+          exitCode != 0 ? exitCode : -1,
+          wallSeconds,
+          0,
+          Double.NaN,
+          Double.NaN,
+          Double.NaN,
+          LoopStats.EMPTY,
+          LoopStats.EMPTY);
+    }
+    return compare(log, replayLog, exitCode, wallSeconds);
+  }
+
+  /** Compares the original and replayed outputs at every replayed cycle. */
+  private static Summary compare(Path log, Path replayLog, int exitCode, double wallSeconds)
+      throws IOException {
+    Map<String, LogSeries> real = LogSeries.read(log, Set.of(REAL_POSE_KEY, REAL_LOOP_KEY));
+    Map<String, LogSeries> replayed =
+        LogSeries.read(replayLog, Set.of(REPLAY_POSE_KEY, REPLAY_LOOP_KEY, CYCLE_KEY));
+
+    LogSeries realPose = real.get(REAL_POSE_KEY);
+    LogSeries replayPose = replayed.get(REPLAY_POSE_KEY);
+    LogSeries cycles = replayed.get(CYCLE_KEY);
+
+    int compared = 0;
+    double maxTranslationError = 0.0;
+    double sumSquaredTranslationError = 0.0;
+    double maxRotationError = 0.0;
+    if (realPose != null && replayPose != null && cycles != null) {
+      for (int cycle = 0; cycle < cycles.size(); cycle++) {
+        long timestamp = cycles.timestamp(cycle);
+        int realIndex = realPose.indexAt(timestamp);
+        int replayIndex = replayPose.indexAt(timestamp);
+        if (realIndex < 0 || replayIndex < 0) {
+          continue;
+        }
+        double translationError =
+            Math.hypot(
+                realPose.value(realIndex, 0) - replayPose.value(replayIndex, 0),
+                realPose.value(realIndex, 1) - replayPose.value(replayIndex, 1));
+        double rotationError =
+            Math.abs(
+                Math.IEEEremainder(
+                    realPose.value(realIndex, 2) - replayPose.value(replayIndex, 2), 2 * Math.PI));
+        maxTranslationError = Math.max(maxTranslationError, translationError);
+        maxRotationError = Math.max(maxRotationError, rotationError);
+        sumSquaredTranslationError += translationError * translationError;
+        compared++;
+      }
+    }
+
+    return new Summary(
+        log.getFileName().toString(),
+        exitCode,
+        wallSeconds,
+        compared,
+        compared > 0 ? maxTranslationError : Double.NaN,
+        compared > 0 ? Math.sqrt(sumSquaredTranslationError / compared) : Double.NaN,
+        compared > 0 ? maxRotationError : Double.NaN,
+        LoopStats.of(real.get(REAL_LOOP_KEY)),
+        LoopStats.of(replayed.get(REPLAY_LOOP_KEY)));
+  }
+
+  private static Path simPath(Path log) {
+    String name = log.getFileName().toString();
+    return log.resolveSibling(name.substring(0, name.lastIndexOf('.')) + SIM_SUFFIX + ".wpilog");
+  }
+
+  private static void print(Summary summary) {
+    System.out.println(
+        String.format(
+            Locale.ROOT,
+            "%s: exit %d in %.1fs, %d cycles, pose error max %.4f m / rms %.4f m / %.4f rad,"
+                + " loop mean %.2f ms (real) vs %.2f ms (replay), p99 %.2f vs %.2f ms",
+            summary.log(),
+            summary.exitCode(),
+            summary.wallSeconds(),
+            summary.cycles(),
+            summary.maxTranslationErrorMeters(),
+            summary.rmsTranslationErrorMeters(),
+            summary.maxRotationErrorRad(),
+            summary.realLoop().mean(),
+            summary.replayLoop().mean(),
+            summary.realLoop().p99(),
+            summary.replayLoop().p99()));
+  }
+
+  private static void write(Path file, List<Summary> summaries) throws IOException {
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+      writer.println(
+          "log,exitCode,wallSeconds,cycles,maxTranslationErrorMeters,rmsTranslationErrorMeters,"
+              + "maxRotationErrorRad,realLoopMeanMS,realLoopP50MS,realLoopP99MS,realLoopMaxMS,"
+              + "replayLoopMeanMS,replayLoopP50MS,replayLoopP99MS,replayLoopMaxMS");
+      for (Summary summary : summaries) {
+        writer.println(
+            String.format(
+                Locale.ROOT,
+                "%s,%d,%.3f,%d,%.6f,%.6f,%.6f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                summary.log(),
+                summary.exitCode(),
+                summary.wallSeconds(),
+                summary.cycles(),
+                summary.maxTranslationErrorMeters(),
+                summary.rmsTranslationErrorMeters(),
+                summary.maxRotationErrorRad(),
+                summary.realLoop().mean(),
+                summary.realLoop().p50(),
+                summary.realLoop().p99(),
+                summary.realLoop().max(),
+                summary.replayLoop().mean(),
+                summary.replayLoop().p50(),
+                summary.replayLoop().p99(),
+                summary.replayLoop().max()));
+      }
+    }
+  }
+}
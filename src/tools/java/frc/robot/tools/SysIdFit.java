@@ -0,0 +1,365 @@
+package frc.robot.tools;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import frc.robot.Constants.DriveConstants;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Fits feedforward gains to the SysId logs recorded by {@link frc.robot.subsystems.drive.Drive} and
+ * writes them to a generated constants file.
+ *
+ * <p>Each log is read once. The applied voltage and velocity of every drive and turn motor are
+ * sampled each cycle while "Drive/SysIdState" shows a test running, split into one segment per
+ * test. Acceleration is the central difference of velocity within a segment. Each motor is then
+ * fit separately, in parallel, by ordinary least squares to {@code V = kS * sgn(v) + kV * v + kA *
+ * a}. Motors the tests did not drive are left out.
+ *
+ * <p>Usage: {@code SysIdFit <output.java> <log.wpilog or directory>...}
+ */
+public final class SysIdFit {
+  private static final String stateKey = "/RealOutputs/Drive/SysIdState";
+  private static final String idleState = "none";
+  private static final String[] motors = {"Drive", "Turn"};
+  private static final int moduleCount = 4;
+  private static final double minVelocityRadPerSec = 0.1; // Ignore samples while stopped
+  private static final double minMeanVolts = 0.5; // Below this the motor was not under test
+  private static final long maxGapMicros = 100_000; // Start a new segment after a gap
+
+  /** Samples of one log, in columns of {@link #valueCount} values per cycle. */
+  private static final class Samples {
+    static final int valueCount = 2 * motors.length * moduleCount;
+
+    final String name;
+    double[] timestamps = new double[1024];
+    int[] segments = new int[1024];
+    double[] values = new double[1024 * valueCount];
+    int size = 0;
+
+    Samples(String name) {
+      this.name = name;
+    }
+
+    static int voltsColumn(int motor, int module) {
+      return 2 * (motor * moduleCount + module);
+    }
+
+    static int velocityColumn(int motor, int module) {
+      return voltsColumn(motor, module) + 1;
+    }
+
+    void add(double timestamp, int segment, double[] cycle) {
+      if (size == timestamps.length) {
+        timestamps = Arrays.copyOf(timestamps, size * 2);
+        segments = Arrays.copyOf(segments, size * 2);
+        values = Arrays.copyOf(values, size * 2 * valueCount);
+      }
+      timestamps[size] = timestamp;
+      segments[size] = segment;
+      System.arraycopy(cycle, 0, values, size * valueCount, valueCount);
+      size++;
+    }
+
+    double value(int index, int column) {
+      return values[index * valueCount + column];
+    }
+  }
+
+  /** Gains fit to one motor. */
+  private static final class Fit {
+    final double kS;
+    final double kV;
+    final double kA;
+    final double rSquared;
+    final int samples;
+
+    Fit(double kS, double kV, double kA, double rSquared, int samples) {
+      this.kS = kS;
+      this.kV = kV;
+      this.kA = kA;
+      this.rSquared = rSquared;
+      this.samples = samples;
+    }
+  }
+
+  private SysIdFit() {}
+
+  public static void main(String... args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: SysIdFit <output.java> <log.wpilog or directory>...");
+      System.exit(1);
+    }
+    List<Path> logs = new ArrayList<>();
+    for (int i = 1; i < args.length; i++) {
+      Path input = Path.of(args[i]);
+      if (Files.isDirectory(input)) {
+        try (Stream<Path> files = Files.list(input)) {
+          files
+              .filter((file) -> file.getFileName().toString().endsWith(".wpilog"))
+              .sorted()
+              .forEach(logs::add);
+        }
+      } else {
+        logs.add(input);
+      }
+    }
+
+    long start = System.nanoTime();
+    List<Samples> samples;
+    try {
+      samples = logs.parallelStream().map(SysIdFit::readSamples).collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    StringBuilder source = new StringBuilder();
+    source.append("// Generated by SysIdFit (./gradlew fitSysId). Do not edit.\n");
+    source.append("package frc.robot.generated;\n\n");
+    source.append("/** Feedforward gains fit to the SysId logs, in volts per radian of the");
+    source.append(" wheel or module. */\n");
+    source.append("public final class SysIdConstants {\n");
+    source.append("  private SysIdConstants() {}\n");
+    Set<String> testNames = new HashSet<>();
+    for (Samples log : samples) {
+      String testName = testName(log.name);
+      for (int i = 2; !testNames.add(testName); i++) {
+        testName = testName(log.name) + i;
+      }
+      appendLog(source, log, testName);
+    }
+    source.append("}\n");
+
+    Path output = Path.of(args[0]);
+    Files.createDirectories(output.toAbsolutePath().getParent());
+    Files.writeString(output, source);
+    System.out.printf(
+        "Wrote %s from %d logs in %.0f ms%n",
+        output, logs.size(), (System.nanoTime() - start) / 1e6);
+  }
+
+  /** Streams a log and samples every motor once per cycle while a test is running. */
+  private static Samples readSamples(Path log) {
+    DataLogReader reader;
+    try {
+      reader = new DataLogReader(log.toString());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (!reader.isValid()) {
+      throw new UncheckedIOException(new IOException("Not a valid WPILOG file: " + log));
+    }
+
+    Map<String, Integer> columnByKey = new HashMap<>();
+    for (int motor = 0; motor < motors.length; motor++) {
+      for (int module = 0; module < moduleCount; module++) {
+        String prefix = "/Drive/Module" + module + "/" + motors[motor];
+        columnByKey.put(prefix + "AppliedVolts", Samples.voltsColumn(motor, module));
+        columnByKey.put(prefix + "VelocityRadPerSec", Samples.velocityColumn(motor, module));
+      }
+    }
+
+    Samples samples = new Samples(log.getFileName().toString());
+    Map<Integer, Integer> columnByEntry = new HashMap<>();
+    int stateEntry = -1;
+    double[] cycle = new double[Samples.valueCount]; // AdvantageKit only logs changes, so hold
+    String state = idleState;
+    int segment = -1;
+    long cycleTimestamp = -1;
+    long lastSampleTimestamp = 0;
+    boolean newSegment = true;
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        var startData = record.getStartData();
+        if (startData.name.equals(stateKey)) {
+          stateEntry = startData.entry;
+        } else if (columnByKey.containsKey(startData.name) && startData.type.equals("double")) {
+          columnByEntry.put(startData.entry, columnByKey.get(startData.name));
+        }
+        continue;
+      }
+      if (record.isControl()) {
+        continue;
+      }
+
+      // Every record of a cycle shares its timestamp, so a new timestamp ends the last cycle
+      long timestamp = record.getTimestamp();
+      if (timestamp != cycleTimestamp) {
+        if (!state.equals(idleState) && cycleTimestamp >= 0) {
+          if (newSegment || cycleTimestamp - lastSampleTimestamp > maxGapMicros) {
+            segment++;
+            newSegment = false;
+          }
+          samples.add(cycleTimestamp / 1e6, segment, cycle);
+          lastSampleTimestamp = cycleTimestamp;
+        }
+        cycleTimestamp = timestamp;
+      }
+
+      if (record.getEntry() == stateEntry) {
+        String newState = record.getString();
+        if (!newState.equals(state)) {
+          state = newState;
+          newSegment = true; // Each test is its own segment
+        }
+      } else {
+        Integer column = columnByEntry.get(record.getEntry());
+        if (column != null) {
+          cycle[column] = record.getDouble();
+        }
+      }
+    }
+    return samples;
+  }
+
+  /** Fits every motor the log's tests drove and appends a nested class with the gains. */
+  private static void appendLog(StringBuilder source, Samples log, String testName) {
+    Fit[][] fits = new Fit[motors.length][moduleCount];
+    IntStream.range(0, motors.length * moduleCount)
+        .parallel()
+        .forEach(
+            (i) -> {
+              int motor = i / moduleCount;
+              int module = i % moduleCount;
+              fits[motor][module] = fit(log, motor, module);
+            });
+
+    source.append("\n  /** Fit to ").append(log.name).append(". */\n");
+    source.append("  public static final class ").append(testName).append(" {\n");
+    source.append("    private ").append(testName).append("() {}\n");
+    for (int motor = 0; motor < motors.length; motor++) {
+      if (Arrays.stream(fits[motor]).anyMatch((fit) -> fit == null)) {
+        System.out.printf("%s: %s motors not under test, skipped%n", log.name, motors[motor]);
+        continue;
+      }
+      String name = motors[motor];
+      source.append("\n");
+      appendGain(source, "kS" + name, fits[motor], (fit) -> fit.kS);
+      appendGain(source, "kV" + name, fits[motor], (fit) -> fit.kV);
+      appendGain(source, "kA" + name, fits[motor], (fit) -> fit.kA);
+      appendArray(source, "rSquared" + name, fits[motor], (fit) -> fit.rSquared);
+      if (motor == 0) {
+        // Comparable to DriveConstants.kALinear and kAAngular
+        double kA = Arrays.stream(fits[motor]).mapToDouble((fit) -> fit.kA).average().orElse(0);
+        source.append(
+            String.format(
+                Locale.ROOT,
+                "    public static final double kADrivePerMetersPerSecSquared = %.6g;%n",
+                kA / DriveConstants.wheelRadius));
+      }
+      for (int module = 0; module < moduleCount; module++) {
+        Fit fit = fits[motor][module];
+        System.out.printf(
+            Locale.ROOT,
+            "%s: %s %d, kS %.5f, kV %.5f, kA %.5f, R^2 %.4f, %d samples%n",
+            log.name,
+            name,
+            module,
+            fit.kS,
+            fit.kV,
+            fit.kA,
+            fit.rSquared,
+            fit.samples);
+      }
+    }
+    source.append("  }\n");
+  }
+
+  /** Appends the per-module values and their average. */
+  private static void appendGain(
+      StringBuilder source, String name, Fit[] fits, ToDoubleFunction<Fit> gain) {
+    appendArray(source, name, fits, gain);
+    source.append(
+        String.format(
+            Locale.ROOT,
+            "    public static final double %sAverage = %.6g;%n",
+            name,
+            Arrays.stream(fits).mapToDouble(gain).average().orElse(0)));
+  }
+
+  private static void appendArray(
+      StringBuilder source, String name, Fit[] fits, ToDoubleFunction<Fit> gain) {
+    source.append(
+        Arrays.stream(fits)
+            .map((fit) -> String.format(Locale.ROOT, "%.6g", gain.applyAsDouble(fit)))
+            .collect(
+                Collectors.joining(
+                    ", ", "    public static final double[] " + name + " = {", "};\n")));
+  }
+
+  /**
+   * Fits one motor by solving the normal equations, or returns null if the motor was not under
+   * test.
+   */
+  private static Fit fit(Samples log, int motor, int module) {
+    int voltsColumn = Samples.voltsColumn(motor, module);
+    int velocityColumn = Samples.velocityColumn(motor, module);
+    SimpleMatrix xtx = new SimpleMatrix(3, 3);
+    SimpleMatrix xty = new SimpleMatrix(3, 1);
+    double[] x = new double[3];
+    double sumVolts = 0;
+    double sumAbsVolts = 0;
+    double sumSquaredVolts = 0;
+    int count = 0;
+    for (int i = 1; i + 1 < log.size; i++) {
+      if (log.segments[i - 1] != log.segments[i] || log.segments[i + 1] != log.segments[i]) {
+        continue; // No central difference at the ends of a segment
+      }
+      double velocity = log.value(i, velocityColumn);
+      if (Math.abs(velocity) < minVelocityRadPerSec) {
+        continue;
+      }
+      double volts = log.value(i, voltsColumn);
+      x[0] = Math.signum(velocity);
+      x[1] = velocity;
+      x[2] =
+          (log.value(i + 1, velocityColumn) - log.value(i - 1, velocityColumn))
+              / (log.timestamps[i + 1] - log.timestamps[i - 1]);
+      for (int row = 0; row < 3; row++) {
+        for (int column = 0; column < 3; column++) {
+          xtx.set(row, column, xtx.get(row, column) + x[row] * x[column]);
+        }
+        xty.set(row, 0, xty.get(row, 0) + x[row] * volts);
+      }
+      sumVolts += volts;
+      sumAbsVolts += Math.abs(volts);
+      sumSquaredVolts += volts * volts;
+      count++;
+    }
+    if (count < 3 || sumAbsVolts / count < minMeanVolts) {
+      return null;
+    }
+
+    // R^2 from the normal equations: SSE = y'y - b'X'y
+    SimpleMatrix gains = xtx.solve(xty);
+    double sse = sumSquaredVolts - gains.dot(xty);
+    double sst = sumSquaredVolts - sumVolts * sumVolts / count;
+    return new Fit(gains.get(0), gains.get(1), gains.get(2), 1 - sse / sst, count);
+  }
+
+  /** Returns a class name for a log, from the last word of its file name (e.g. "turnsysid"). */
+  private static String testName(String fileName) {
+    String base = fileName.replaceAll("\\.wpilog$", "");
+    String word = base.substring(base.lastIndexOf('_') + 1).replaceAll("[^A-Za-z0-9]", "");
+    word = word.replaceAll("(?i)sysid$", "");
+    if (word.isEmpty() || !Character.isLetter(word.charAt(0))) {
+      word = "Log" + word;
+    }
+    return Character.toUpperCase(word.charAt(0)) + word.substring(1) + "SysId";
+  }
+}
@@ -0,0 +1,362 @@
+package frc.robot.tools;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import frc.robot.Constants.VelocityEstimationConstants;
+import frc.robot.subsystems.drive.VelocityEstimator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Measures how far the drive velocity estimates lag behind the wheels in real logs, comparing the
+ * motor controller's velocity with {@link VelocityEstimator} at several windows and orders.
+ *
+ * <p>The reference velocity is a line fit to the odometry samples centered on each sample, which
+ * has no lag under constant acceleration but could only be computed after the fact. Each estimate
+ * is taken as the robot code would see it, at the start of every cycle, so the age of the newest
+ * sample counts too. Its lag is the time shift of the reference that fits it best, and the RMS
+ * error left at that shift is its noise. Samples while a wheel is nearly stopped are left out.
+ *
+ * <p>Usage: {@code VelocityLagStudy <log.wpilog or directory>...}
+ */
+public final class VelocityLagStudy {
+  private static final int moduleCount = 4;
+  private static final int referenceHalfWindow = 6; // 13 samples, 48 ms at 250 Hz
+  private static final double maxReferenceSpanSecs = 0.06; // Skip the reference across gaps
+  private static final double maxSampleGapSecs = 0.1;
+  private static final double minVelocityRadPerSec = 0.5;
+  private static final int maxShiftMillis = 100;
+  private static final int[][] windowsAndOrders = {
+    {3, 1}, {4, 1}, {5, 1}, {6, 1}, {8, 1}, {10, 1}, {6, 2}, {8, 2}, {12, 2}, {16, 2}
+  };
+
+  /** A growable array of doubles. */
+  private static final class Doubles {
+    double[] values = new double[1024];
+    int size = 0;
+
+    void add(double value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    double get(int index) {
+      return values[index];
+    }
+  }
+
+  /** A growable array of ints. */
+  private static final class Ints {
+    int[] values = new int[1024];
+    int size = 0;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int get(int index) {
+      return values[index];
+    }
+  }
+
+  /** Everything read from one module of one log. */
+  private static final class ModuleData {
+    final Doubles sampleTimestamps = new Doubles();
+    final Doubles samplePositions = new Doubles();
+    final Doubles cycleTimestamps = new Doubles();
+    final Ints cycleSampleEnds = new Ints(); // Samples received by the end of each cycle
+    final Doubles measuredVelocities = new Doubles(); // Motor controller velocity each cycle
+    final Doubles referenceTimestamps = new Doubles();
+    final Doubles referenceVelocities = new Doubles();
+
+    /** Returns the reference velocity at a time, or NaN outside of it. */
+    double referenceAt(double timestamp) {
+      int index =
+          Arrays.binarySearch(
+              referenceTimestamps.values, 0, referenceTimestamps.size, timestamp);
+      if (index >= 0) {
+        return referenceVelocities.get(index);
+      }
+      int after = -index - 1;
+      if (after == 0 || after == referenceTimestamps.size) {
+        return Double.NaN;
+      }
+      double t0 = referenceTimestamps.get(after - 1);
+      double t1 = referenceTimestamps.get(after);
+      if (t1 - t0 > maxSampleGapSecs) {
+        return Double.NaN;
+      }
+      double v0 = referenceVelocities.get(after - 1);
+      return v0 + (referenceVelocities.get(after) - v0) * (timestamp - t0) / (t1 - t0);
+    }
+  }
+
+  /** Squared error of one estimate at every shift of the reference. */
+  private static final class Errors {
+    final double[] squaredErrors = new double[maxShiftMillis + 1];
+    long count = 0;
+
+    void add(ModuleData module, double timestamp, double velocity) {
+      double reference = module.referenceAt(timestamp);
+      if (Double.isNaN(reference)
+          || Math.abs(reference) < minVelocityRadPerSec
+          || Double.isNaN(module.referenceAt(timestamp - maxShiftMillis / 1000.0))) {
+        return;
+      }
+      for (int shift = 0; shift <= maxShiftMillis; shift++) {
+        double error = velocity - module.referenceAt(timestamp - shift / 1000.0);
+        squaredErrors[shift] += error * error;
+      }
+      count++;
+    }
+  }
+
+  private VelocityLagStudy() {}
+
+  public static void main(String... args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: VelocityLagStudy <log.wpilog or directory>...");
+      System.exit(1);
+    }
+    List<Path> logs = new ArrayList<>();
+    for (String arg : args) {
+      Path input = Path.of(arg);
+      if (Files.isDirectory(input)) {
+        try (Stream<Path> files = Files.list(input)) {
+          files
+              .filter((file) -> file.getFileName().toString().endsWith(".wpilog"))
+              .sorted()
+              .forEach(logs::add);
+        }
+      } else {
+        logs.add(input);
+      }
+    }
+
+    Map<String, Errors> errors = new LinkedHashMap<>();
+    errors.put("Motor controller", new Errors());
+    String configured =
+        String.format(
+            "Estimator (window %d, order %d)",
+            VelocityEstimationConstants.window, VelocityEstimationConstants.order);
+    errors.put(configured, new Errors());
+    for (int[] windowAndOrder : windowsAndOrders) {
+      errors.put(
+          String.format("Window %d, order %d", windowAndOrder[0], windowAndOrder[1]),
+          new Errors());
+    }
+
+    double sampleAgeSum = 0.0;
+    long sampleAgeCount = 0;
+    for (Path log : logs) {
+      for (ModuleData module : readModules(log)) {
+        computeReference(module);
+        int cycles = module.cycleTimestamps.size;
+        for (int cycle = 0; cycle < cycles; cycle++) {
+          errors
+              .get("Motor controller")
+              .add(module, module.cycleTimestamps.get(cycle), module.measuredVelocities.get(cycle));
+        }
+        evaluate(
+            module,
+            VelocityEstimationConstants.window,
+            VelocityEstimationConstants.order,
+            errors.get(configured));
+        for (int[] windowAndOrder : windowsAndOrders) {
+          evaluate(
+              module,
+              windowAndOrder[0],
+              windowAndOrder[1],
+              errors.get(
+                  String.format("Window %d, order %d", windowAndOrder[0], windowAndOrder[1])));
+        }
+
+        for (int cycle = 0; cycle < cycles; cycle++) {
+          int end = module.cycleSampleEnds.get(cycle);
+          if (end > 0) {
+            sampleAgeSum +=
+                module.cycleTimestamps.get(cycle) - module.sampleTimestamps.get(end - 1);
+            sampleAgeCount++;
+          }
+        }
+      }
+    }
+
+    System.out.printf(
+        "%d logs, newest odometry sample is %.1f ms old at the start of a cycle on average%n%n",
+        logs.size(), sampleAgeCount > 0 ? sampleAgeSum / sampleAgeCount * 1000.0 : Double.NaN);
+    System.out.printf(
+        "%-36s %8s %14s %14s %10s%n",
+        "Estimate", "Lag (ms)", "RMS at lag", "RMS unshifted", "Samples");
+    for (Map.Entry<String, Errors> entry : errors.entrySet()) {
+      Errors result = entry.getValue();
+      if (result.count == 0) {
+        System.out.printf("%-36s %8s%n", entry.getKey(), "no data");
+        continue;
+      }
+      int lag = 0;
+      for (int shift = 1; shift <= maxShiftMillis; shift++) {
+        if (result.squaredErrors[shift] < result.squaredErrors[lag]) {
+          lag = shift;
+        }
+      }
+      System.out.printf(
+          "%-36s %8d %14.3f %14.3f %10d%n",
+          entry.getKey(),
+          lag,
+          Math.sqrt(result.squaredErrors[lag] / result.count),
+          Math.sqrt(result.squaredErrors[0] / result.count),
+          result.count);
+    }
+  }
+
+  /** Runs an estimator over the samples and scores it at the start of every cycle. */
+  private static void evaluate(ModuleData module, int window, int order, Errors errors) {
+    VelocityEstimator estimator = new VelocityEstimator(window, order);
+    int sample = 0;
+    for (int cycle = 0; cycle < module.cycleTimestamps.size; cycle++) {
+      int end = module.cycleSampleEnds.get(cycle);
+      for (; sample < end; sample++) {
+        estimator.addSample(
+            module.sampleTimestamps.get(sample), module.samplePositions.get(sample));
+      }
+      if (estimator.hasEstimate()) {
+        errors.add(module, module.cycleTimestamps.get(cycle), estimator.getVelocity());
+      }
+    }
+  }
+
+  /** Fits a line to the samples around each sample, attributed to their mean timestamp. */
+  private static void computeReference(ModuleData module) {
+    Doubles timestamps = module.sampleTimestamps;
+    Doubles positions = module.samplePositions;
+    for (int center = referenceHalfWindow;
+        center < timestamps.size - referenceHalfWindow;
+        center++) {
+      int first = center - referenceHalfWindow;
+      int last = center + referenceHalfWindow;
+      if (timestamps.get(last) - timestamps.get(first) > maxReferenceSpanSecs) {
+        continue;
+      }
+      double meanTime = 0.0;
+      double meanPosition = 0.0;
+      for (int i = first; i <= last; i++) {
+        meanTime += timestamps.get(i);
+        meanPosition += positions.get(i);
+      }
+      int count = last - first + 1;
+      meanTime /= count;
+      meanPosition /= count;
+      double covariance = 0.0;
+      double variance = 0.0;
+      for (int i = first; i <= last; i++) {
+        double dt = timestamps.get(i) - meanTime;
+        covariance += dt * (positions.get(i) - meanPosition);
+        variance += dt * dt;
+      }
+      module.referenceTimestamps.add(meanTime);
+      module.referenceVelocities.add(covariance / variance);
+    }
+  }
+
+  private static List<ModuleData> readModules(Path log) throws IOException {
+    DataLogReader reader = new DataLogReader(log.toString());
+    if (!reader.isValid()) {
+      throw new IOException("Not a valid WPILOG file: " + log);
+    }
+
+    ModuleData[] modules = new ModuleData[moduleCount];
+    Map<Integer, Integer> timestampEntries = new LinkedHashMap<>();
+    Map<Integer, Integer> positionEntries = new LinkedHashMap<>();
+    Map<Integer, Integer> velocityEntries = new LinkedHashMap<>();
+    for (int i = 0; i < moduleCount; i++) {
+      modules[i] = new ModuleData();
+    }
+
+    // AdvantageKit only logs changes, so hold the latest value of each key
+    double[][] timestamps = new double[moduleCount][];
+    double[][] positions = new double[moduleCount][];
+    double[] velocities = new double[moduleCount];
+    boolean[] newSamples = new boolean[moduleCount];
+    long cycleTimestamp = -1;
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        var startData = record.getStartData();
+        for (int i = 0; i < moduleCount; i++) {
+          String prefix = "/Drive/Module" + i + "/";
+          if (startData.name.equals(prefix + "OdometryTimestamps")) {
+            timestampEntries.put(startData.entry, i);
+          } else if (startData.name.equals(prefix + "OdometryDrivePositionsRad")) {
+            positionEntries.put(startData.entry, i);
+          } else if (startData.name.equals(prefix + "DriveVelocityRadPerSec")) {
+            velocityEntries.put(startData.entry, i);
+          }
+        }
+        continue;
+      }
+      if (record.isControl()) {
+        continue;
+      }
+
+      // Every record of a cycle shares its timestamp, so a new timestamp ends the last cycle
+      long timestamp = record.getTimestamp();
+      if (timestamp != cycleTimestamp) {
+        if (cycleTimestamp >= 0) {
+          endCycle(modules, cycleTimestamp / 1e6, timestamps, positions, velocities, newSamples);
+        }
+        cycleTimestamp = timestamp;
+      }
+
+      int entry = record.getEntry();
+      if (timestampEntries.containsKey(entry)) {
+        int module = timestampEntries.get(entry);
+        timestamps[module] = record.getDoubleArray();
+        newSamples[module] = true;
+      } else if (positionEntries.containsKey(entry)) {
+        positions[positionEntries.get(entry)] = record.getDoubleArray();
+      } else if (velocityEntries.containsKey(entry)) {
+        velocities[velocityEntries.get(entry)] = record.getDouble();
+      }
+    }
+    if (cycleTimestamp >= 0) {
+      endCycle(modules, cycleTimestamp / 1e6, timestamps, positions, velocities, newSamples);
+    }
+    return List.of(modules);
+  }
+
+  private static void endCycle(
+      ModuleData[] modules,
+      double cycleTimestamp,
+      double[][] timestamps,
+      double[][] positions,
+      double[] velocities,
+      boolean[] newSamples) {
+    for (int i = 0; i < moduleCount; i++) {
+      ModuleData module = modules[i];
+      if (newSamples[i]
+          && positions[i] != null
+          && positions[i].length == timestamps[i].length) {
+        for (int sample = 0; sample < timestamps[i].length; sample++) {
+          module.sampleTimestamps.add(timestamps[i][sample]);
+          module.samplePositions.add(positions[i][sample]);
+        }
+      }
+      newSamples[i] = false;
+      module.cycleTimestamps.add(cycleTimestamp);
+      module.cycleSampleEnds.add(module.sampleTimestamps.size);
+      module.measuredVelocities.add(velocities[i]);
+    }
+  }
+}